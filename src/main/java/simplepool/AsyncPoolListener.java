@@ -0,0 +1,266 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Delivers the events to a listener asynchronously via a bounded ring buffer. <br>
+ * The threads causing the events only claim a slot in the buffer and write the event to it, a dedicated daemon thread then delivers the events to the listener in order. <br>
+ * The buffer never blocks the producers, should it be full the event is dropped and counted. <br>
+ * The delivery thread is started by the first event and parks when the buffer is empty, it is woken by the next producer. <br>
+ * Slots are claimed with a CAS on the producer sequence, each slot is then published by writing the sequence it was claimed with. <br>
+ * This way the consumer knows a slot is fully written even if producers finish out of order. <br>
+ * The {@link #poolDestroyed()} event is signaled out of band, thus never waiting for a free slot. <br>
+ * The delivery thread delivers it once all events published before it have been delivered and then stops.
+ * @author Peter Nerg
+ * @since 1.1
+ * @param <T> The type of the instances in the pool
+ */
+final class AsyncPoolListener<T> implements PoolListener<T> {
+	private static final int Created = 0;
+	private static final int Borrowed = 1;
+	private static final int Returned = 2;
+	private static final int ValidationFailed = 3;
+	private static final int Evicted = 4;
+	private static final int Destroyed = 5;
+
+	private final PoolListener<T> listener;
+	private final int capacity;
+	private final int mask;
+
+	/** The event type per slot. */
+	private final int[] events;
+	/** The instance per slot. */
+	private final Object[] instances;
+	/** The sequence each slot was last published with, -1 if never published. */
+	private final AtomicLongArray published;
+
+	/** The next sequence to claim by a producer. */
+	private final AtomicLong claimed = new AtomicLong();
+	/** The next sequence to deliver, only written by the delivery thread. */
+	private volatile long delivered = 0;
+	private final LongAdder dropped = new LongAdder();
+	/** The delivery thread, <code>null</code> until the first event. */
+	private final AtomicReference<Thread> deliveryThread = new AtomicReference<>();
+	/** If the delivery thread is parked (or about to park) waiting for events. */
+	private volatile boolean isSleeping = false;
+	/** If the pool has been destroyed, i.e. the delivery thread shall stop once all published events are delivered. */
+	private volatile boolean isPoolDestroyed = false;
+
+	/**
+	 * Creates the listener, the delivery thread is started by the first event.
+	 * @param listener The listener to deliver the events to
+	 * @param bufferSize The min number of events the buffer holds, rounded up to the closest power of two
+	 */
+	AsyncPoolListener(PoolListener<T> listener, int bufferSize) {
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("The buffer size must be positive, was [" + bufferSize + "]");
+		}
+		this.listener = listener;
+		this.capacity = Integer.highestOneBit(Math.max(2, bufferSize) * 2 - 1);
+		this.mask = capacity - 1;
+		this.events = new int[capacity];
+		this.instances = new Object[capacity];
+		this.published = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			published.set(i, -1);
+		}
+	}
+
+	@Override
+	public void created(T instance) {
+		offer(Created, instance);
+	}
+
+	@Override
+	public void borrowed(T instance) {
+		offer(Borrowed, instance);
+	}
+
+	@Override
+	public void returned(T instance) {
+		offer(Returned, instance);
+	}
+
+	@Override
+	public void validationFailed(T instance) {
+		offer(ValidationFailed, instance);
+	}
+
+	@Override
+	public void evicted(T instance) {
+		offer(Evicted, instance);
+	}
+
+	@Override
+	public void destroyed(T instance) {
+		offer(Destroyed, instance);
+	}
+
+	@Override
+	public void poolDestroyed() {
+		// signaled by a flag instead of via the buffer, a full buffer must not hold up destroying the pool
+		isPoolDestroyed = true;
+		LockSupport.unpark(deliveryThread());
+	}
+
+	/**
+	 * The number of events dropped due to the buffer being full.
+	 * @return The number of dropped events
+	 */
+	long dropped() {
+		return dropped.sum();
+	}
+
+	/**
+	 * The capacity of the ring buffer.
+	 * @return The capacity
+	 */
+	int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * Publishes the event, counting it as dropped if the buffer is full.
+	 * @param event The event type
+	 * @param instance The instance
+	 */
+	private void offer(int event, Object instance) {
+		if (!publish(event, instance)) {
+			dropped.increment();
+		}
+	}
+
+	/**
+	 * Writes the event to the next free slot.
+	 * @param event The event type
+	 * @param instance The instance
+	 * @return <code>true</code> if published, <code>false</code> if the buffer is full
+	 */
+	private boolean publish(int event, Object instance) {
+		long sequence;
+		do {
+			sequence = claimed.get();
+			if (sequence - delivered >= capacity) {
+				return false;
+			}
+		} while (!claimed.compareAndSet(sequence, sequence + 1));
+
+		int slot = (int) sequence & mask;
+		events[slot] = event;
+		instances[slot] = instance;
+		// the volatile write makes the slot contents visible to the delivery thread before the sequence
+		// it also orders the write before reading the sleeping flag, thus either we see the flag or the delivery thread sees the event
+		published.set(slot, sequence);
+		Thread thread = deliveryThread.get();
+		if (thread == null) {
+			deliveryThread();
+		} else if (isSleeping) {
+			LockSupport.unpark(thread);
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the delivery thread, starting it unless already started.
+	 * @return The delivery thread
+	 */
+	private Thread deliveryThread() {
+		Thread thread = deliveryThread.get();
+		if (thread != null) {
+			return thread;
+		}
+		thread = new Thread(() -> deliver(), "simplepool-listener");
+		thread.setDaemon(true);
+		if (deliveryThread.compareAndSet(null, thread)) {
+			thread.start();
+			return thread;
+		}
+		return deliveryThread.get();
+	}
+
+	/**
+	 * Delivers the events in order until the pool has been destroyed and all published events are delivered.
+	 */
+	@SuppressWarnings("unchecked")
+	private void deliver() {
+		long next = 0;
+		for (;;) {
+			int slot = (int) next & mask;
+			if (published.get(slot) != next) {
+				if (isPoolDestroyed) {
+					if (claimed.get() == next) {
+						deliverPoolDestroyed();
+						return;
+					}
+					// a producer has claimed the slot but not yet published it
+					Thread.yield();
+					continue;
+				}
+				isSleeping = true;
+				// re-check after raising the flag as a producer may have published, or the pool been destroyed, in between
+				if (published.get(slot) != next && !isPoolDestroyed) {
+					LockSupport.park(this);
+				}
+				isSleeping = false;
+				continue;
+			}
+			int event = events[slot];
+			T instance = (T) instances[slot];
+			instances[slot] = null;
+			delivered = ++next;
+			try {
+				switch (event) {
+				case Created:
+					listener.created(instance);
+					break;
+				case Borrowed:
+					listener.borrowed(instance);
+					break;
+				case Returned:
+					listener.returned(instance);
+					break;
+				case ValidationFailed:
+					listener.validationFailed(instance);
+					break;
+				case Evicted:
+					listener.evicted(instance);
+					break;
+				case Destroyed:
+					listener.destroyed(instance);
+					break;
+				default:
+					break;
+				}
+			} catch (RuntimeException ex) {
+				// listeners must not affect the pool
+			}
+		}
+	}
+
+	private void deliverPoolDestroyed() {
+		try {
+			listener.poolDestroyed();
+		} catch (RuntimeException ex) {
+			// listeners must not affect the pool
+		}
+	}
+}
@@ -0,0 +1,116 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Coalesces concurrent requests for new instances into batched invocations of a batch factory. <br>
+ * Each request is put in a queue, the first requesting thread finding no batch in progress becomes the creator. <br>
+ * The creator takes all queued requests, creates the instances for them in one invocation and hands them out. <br>
+ * Requests queued while the batch was in progress are then served by a new batch, by the same or another thread. <br>
+ * Should the batch factory return more instances than requested the surplus is handed to the surplus handler.
+ * @author Peter Nerg
+ * @since 1.1
+ * @param <T> The type of the instances
+ */
+final class BatchCreator<T> {
+	private final IntFunction<List<T>> batchFactory;
+	private final Consumer<T> surplusHandler;
+
+	/** The requests waiting for an instance. */
+	private final Queue<CompletableFuture<T>> requests = new ConcurrentLinkedQueue<>();
+	/** If a batch is in progress. */
+	private final AtomicBoolean isCreating = new AtomicBoolean(false);
+
+	/**
+	 * Creates the batch creator.
+	 * @param batchFactory The function creating the requested number of instances
+	 * @param surplusHandler The function receiving any instances created beyond the requested number
+	 */
+	BatchCreator(IntFunction<List<T>> batchFactory, Consumer<T> surplusHandler) {
+		this.batchFactory = batchFactory;
+		this.surplusHandler = surplusHandler;
+	}
+
+	/**
+	 * Creates an instance, possibly as part of a batch with other concurrent requests. <br>
+	 * The caller waits (uninterruptibly) for the batch serving its request to complete.
+	 * @return The instance
+	 * @throws Throwable If the batch factory failed or didn't create enough instances
+	 */
+	T create() throws Throwable {
+		CompletableFuture<T> request = new CompletableFuture<>();
+		requests.add(request);
+		// re-check after each batch as requests added while creating may otherwise be left without a creator
+		while (!requests.isEmpty() && isCreating.compareAndSet(false, true)) {
+			try {
+				createBatch();
+			} finally {
+				isCreating.set(false);
+			}
+		}
+		try {
+			return request.join();
+		} catch (CompletionException ex) {
+			throw ex.getCause();
+		}
+	}
+
+	/**
+	 * Creates the instances for all queued requests.
+	 */
+	private void createBatch() {
+		List<CompletableFuture<T>> batch = new ArrayList<>();
+		for (CompletableFuture<T> request = requests.poll(); request != null; request = requests.poll()) {
+			batch.add(request);
+		}
+		if (batch.isEmpty()) {
+			return;
+		}
+
+		List<T> instances;
+		try {
+			instances = batchFactory.apply(batch.size());
+		} catch (RuntimeException | Error ex) {
+			batch.forEach(request -> request.completeExceptionally(ex));
+			return;
+		}
+		if (instances == null) {
+			instances = Collections.emptyList();
+		}
+
+		Iterator<T> iterator = instances.iterator();
+		for (CompletableFuture<T> request : batch) {
+			if (iterator.hasNext()) {
+				request.complete(iterator.next());
+			} else {
+				request.completeExceptionally(new PoolException("The batch factory created [" + instances.size() + "] instances, [" + batch.size() + "] were requested"));
+			}
+		}
+		iterator.forEachRemaining(surplusHandler);
+	}
+}
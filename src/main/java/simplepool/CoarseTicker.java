@@ -0,0 +1,102 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ticker caching the system clock. <br>
+ * The cached time is updated by a single daemon thread shared by all coarse tickers. <br>
+ * The update job only keeps a weak reference to the ticker, once the ticker is collected the job cancels itself.
+ * @author Peter Nerg
+ * @since 1.1
+ */
+final class CoarseTicker implements Ticker {
+
+	private volatile long now = System.currentTimeMillis();
+
+	private CoarseTicker() {
+	}
+
+	/**
+	 * Creates a ticker and schedules the updates of it.
+	 * @param resolution The interval between the updates
+	 * @return The ticker
+	 */
+	static CoarseTicker create(Duration resolution) {
+		if (resolution.isNegative() || resolution.isZero()) {
+			throw new IllegalArgumentException("The resolution must be positive [" + resolution + "]");
+		}
+		CoarseTicker ticker = new CoarseTicker();
+		new Updater(ticker, resolution.toNanos());
+		return ticker;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see simplepool.Ticker#millis()
+	 */
+	@Override
+	public long millis() {
+		return now;
+	}
+
+	/**
+	 * Updates the cached time of a ticker for as long as the ticker is referenced.
+	 */
+	private static final class Updater implements Runnable {
+		private final WeakReference<CoarseTicker> ticker;
+		private final ScheduledFuture<?> future;
+
+		private Updater(CoarseTicker ticker, long intervalNanos) {
+			this.ticker = new WeakReference<>(ticker);
+			this.future = Timer.Instance.scheduleAtFixedRate(this, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public void run() {
+			CoarseTicker t = ticker.get();
+			if (t == null) {
+				future.cancel(false);
+			} else {
+				t.now = System.currentTimeMillis();
+			}
+		}
+	}
+
+	/**
+	 * The thread updating all coarse tickers. <br>
+	 * Lazily created on first use.
+	 */
+	private static final class Timer {
+		private static final ScheduledExecutorService Instance = createTimer();
+
+		private static ScheduledExecutorService createTimer() {
+			ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+				Thread thread = new Thread(r, "simplepool-ticker");
+				thread.setDaemon(true);
+				return thread;
+			});
+			timer.setRemoveOnCancelPolicy(true);
+			return timer;
+		}
+	}
+}
@@ -44,6 +44,51 @@ public interface Constants {
 		 * 
 		 * @since 1.0
 		 */
-		LIFO
+		LIFO,
+		/**
+		 * Switches between LIFO and FIFO depending on the utilization of the pool. <br>
+		 * At low utilization the pool operates as {@link #LIFO}, letting surplus instances go stale and be destroyed by the idle reaper. <br>
+		 * Under sustained high utilization the pool operates as {@link #FIFO}, rotating the instances to spread the wear on all of them. <br>
+		 * The utilization is measured as the smoothed fraction of the pool borrowed each time an instance is returned.
+		 * 
+		 * @since 1.1
+		 */
+		ADAPTIVE
+	}
+
+	/**
+	 * The strategies for how a borrower waits for a free object in the pool.
+	 * 
+	 * @since 1.1
+	 */
+	enum WaitStrategy {
+		/**
+		 * Spins until an object is free, never giving up the CPU. <br>
+		 * Lowest latency but burns a full CPU per waiting borrower, only for dedicated cores and very short hold times.
+		 * 
+		 * @since 1.1
+		 */
+		BUSY_SPIN,
+		/**
+		 * Spins for a short while, then yields the CPU between each attempt. <br>
+		 * Low latency while letting other threads run, still keeps the CPU busy.
+		 * 
+		 * @since 1.1
+		 */
+		SPIN_THEN_YIELD,
+		/**
+		 * Spins for a short while, then parks the thread until an object is returned. <br>
+		 * Avoids the cost of parking when objects are held for a very short time.
+		 * 
+		 * @since 1.1
+		 */
+		SPIN_THEN_PARK,
+		/**
+		 * Parks the thread until an object is returned. <br>
+		 * Costs no CPU while waiting but waking up the thread takes tens of microseconds.
+		 * 
+		 * @since 1.1
+		 */
+		PARK
 	}
 }
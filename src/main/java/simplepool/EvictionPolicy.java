@@ -0,0 +1,173 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import static java.util.stream.Collectors.toList;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Decides which idle instances in the pool to evict. <br>
+ * The policy is consulted by the eviction job of the pool, each time the job runs the policy is given all idle instances and selects the ones to evict. <br>
+ * The selected instances are removed from the pool and {@link Factory#withDestructor(java.util.function.Consumer) destroyed}. <br>
+ * Policies are composed using {@link #or(EvictionPolicy)}.
+ * 
+ * <pre>
+ * EvictionPolicy policy = EvictionPolicy.idleTime(Duration.ofMinutes(5)).or(EvictionPolicy.maxIdle(10));
+ * </pre>
+ * 
+ * @author Peter Nerg
+ * @see Factory#withEvictionPolicy(EvictionPolicy, Duration, java.util.concurrent.ScheduledExecutorService)
+ * @since 1.1
+ */
+@FunctionalInterface
+public interface EvictionPolicy {
+
+	/**
+	 * An idle instance considered for eviction.
+	 * 
+	 * @since 1.1
+	 */
+	interface Candidate {
+		/**
+		 * The time the instance has been idle in the pool.
+		 * 
+		 * @return Time in millis
+		 * @since 1.1
+		 */
+		long idleTime();
+
+		/**
+		 * The time since the instance was created.
+		 * 
+		 * @return Time in millis
+		 * @since 1.1
+		 */
+		long age();
+
+		/**
+		 * The number of times the instance has been borrowed.
+		 * 
+		 * @return The number of borrows
+		 * @since 1.1
+		 */
+		long borrowCount();
+	}
+
+	/**
+	 * Selects the instances to evict.
+	 * 
+	 * @param idleInstances
+	 *            All idle instances in the pool
+	 * @return The instances to evict
+	 * @since 1.1
+	 */
+	List<Candidate> select(List<Candidate> idleInstances);
+
+	/**
+	 * Composes this policy with another. <br>
+	 * The instances not selected by this policy are passed to the other, an instance is evicted if selected by either policy.
+	 * 
+	 * @param other
+	 *            The other policy
+	 * @return The composed policy
+	 * @since 1.1
+	 */
+	default EvictionPolicy or(EvictionPolicy other) {
+		return idleInstances -> {
+			List<Candidate> selected = new ArrayList<>(select(idleInstances));
+			List<Candidate> remaining = new ArrayList<>(idleInstances);
+			remaining.removeAll(selected);
+			selected.addAll(other.select(remaining));
+			return selected;
+		};
+	}
+
+	/**
+	 * Evicts instances that have been idle for longer than the provided time.
+	 * 
+	 * @param maxIdleTime
+	 *            The max idle time
+	 * @return The policy
+	 * @since 1.1
+	 */
+	static EvictionPolicy idleTime(Duration maxIdleTime) {
+		long max = maxIdleTime.toMillis();
+		return idleInstances -> idleInstances.stream().filter(c -> c.idleTime() > max).collect(toList());
+	}
+
+	/**
+	 * Evicts instances older than the provided age, regardless of how frequently they are used.
+	 * 
+	 * @param maxAge
+	 *            The max age
+	 * @return The policy
+	 * @since 1.1
+	 */
+	static EvictionPolicy age(Duration maxAge) {
+		long max = maxAge.toMillis();
+		return idleInstances -> idleInstances.stream().filter(c -> c.age() > max).collect(toList());
+	}
+
+	/**
+	 * Keeps at most the provided number of idle instances, the ones idle the longest are evicted first.
+	 * 
+	 * @param maxIdle
+	 *            The max number of idle instances
+	 * @return The policy
+	 * @since 1.1
+	 */
+	static EvictionPolicy maxIdle(int maxIdle) {
+		return evictExcess(maxIdle, Comparator.comparingLong(Candidate::idleTime).reversed());
+	}
+
+	/**
+	 * Keeps at most the provided number of idle instances, the ones least frequently borrowed are evicted first. <br>
+	 * The frequency is the number of borrows per time since the instance was created, thus new instances are not evicted only for not yet having been used much.
+	 * 
+	 * @param maxIdle
+	 *            The max number of idle instances
+	 * @return The policy
+	 * @since 1.1
+	 */
+	static EvictionPolicy leastFrequentlyUsed(int maxIdle) {
+		return evictExcess(maxIdle, Comparator.comparingDouble(c -> (double) c.borrowCount() / Math.max(1, c.age())));
+	}
+
+	/**
+	 * Keeps at most the provided number of idle instances, the excess instances are evicted in the provided order.
+	 * 
+	 * @param maxIdle
+	 *            The max number of idle instances
+	 * @param evictionOrder
+	 *            The order in which to evict the instances
+	 * @return The policy
+	 * @since 1.1
+	 */
+	static EvictionPolicy evictExcess(int maxIdle, Comparator<Candidate> evictionOrder) {
+		return idleInstances -> {
+			int excess = idleInstances.size() - maxIdle;
+			if (excess <= 0) {
+				return Collections.emptyList();
+			}
+			return idleInstances.stream().sorted(evictionOrder).limit(excess).collect(toList());
+		};
+	}
+}
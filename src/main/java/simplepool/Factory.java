@@ -19,14 +19,26 @@ import static javascalautils.Option.None;
 import static javascalautils.OptionCompanion.Option;
 import static javascalautils.Validator.requireNonNull;
 
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
 
 import javascalautils.Option;
 import javascalautils.ThrowableFunction0;
+import javascalautils.ThrowableFunction1;
 import simplepool.Constants.PoolMode;
+import simplepool.Constants.WaitStrategy;
 
 /**
  * Factory for creating pool instances. <br>
@@ -40,13 +52,39 @@ import simplepool.Constants.PoolMode;
  */
 public final class Factory<T> {
 
-	private final ThrowableFunction0<T> instanceFactory;
-	private int size = 50;
-	private PoolMode poolMode = PoolMode.FIFO;
-	private Option<Predicate<T>> validator = None();
-	private Option<Consumer<T>> destructor = None();
-	private Duration idleTime = Duration.ZERO;
-	private Option<ScheduledExecutorService> executor = None();
+	final ThrowableFunction0<T> instanceFactory;
+	int size = 50;
+	int maxUsersPerInstance = 1;
+	ToLongFunction<T> weigher = t -> 0;
+	long maxWeight = Long.MAX_VALUE;
+	PoolMode poolMode = PoolMode.FIFO;
+	WaitStrategy waitStrategy = WaitStrategy.PARK;
+	Option<Predicate<T>> validator = None();
+	Option<Consumer<T>> destructor = None();
+	Option<Predicate<Throwable>> brokenInstanceDetector = None();
+	Option<Function<T, Object>> attributeFunction = None();
+	Option<IntFunction<List<T>>> batchFactory = None();
+	int prewarmCount = 0;
+	boolean isParallelPrewarm = false;
+	Option<Snapshot<T>> snapshot = None();
+	Duration idleTime = Duration.ZERO;
+	Option<EvictionPolicy> evictionPolicy = None();
+	Duration evictionInterval = Duration.ZERO;
+	double memoryPressureThreshold = 0;
+	int maxWaiters = -1;
+	final Map<Object, Partitions.Quota> quotas = new HashMap<>();
+	Duration maxLifetime = Duration.ZERO;
+	Duration lifetimeJitter = Duration.ZERO;
+	Duration maxHoldTime = Duration.ZERO;
+	int maxBorrows = 0;
+	boolean isRecyclingAtMaxBorrows = false;
+	double leakSampleRate = 0;
+	Option<Consumer<PoolException>> leakReporter = None();
+	Option<ScheduledExecutorService> executor = None();
+	Option<String> jmxName = None();
+	Option<PoolRegistry> registry = None();
+	Ticker ticker = Ticker.system();
+	final List<Supplier<PoolListener<T>>> listeners = new ArrayList<>();
 
 	private Factory(ThrowableFunction0<T> instanceFactory) {
 		this.instanceFactory = instanceFactory;
@@ -69,6 +107,28 @@ public final class Factory<T> {
 		return new Factory<>(instanceFactory);
 	}
 
+	/**
+	 * Creates the pool factory for instances created by cloning a prototype. <br>
+	 * Useful for instances that are expensive to initialize but cheap to copy, such as compiled schema validators or parsers. <br>
+	 * The expensive initialization is made once when building the prototype, every instance in the pool is then created by applying the <i>cloner</i> to the prototype. <br>
+	 * The prototype itself is never handed out by the pool, thus it's not affected by any use of the instances. <br>
+	 * The cloner may be invoked concurrently, e.g. by concurrent borrowers or a {@link #withPrewarm(int, boolean) parallel pre-warm}, and must therefore be thread safe.
+	 * 
+	 * @param <T>
+	 *            The type the pool shall produce
+	 * @param prototype
+	 *            The fully initialized prototype
+	 * @param cloner
+	 *            The function creating a copy of the prototype
+	 * @return The pool factory
+	 * @since 1.1
+	 */
+	public static <T> Factory<T> fromPrototype(T prototype, UnaryOperator<T> cloner) {
+		requireNonNull(prototype);
+		requireNonNull(cloner);
+		return new Factory<>(() -> cloner.apply(prototype));
+	}
+
 	/**
 	 * Specifies the maximum size of the pool (optional). <br>
 	 * If not specified the default size is <tt>50</tt>
@@ -83,6 +143,48 @@ public final class Factory<T> {
 		return this;
 	}
 
+	/**
+	 * Lets each instance in the pool be shared by several concurrent users (optional). <br>
+	 * Useful for instances able to serve several users at once, such as multiplexed connections or thread safe templates. <br>
+	 * A borrower is given the least loaded instance, new instances are only created when all existing instances have reached <i>maxUsersPerInstance</i>. <br>
+	 * The {@link #ofSize(int) size} is still the max number of instances, thus the pool accepts up to <i>size * maxUsersPerInstance</i> concurrent users. <br>
+	 * Each borrow must be matched by exactly one return of the instance. <br>
+	 * As all users hold the same instance the pool can't tell their borrows apart, returning an instance twice releases the slot of another user. <br>
+	 * Prefer {@link Pool#withInstance(Duration, javascalautils.ThrowableFunction1) withInstance} or a {@link Pool#lease(Duration) lease}, both return the instance exactly once. <br>
+	 * An instance failing {@link #withValidator(Predicate) validation} accepts no new users and is destroyed once its last user has returned it. <br>
+	 * In shared mode only the size, validator, destructor, broken instance detector, attribute, wait strategy, idle timeout and ticker settings apply, {@link #create()} fails should any other option be set.
+	 * 
+	 * @param maxUsersPerInstance
+	 *            The max number of concurrent users of a single instance
+	 * @return The pool factory
+	 * @since 1.1
+	 */
+	public Factory<T> withSharedInstances(int maxUsersPerInstance) {
+		this.maxUsersPerInstance = maxUsersPerInstance;
+		return this;
+	}
+
+	/**
+	 * Bounds the pool by the total weight of its instances as opposed to only their number (optional). <br>
+	 * Useful when the instances are of very different cost, e.g. buffers of different sizes. <br>
+	 * The weight of an instance is computed when it's created and each time it's returned to the pool. <br>
+	 * Should the total weight of all instances exceed <i>maxWeight</i> idle instances are evicted and {@link #withDestructor(Consumer) destroyed}, the heaviest first. <br>
+	 * This includes the instance being returned, i.e. a returned instance that has grown too heavy is destroyed instead of pooled. <br>
+	 * Note that borrowed instances are never evicted, hence the total weight may temporarily exceed the budget while heavy instances are in use.
+	 * 
+	 * @param weigher
+	 *            The function computing the weight of an instance
+	 * @param maxWeight
+	 *            The max total weight of all instances in the pool
+	 * @return The pool factory
+	 * @since 1.1
+	 */
+	public Factory<T> withWeigher(ToLongFunction<T> weigher, long maxWeight) {
+		this.weigher = weigher;
+		this.maxWeight = maxWeight;
+		return this;
+	}
+
 	/**
 	 * Provides a validator function to the pool (Optional). <br>
 	 * The validator is used every time an instance is returned to the pool. <br>
@@ -117,6 +219,40 @@ public final class Factory<T> {
 		return this;
 	}
 
+	/**
+	 * Provides a function deciding if an error renders an instance broken (Optional). <br>
+	 * The function is used when an error is raised by a function executed with {@link Pool#withInstance(Duration, javascalautils.ThrowableFunction1) withInstance}. <br>
+	 * Should the error be considered to break the instance it will be destroyed as opposed to returned to the pool. <br>
+	 * If not specified errors are not considered to break the instance and it is left to the {@link #withValidator(Predicate) validator} to decide.
+	 * 
+	 * @param brokenInstanceDetector
+	 *            The function deciding if the error breaks the instance
+	 * @return The pool factory
+	 * @since 1.1
+	 */
+	public Factory<T> withBrokenInstanceDetector(Predicate<Throwable> brokenInstanceDetector) {
+		this.brokenInstanceDetector = Option(brokenInstanceDetector);
+		return this;
+	}
+
+	/**
+	 * Indexes the idle instances in the pool by an attribute (optional). <br>
+	 * Allows for borrowing an instance with a specific attribute using {@link Pool#getInstanceByAttribute(Object, Duration)} without scanning the idle instances. <br>
+	 * E.g. a connection already authenticated as a certain user or a parser configured for a certain schema. <br>
+	 * The attribute is computed each time the instance is returned to the pool and compared using <tt>equals/hashCode</tt>. <br>
+	 * Pools with {@link #withSharedInstances(int) shared instances} keep no index, the instances are scanned instead.
+	 * 
+	 * @param attributeFunction
+	 *            The function providing the attribute of an instance
+	 * @return The pool factory
+	 * @since 1.1
+	 */
+	public Factory<T> withAttribute(Function<T, ?> attributeFunction) {
+		requireNonNull(attributeFunction);
+		this.attributeFunction = Option(t -> attributeFunction.apply(t));
+		return this;
+	}
+
 	/**
 	 * Sets the mode for which the pool operates.
 	 * 
@@ -131,6 +267,71 @@ public final class Factory<T> {
 		return this;
 	}
 
+	/**
+	 * Rejects borrowers that are unlikely to get an instance instead of letting them wait (optional). <br>
+	 * A borrower finding no free instance is rejected with a {@link PoolOverloadedException} if either: <br>
+	 * <ul>
+	 * <li>there are already <i>maxWaiters</i> borrowers waiting</li>
+	 * <li>the estimated wait exceeds the max wait time of the borrower</li>
+	 * </ul>
+	 * The wait is estimated from a moving average of how long instances are held by borrowers and the number of borrowers already waiting. <br>
+	 * Borrowers finding a free instance are never rejected. <br>
+	 * Not applicable for pools with {@link #withSharedInstances(int) shared instances}.
+	 * 
+	 * @param maxWaiters
+	 *            The max number of borrowers waiting for an instance, use <tt>Integer.MAX_VALUE</tt> to only reject based on the estimated wait
+	 * @return The pool factory
+	 * @since 1.1
+	 */
+	public Factory<T> withAdmissionControl(int maxWaiters) {
+		this.maxWaiters = maxWaiters;
+		return this;
+	}
+
+	/**
+	 * Reserves capacity in the pool for a tenant (optional). <br>
+	 * Borrowers state their tenant using {@link Pool#getInstanceFor(Object, Duration)}. <br>
+	 * The tenant is guaranteed <i>reserved</i> instances, as long as the tenant isn't using them other tenants may borrow them. <br>
+	 * Reserved instances lent to others are given back to the tenant as they are returned to the pool. <br>
+	 * The tenant may borrow at most <i>ceiling</i> instances at the same time, regardless of free capacity. <br>
+	 * The capacity not reserved is shared by all tenants, including tenants without reservation and borrowers not stating a tenant. <br>
+	 * The sum of all reservations must not exceed the {@link #ofSize(int) size} of the pool. <br>
+	 * Not applicable for pools with {@link #withSharedInstances(int) shared instances}.
+	 * 
+	 * @param tenant
+	 *            The tenant, compared using <tt>equals/hashCode</tt>
+	 * @param reserved
+	 *            The number of instances reserved for the tenant
+	 * @param ceiling
+	 *            The max number of instances the tenant may borrow at the same time, not less than <i>reserved</i>
+	 * @return The pool factory
+	 * @throws IllegalArgumentException
+	 *             If <i>reserved</i> is negative or exceeds the <i>ceiling</i>
+	 * @since 1.1
+	 */
+	public Factory<T> withReservation(Object tenant, int reserved, int ceiling) {
+		requireNonNull(tenant);
+		quotas.put(tenant, new Partitions.Quota(reserved, ceiling));
+		return this;
+	}
+
+	/**
+	 * Sets how a borrower waits for a free instance (optional). <br>
+	 * If not specified borrowers {@link WaitStrategy#PARK park} while waiting. <br>
+	 * Waking up a parked thread costs tens of microseconds, for instances held only for a few microseconds spinning gives lower borrow latency at the cost of CPU.
+	 * 
+	 * @param waitStrategy
+	 *            The wait strategy
+	 * @return The pool factory
+	 * @see WaitStrategy
+	 * @since 1.1
+	 */
+	public Factory<T> withWaitStrategy(WaitStrategy waitStrategy) {
+		requireNonNull(waitStrategy);
+		this.waitStrategy = waitStrategy;
+		return this;
+	}
+
 	/**
 	 * Set the duration for how long an instance may be unused in the pool before it is evicted and destroyed. <br>
 	 * Evicting an instance will automatically {@link #withDestructor(Consumer) destroy} it and release one resource from the pool.
@@ -138,29 +339,407 @@ public final class Factory<T> {
 	 * @param timeout
 	 *            The timeout
 	 * @param executor
-	 *            The scheduled executor to use for scheduling the eviction job
+	 *            The scheduled executor to use for scheduling the eviction job. The executor is shared by all scheduled jobs of the pool, <code>null</code> keeps any executor already provided
 	 * @return The pool factory
+	 * @throws IllegalArgumentException
+	 *             If a different executor has already been provided
 	 * @since 1.1
 	 */
 	public Factory<T> withIdleTimeout(Duration timeout, ScheduledExecutorService executor) {
 		this.idleTime = timeout;
+		useExecutor(executor);
+		return this;
+	}
+
+	/**
+	 * Set the policy deciding which idle instances to evict (optional). <br>
+	 * The policy is consulted by an eviction job running with the provided interval, the instances selected by the policy are {@link #withDestructor(Consumer) destroyed}. <br>
+	 * Should also an {@link #withIdleTimeout(Duration, ScheduledExecutorService) idle timeout} be set it's combined with the policy, the instances idle for too long are evicted before consulting the policy. <br>
+	 * Not applicable for pools with {@link #withSharedInstances(int) shared instances}.
+	 * 
+	 * @param policy
+	 *            The eviction policy
+	 * @param interval
+	 *            The interval between two runs of the eviction job, at least one millisecond
+	 * @param executor
+	 *            The scheduled executor to use for scheduling the eviction job. The executor is shared by all scheduled jobs of the pool, <code>null</code> keeps any executor already provided
+	 * @return The pool factory
+	 * @throws IllegalArgumentException
+	 *             If the interval is shorter than one millisecond or a different executor has already been provided
+	 * @see EvictionPolicy
+	 * @since 1.1
+	 */
+	public Factory<T> withEvictionPolicy(EvictionPolicy policy, Duration interval, ScheduledExecutorService executor) {
+		requireNonNull(interval);
+		if (interval.toMillis() < 1) {
+			throw new IllegalArgumentException("The eviction interval must be at least one millisecond, was [" + interval + "]");
+		}
+		this.evictionPolicy = Option(policy);
+		this.evictionInterval = interval;
+		useExecutor(executor);
+		return this;
+	}
+
+	/**
+	 * Sheds idle instances when the heap is running full (optional). <br>
+	 * Each time a garbage collection fails to bring the usage of a heap memory pool below the <i>heapThreshold</i> half of the idle instances are {@link #withDestructor(Consumer) destroyed}, the ones idle the longest first. <br>
+	 * Pressure is detected using the collection usage thresholds of the {@link java.lang.management.MemoryPoolMXBean memory pools}, thus at no cost until a garbage collection has failed to free enough memory. <br>
+	 * The threshold of a memory pool is shared by the whole JVM, it's lowered to the lowest <i>heapThreshold</i> of all pools and restored once all pools are destroyed. <br>
+	 * The instances are shed using the {@link ScheduledExecutorService executor} of the pool if any, else by a thread shared by all pools. <br>
+	 * Not applicable for pools with {@link #withSharedInstances(int) shared instances}.
+	 * 
+	 * @param heapThreshold
+	 *            The fraction (<tt>0.0</tt> to <tt>1.0</tt>) of the max size of a memory pool considered to be pressure, e.g. <tt>0.85</tt>
+	 * @return The pool factory
+	 * @since 1.1
+	 */
+	public Factory<T> withMemoryPressureShedding(double heapThreshold) {
+		this.memoryPressureThreshold = heapThreshold;
+		return this;
+	}
+
+	/**
+	 * Set the maximum time an instance may live in the pool, counted from its creation (optional). <br>
+	 * This is independent of the {@link #withIdleTimeout(Duration, ScheduledExecutorService) idle time}, an instance is recycled once it reaches its lifetime no matter how frequently it is used. <br>
+	 * Each instance is given its own lifetime, randomly picked between <i>maxLifetime</i> minus a tenth of it and <i>maxLifetime</i>. <br>
+	 * This way instances created at the same time will not all expire at the same time.
+	 * 
+	 * @param maxLifetime
+	 *            The maximum lifetime of an instance
+	 * @param executor
+	 *            The scheduled executor to use for scheduling the refresh job. The executor is shared by all scheduled jobs of the pool, <code>null</code> keeps any executor already provided
+	 * @return The pool factory
+	 * @throws IllegalArgumentException
+	 *             If a different executor has already been provided
+	 * @see #withMaxLifetime(Duration, Duration, ScheduledExecutorService)
+	 * @since 1.1
+	 */
+	public Factory<T> withMaxLifetime(Duration maxLifetime, ScheduledExecutorService executor) {
+		return withMaxLifetime(maxLifetime, maxLifetime.dividedBy(10), executor);
+	}
+
+	/**
+	 * Set the maximum time an instance may live in the pool, counted from its creation (optional). <br>
+	 * Each instance is given its own lifetime, randomly picked between <i>maxLifetime - jitter</i> and <i>maxLifetime</i>. <br>
+	 * Idle instances are replaced ahead of their expiry. <br>
+	 * The replacement is created on the provided executor and put in the pool before the expiring instance is {@link #withDestructor(Consumer) destroyed}, thus borrowers never pay for re-creating the instance. <br>
+	 * Borrowed instances that have expired are destroyed when returned to the pool and a replacement is created on the executor.
+	 * 
+	 * @param maxLifetime
+	 *            The maximum lifetime of an instance
+	 * @param jitter
+	 *            The maximum time an individual lifetime may be shorter than <i>maxLifetime</i>
+	 * @param executor
+	 *            The scheduled executor to use for scheduling the refresh job. The executor is shared by all scheduled jobs of the pool, <code>null</code> keeps any executor already provided
+	 * @return The pool factory
+	 * @throws IllegalArgumentException
+	 *             If a different executor has already been provided
+	 * @since 1.1
+	 */
+	public Factory<T> withMaxLifetime(Duration maxLifetime, Duration jitter, ScheduledExecutorService executor) {
+		this.maxLifetime = maxLifetime;
+		this.lifetimeJitter = jitter;
+		useExecutor(executor);
+		return this;
+	}
+
+	/**
+	 * Set the maximum time an instance may be borrowed from the pool (optional). <br>
+	 * Instances not returned within this time are considered leaked. <br>
+	 * The pool reclaims them by {@link #withDestructor(Consumer) destroying} them and creating a replacement, thus the leaked instance no longer occupies a slot in the pool. <br>
+	 * Any attempt to return a reclaimed instance will result in a {@link javascalautils.Failure}.
+	 * 
+	 * @param maxHoldTime
+	 *            The maximum time an instance may be borrowed
+	 * @param executor
+	 *            The scheduled executor to use for scheduling the reclaim job. The executor is shared by all scheduled jobs of the pool, <code>null</code> keeps any executor already provided
+	 * @return The pool factory
+	 * @throws IllegalArgumentException
+	 *             If a different executor has already been provided
+	 * @since 1.1
+	 */
+	public Factory<T> withMaxHoldTime(Duration maxHoldTime, ScheduledExecutorService executor) {
+		this.maxHoldTime = maxHoldTime;
+		useExecutor(executor);
+		return this;
+	}
+
+	/**
+	 * Sets the executor driving all the scheduled jobs of the pool. <br>
+	 * There's only one executor per pool, it's shared by the idle eviction, eviction policy, refresh and reclaim jobs. <br>
+	 * A <code>null</code> executor keeps any executor already provided, thus the order of the configuration doesn't matter.
+	 * 
+	 * @param executor
+	 *            The executor, may be <code>null</code>
+	 * @throws IllegalArgumentException
+	 *             If a different executor has already been provided
+	 */
+	private void useExecutor(ScheduledExecutorService executor) {
+		if (executor == null) {
+			return;
+		}
+		if (this.executor.exists(e -> e != executor)) {
+			throw new IllegalArgumentException("The pool is already configured with another executor, all scheduled jobs share the same executor");
+		}
 		this.executor = Option(executor);
+	}
+
+	/**
+	 * Enables reporting of instances reclaimed due to exceeding the {@link #withMaxHoldTime(Duration, ScheduledExecutorService) max hold time} (optional). <br>
+	 * Every reclaimed instance is reported to the <i>reporter</i>. <br>
+	 * For a sampled fraction of all borrows the stack of the borrowing thread is captured, that stack is then provided as the cause of the reported exception. <br>
+	 * Capturing a stack is expensive, using a low sample rate such as <tt>0.01</tt> allows for hunting leaks in production at almost no cost.
+	 * 
+	 * @param sampleRate
+	 *            The fraction (<tt>0.0</tt> to <tt>1.0</tt>) of borrows to capture the stack for
+	 * @param reporter
+	 *            The function receiving the reports of leaked instances
+	 * @return The pool factory
+	 * @since 1.1
+	 */
+	public Factory<T> withLeakDetection(double sampleRate, Consumer<PoolException> reporter) {
+		this.leakSampleRate = sampleRate;
+		this.leakReporter = Option(reporter);
+		return this;
+	}
+
+	/**
+	 * Caps the number of borrows of an instance before it's rotated or recycled (optional). <br>
+	 * Useful to spread the wear evenly over the instances, in particular in {@link PoolMode#LIFO LIFO} mode where the most recently returned instance is always picked first. <br>
+	 * The borrows are counted over the lifetime of the instance, not in a row. Each time the total number of borrows of an instance reaches a multiple of <i>maxBorrows</i> it's either rotated to the back of the queue, i.e. it's the last idle instance to be picked, or if <i>recycle</i> is set {@link #withDestructor(Consumer) destroyed}. <br>
+	 * A recycled instance is replaced on the executor of the pool, should the pool have no executor the replacement is created on demand. <br>
+	 * The rotation only affects the order of the queue, instances taken {@link Pool#getInstanceByAttribute(Object, Duration) by attribute} are picked as usual. <br>
+	 * The number of borrows and the total hold time of each instance is exposed by {@link Pool#instanceUsage()} as well as the {@link #withJmx(String) MBean} of the pool. <br>
+	 * Not applicable to pools with {@link #withSharedInstances(int) shared instances}.
+	 * 
+	 * @param maxBorrows
+	 *            The max number of borrows before the instance is rotated or recycled
+	 * @param recycle
+	 *            If the instance shall be destroyed as opposed to rotated to the back of the queue
+	 * @return The pool factory
+	 * @since 1.1
+	 */
+	public Factory<T> withMaxBorrows(int maxBorrows, boolean recycle) {
+		this.maxBorrows = maxBorrows;
+		this.isRecyclingAtMaxBorrows = recycle;
+		return this;
+	}
+
+	/**
+	 * Registers the pool as a {@link PoolMXBean} in the platform MBean server (optional). <br>
+	 * The MBean is named <tt>simplepool:type=Pool,name="&lt;name&gt;"</tt> and is unregistered when the pool is {@link Pool#destroy() destroyed}. <br>
+	 * It exposes the idle, borrowed and waiting counts, the total number of created, destroyed and evicted instances, wait time percentiles as well as the borrow counts and hold times per instance. <br>
+	 * Operations are provided to evict all idle instances, run the idle reaper and change the size of the pool. <br>
+	 * Creating the pool fails with a {@link PoolException} if the name is already registered. <br>
+	 * Not applicable to pools with {@link #withSharedInstances(int) shared instances}.
+	 * 
+	 * @param name
+	 *            The name of the pool
+	 * @return The pool factory
+	 * @since 1.1
+	 */
+	public Factory<T> withJmx(String name) {
+		this.jmxName = Option(name);
+		return this;
+	}
+
+	/**
+	 * Provides the source of time for the timestamps of the instances (optional). <br>
+	 * The timestamps are the base for the idle timeout, max lifetime, max hold time and eviction policies. <br>
+	 * A {@link Ticker#coarse(Duration) coarse} ticker avoids reading the system clock each time an instance is borrowed or returned. <br>
+	 * If not specified the {@link Ticker#system() system clock} is used.
+	 * 
+	 * @param ticker
+	 *            The ticker
+	 * @return The pool factory
+	 * @since 1.1
+	 */
+	public Factory<T> withTicker(Ticker ticker) {
+		requireNonNull(ticker);
+		this.ticker = ticker;
+		return this;
+	}
+
+	/**
+	 * Lets the pool join the provided registry (optional). <br>
+	 * The pool then shares the instance budget of the registry with the other members, idle instances may be reclaimed from the pool should the registry exceed its budget. <br>
+	 * Unless an executor is provided to the factory, the scheduled jobs of the pool run on the thread of the registry. <br>
+	 * The pool leaves the registry when destroyed, all pools still in the registry are destroyed when the registry is {@link PoolRegistry#shutdown(Duration) shut down}. <br>
+	 * Not applicable to pools with {@link #withSharedInstances(int) shared instances}.
+	 * 
+	 * @param registry
+	 *            The registry
+	 * @return The pool factory
+	 * @since 1.1
+	 */
+	public Factory<T> withRegistry(PoolRegistry registry) {
+		this.registry = Option(registry);
+		return this;
+	}
+
+	/**
+	 * Fills the pool with instances when it's created (optional). <br>
+	 * Equal to {@link #withPrewarm(int, boolean) withPrewarm(instances, false)}.
+	 * 
+	 * @param instances
+	 *            The number of instances to create
+	 * @return The pool factory
+	 * @since 1.1
+	 */
+	public Factory<T> withPrewarm(int instances) {
+		return withPrewarm(instances, false);
+	}
+
+	/**
+	 * Fills the pool with instances when it's created (optional). <br>
+	 * The instances are created before {@link #create()} returns, the first borrowers then don't have to pay for creating instances. <br>
+	 * At most the {@link #ofSize(int) size} of the pool is created, should the creation of an instance fail it's left to be created on demand. <br>
+	 * The instances may be created in parallel, which makes sense in particular for pools {@link #fromPrototype(Object, UnaryOperator) cloning a prototype}. <br>
+	 * With a {@link #withBatchFactory(IntFunction) batch factory} all instances are created in a single batch.
+	 * 
+	 * @param instances
+	 *            The number of instances to create
+	 * @param inParallel
+	 *            If the instances are to be created in parallel
+	 * @return The pool factory
+	 * @since 1.1
+	 */
+	public Factory<T> withPrewarm(int instances, boolean inParallel) {
+		this.prewarmCount = instances;
+		this.isParallelPrewarm = inParallel;
+		return this;
+	}
+
+	/**
+	 * Saves the state of the idle instances to a file when the pool is destroyed, restoring them when the pool is next created (optional). <br>
+	 * Useful for instances expensive to create but with a state that's cheap to save and load, e.g. compiled parsers, allowing a restarted JVM to skip creating them. <br>
+	 * When {@link Pool#destroy() destroyed} the pool serializes the idle instances to the file, before destroying them. <br>
+	 * When created the pool is filled with the instances deserialized from the file, the file is then removed. <br>
+	 * The restored instances count towards the {@link #withPrewarm(int, boolean) pre-warm}, the factory is only used for any shortfall. <br>
+	 * Instances failing to be serialized/deserialized or failing {@link #withValidator(Predicate) validation} once restored are left out. <br>
+	 * The file is streamed to a temporary file that's atomically moved in place. It's versioned and each record is checksummed, an unknown or corrupt file or record is ignored. <br>
+	 * Not applicable to pools with {@link #withSharedInstances(int) shared instances}.
+	 * 
+	 * @param file
+	 *            The snapshot file
+	 * @param serializer
+	 *            The function serializing the state of an instance
+	 * @param deserializer
+	 *            The function recreating an instance from its serialized state
+	 * @return The pool factory
+	 * @since 1.1
+	 */
+	public Factory<T> withSnapshot(Path file, ThrowableFunction1<T, byte[]> serializer, ThrowableFunction1<byte[], T> deserializer) {
+		requireNonNull(file);
+		requireNonNull(serializer);
+		requireNonNull(deserializer);
+		this.snapshot = Option(new Snapshot<>(file, serializer, deserializer));
+		return this;
+	}
+
+	/**
+	 * Creates the instances in batches (optional). <br>
+	 * Useful when creating several instances at once is much cheaper than creating them one by one, e.g. connections set up with a pipelined handshake. <br>
+	 * Concurrent demand for new instances, such as a burst of borrowers finding no idle instances or replacements of expiring instances, is coalesced into a single invocation of the batch factory. <br>
+	 * The batch factory is invoked with the number of instances needed and must return at least that many instances, any surplus is added to the idle instances of the pool. <br>
+	 * Should the factory return fewer instances the requests not served fail. <br>
+	 * Once a batch factory is provided the factory provided to {@link #poolFor(ThrowableFunction0)} is no longer used. <br>
+	 * Not applicable to pools with {@link #withSharedInstances(int) shared instances}.
+	 * 
+	 * @param batchFactory
+	 *            The function creating the requested number of instances
+	 * @return The pool factory
+	 * @since 1.1
+	 */
+	public Factory<T> withBatchFactory(IntFunction<List<T>> batchFactory) {
+		this.batchFactory = Option(batchFactory);
+		return this;
+	}
+
+	/**
+	 * Adds a listener notified on the life cycle of the instances in the pool (optional). <br>
+	 * The listener is notified synchronously by the thread causing the event, e.g. the borrower. <br>
+	 * Several listeners may be added, they're notified in the order they were added. <br>
+	 * Without listeners the pool doesn't spend a single call on notifying. <br>
+	 * Not applicable to pools with {@link #withSharedInstances(int) shared instances}.
+	 * 
+	 * @param listener
+	 *            The listener
+	 * @return The pool factory
+	 * @since 1.1
+	 */
+	public Factory<T> withListener(PoolListener<T> listener) {
+		requireNonNull(listener);
+		listeners.add(() -> listener);
+		return this;
+	}
+
+	/**
+	 * Adds a listener notified asynchronously on the life cycle of the instances in the pool (optional). <br>
+	 * The events are put in a bounded ring buffer and delivered in order to the listener by a dedicated daemon thread. <br>
+	 * The thread causing the event never waits for the listener, should the buffer be full the event is dropped. <br>
+	 * The delivery thread is stopped when the pool is {@link Pool#destroy() destroyed}. <br>
+	 * Not applicable to pools with {@link #withSharedInstances(int) shared instances}.
+	 * 
+	 * @param listener
+	 *            The listener
+	 * @param bufferSize
+	 *            The min number of events the buffer holds
+	 * @return The pool factory
+	 * @since 1.1
+	 */
+	public Factory<T> withListener(PoolListener<T> listener, int bufferSize) {
+		requireNonNull(listener);
+		listeners.add(() -> new AsyncPoolListener<>(listener, bufferSize));
 		return this;
 	}
 
 	/**
 	 * Creates the pool instance. <br>
-	 * Final operation once the all needed properties have been set on the factory.
+	 * Final operation once the all needed properties have been set on the factory. <br>
+	 * Should the factory be configured with {@link #withSharedInstances(int) shared instances} in combination with options not applicable to shared instances an {@link IllegalStateException} is raised.
 	 * 
 	 * @return The pool
 	 * @since 1.0
 	 */
 	public Pool<T> create() {
-		Predicate<T> v = validator.getOrElse(() -> t -> true); // default validator always states true
-		Consumer<T> c = destructor.getOrElse(() -> t -> {
-		}); // default destructor does nothing
+		if (maxUsersPerInstance > 1) {
+			assertSharedInstanceOptions();
+			return new SharedPoolImpl<>(this);
+		}
+		return new PoolImpl<>(this);
+	}
+
+	/**
+	 * Asserts that no options not applicable to shared instances have been set.
+	 */
+	private void assertSharedInstanceOptions() {
+		List<String> unsupported = new ArrayList<>();
+		addIf(unsupported, maxWeight != Long.MAX_VALUE, "weigher");
+		addIf(unsupported, poolMode != PoolMode.FIFO, "pool mode");
+		addIf(unsupported, evictionPolicy.isDefined(), "eviction policy");
+		addIf(unsupported, memoryPressureThreshold > 0, "memory pressure shedding");
+		addIf(unsupported, maxWaiters >= 0, "admission control");
+		addIf(unsupported, !quotas.isEmpty(), "reservation");
+		addIf(unsupported, !maxLifetime.isZero(), "max lifetime");
+		addIf(unsupported, !maxHoldTime.isZero(), "max hold time");
+		addIf(unsupported, leakReporter.isDefined(), "leak detection");
+		addIf(unsupported, maxBorrows > 0, "max borrows");
+		addIf(unsupported, jmxName.isDefined(), "JMX");
+		addIf(unsupported, registry.isDefined(), "registry");
+		addIf(unsupported, prewarmCount > 0, "pre-warm");
+		addIf(unsupported, snapshot.isDefined(), "snapshot");
+		addIf(unsupported, batchFactory.isDefined(), "batch factory");
+		addIf(unsupported, !listeners.isEmpty(), "listener");
+		if (!unsupported.isEmpty()) {
+			throw new IllegalStateException("The options " + unsupported + " are not applicable to pools with shared instances");
+		}
+	}
 
-		return new PoolImpl<>(instanceFactory, size, v, c, poolMode, idleTime, executor);
+	private static void addIf(List<String> list, boolean condition, String item) {
+		if (condition) {
+			list.add(item);
+		}
 	}
 
 }
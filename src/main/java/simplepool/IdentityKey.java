@@ -0,0 +1,72 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+/**
+ * Key used to look up borrowed instances by identity as opposed to by equality. <br>
+ * The key of a borrowed instance is created once and kept by its {@link PoolEntry}, thus borrowing allocates no key. <br>
+ * Looking up an instance uses a {@link #probe(Object) probe}, a key reused by the calling thread.
+ * @author Peter Nerg
+ * @since 1.1
+ */
+final class IdentityKey {
+	private static final ThreadLocal<IdentityKey> Probes = ThreadLocal.withInitial(() -> new IdentityKey(null));
+
+	private Object instance;
+	private int hash;
+
+	/**
+	 * Creates a key for the provided instance.
+	 * @param instance The instance
+	 */
+	IdentityKey(Object instance) {
+		set(instance);
+	}
+
+	/**
+	 * Get the probe of the calling thread set to the provided instance. <br>
+	 * The probe must only be used for lookups, never stored in a map, and should be {@link #clear() cleared} after use not to keep the instance alive.
+	 * @param instance The instance to look up
+	 * @return The probe
+	 */
+	static IdentityKey probe(Object instance) {
+		IdentityKey probe = Probes.get();
+		probe.set(instance);
+		return probe;
+	}
+
+	/**
+	 * Clears the instance of a probe.
+	 */
+	void clear() {
+		set(null);
+	}
+
+	private void set(Object instance) {
+		this.instance = instance;
+		this.hash = System.identityHashCode(instance);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof IdentityKey && ((IdentityKey) obj).instance == instance;
+	}
+}
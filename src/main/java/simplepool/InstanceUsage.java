@@ -0,0 +1,65 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import java.time.Duration;
+
+/**
+ * The usage of a single instance in a pool, i.e. how many times it has been borrowed and for how long. <br>
+ * Obtained using {@link Pool#instanceUsage()}, comparing the usage of the instances shows how evenly the borrows are spread over them.
+ * 
+ * @author Peter Nerg
+ * @since 1.1
+ */
+public final class InstanceUsage {
+	private final long borrowCount;
+	private final Duration holdTime;
+
+	InstanceUsage(long borrowCount, Duration holdTime) {
+		this.borrowCount = borrowCount;
+		this.holdTime = holdTime;
+	}
+
+	/**
+	 * The number of times the instance has been borrowed.
+	 * 
+	 * @return The number of borrows
+	 * @since 1.1
+	 */
+	public long borrowCount() {
+		return borrowCount;
+	}
+
+	/**
+	 * The total time the instance has been borrowed, not including any ongoing borrow.
+	 * 
+	 * @return The hold time
+	 * @since 1.1
+	 */
+	public Duration holdTime() {
+		return holdTime;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "InstanceUsage:[" + borrowCount + "]:[" + holdTime + "]";
+	}
+}
@@ -0,0 +1,53 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+/**
+ * Represents an instance borrowed from a pool. <br>
+ * Closing the lease returns the instance to the pool, this allows for using the lease in a <i>try-with-resources</i> statement.
+ * 
+ * <pre>
+ * try (Lease&lt;Socket&gt; lease = pool.lease(Duration.ofSeconds(1)).get()) {
+ * 	lease.instance().getOutputStream().write(data);
+ * }
+ * </pre>
+ * 
+ * Should the pool be configured with a {@link Factory#withMaxHoldTime(java.time.Duration, java.util.concurrent.ScheduledExecutorService) max hold time} the instance is reclaimed by the pool if the lease is not closed in time.
+ * 
+ * @author Peter Nerg
+ * @param <T>
+ *            The type of the borrowed instance
+ * @since 1.1
+ */
+public interface Lease<T> extends AutoCloseable {
+
+	/**
+	 * The borrowed instance.
+	 * 
+	 * @return The instance
+	 * @since 1.1
+	 */
+	T instance();
+
+	/**
+	 * Returns the instance to the pool. <br>
+	 * Invoking the operation multiple times will make no difference.
+	 * 
+	 * @since 1.1
+	 */
+	@Override
+	void close();
+}
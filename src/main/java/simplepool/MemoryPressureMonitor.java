@@ -0,0 +1,211 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import javascalautils.Option;
+
+/**
+ * Monitors the heap for memory pressure on behalf of all pools shedding idle instances under pressure. <br>
+ * A collection usage threshold is set on each heap memory pool supporting it, thus the JVM notifies us after a garbage collection failing to bring the usage of a memory pool below the threshold. <br>
+ * This means the heap is only inspected by the JVM as part of the garbage collection, there is no polling. <br>
+ * The threshold of a memory pool is global to the JVM, it's set to the lowest threshold of all registered pools and restored to its original value once the last pool is unregistered. <br>
+ * Each pool is then notified only if the usage exceeds its own threshold. <br>
+ * The pools are only weakly referenced, a pool never destroyed is unregistered once it has been garbage collected.
+ * @author Peter Nerg
+ * @since 1.1
+ */
+final class MemoryPressureMonitor {
+
+	/** The registered pools. */
+	private static final List<Registration<?>> registrations = new CopyOnWriteArrayList<>();
+	/** The collection usage thresholds of the memory pools before any pool was registered, by the name of the memory pool. */
+	private static final Map<String, Long> originalThresholds = new HashMap<>();
+	/** The listener of JVM notifications, <code>null</code> if there are no registered pools. */
+	private static NotificationListener listener;
+
+	private MemoryPressureMonitor() {
+	}
+
+	/**
+	 * Registers a function to be invoked when the heap usage after a garbage collection exceeds the provided threshold. <br>
+	 * The function is invoked using the provided executor, never by the thread delivering the JVM notifications. <br>
+	 * The target is only weakly referenced, hence the function must not itself reference the target.
+	 * @param threshold The fraction (<tt>0.0</tt> to <tt>1.0</tt>) of the max size of a memory pool
+	 * @param target The target to shed, typically the pool
+	 * @param shedder The function to invoke on the target under memory pressure
+	 * @param executor The executor to invoke the function, if None a thread shared by all pools is used
+	 * @return The function removing the registration
+	 */
+	static <P> Runnable register(double threshold, P target, Consumer<P> shedder, Option<? extends Executor> executor) {
+		Registration<P> registration = new Registration<>(threshold, target, shedder, executor.isDefined() ? executor.get() : null);
+		synchronized (MemoryPressureMonitor.class) {
+			if (registrations.isEmpty()) {
+				startListening();
+			}
+			registrations.add(registration);
+			adjustThresholds();
+		}
+		return () -> unregister(registration);
+	}
+
+	/**
+	 * Notifies all registrations with a threshold at or below the provided usage. <br>
+	 * Registrations whose target has been garbage collected are removed.
+	 * @param usage The fraction of the max size used
+	 */
+	static void pressure(double usage) {
+		for (Registration<?> registration : registrations) {
+			if (!registration.isAlive()) {
+				unregister(registration);
+			} else if (registration.threshold <= usage) {
+				registration.shed();
+			}
+		}
+	}
+
+	/**
+	 * The number of registered pools.
+	 * @return The number of registrations
+	 */
+	static int registrations() {
+		return registrations.size();
+	}
+
+	/**
+	 * Removes the registration. <br>
+	 * The thresholds of the memory pools are adjusted to the remaining registrations, or restored if there are none.
+	 * @param registration The registration to remove
+	 */
+	private static synchronized void unregister(Registration<?> registration) {
+		if (!registrations.remove(registration)) {
+			return;
+		}
+		adjustThresholds();
+		if (registrations.isEmpty()) {
+			stopListening();
+		}
+	}
+
+	private static void startListening() {
+		listener = (notification, handback) -> {
+			if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+				MemoryUsage usage = MemoryNotificationInfo.from((CompositeData) notification.getUserData()).getUsage();
+				pressure((double) usage.getUsed() / usage.getMax());
+			}
+		};
+		((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(listener, null, null);
+	}
+
+	private static void stopListening() {
+		try {
+			((NotificationEmitter) ManagementFactory.getMemoryMXBean()).removeNotificationListener(listener);
+		} catch (ListenerNotFoundException ex) {
+			// never registered, nothing to remove
+		}
+		listener = null;
+	}
+
+	/**
+	 * Sets the collection usage threshold of the heap memory pools to the lowest threshold of the registrations. <br>
+	 * A lower threshold set by someone else before the first registration is kept, with no registrations the original threshold is restored.
+	 */
+	private static void adjustThresholds() {
+		double threshold = registrations.stream().mapToDouble(r -> r.threshold).min().orElse(Double.NaN);
+		for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+			long max = memoryPool.getUsage().getMax();
+			if (memoryPool.getType() == MemoryType.HEAP && memoryPool.isCollectionUsageThresholdSupported() && max > 0) {
+				Long original = originalThresholds.computeIfAbsent(memoryPool.getName(), n -> memoryPool.getCollectionUsageThreshold());
+				if (Double.isNaN(threshold)) {
+					memoryPool.setCollectionUsageThreshold(original);
+					originalThresholds.remove(memoryPool.getName());
+				} else {
+					long bytes = (long) (max * threshold);
+					memoryPool.setCollectionUsageThreshold(original == 0 ? bytes : Math.min(original, bytes));
+				}
+			}
+		}
+	}
+
+	/**
+	 * A registered pool.
+	 */
+	private static final class Registration<P> {
+		private final double threshold;
+		private final WeakReference<P> target;
+		private final Consumer<P> shedder;
+		/** The executor to invoke the shedder, <code>null</code> to use the shared one. */
+		private final Executor executor;
+
+		private Registration(double threshold, P target, Consumer<P> shedder, Executor executor) {
+			this.threshold = threshold;
+			this.target = new WeakReference<>(target);
+			this.shedder = shedder;
+			this.executor = executor;
+		}
+
+		private boolean isAlive() {
+			return target.get() != null;
+		}
+
+		/**
+		 * Invokes the shedder on the target, unless the target has been garbage collected.
+		 */
+		private void shed() {
+			P p = target.get();
+			if (p == null) {
+				return;
+			}
+			try {
+				(executor != null ? executor : SheddingThread.Instance).execute(() -> shedder.accept(p));
+			} catch (RejectedExecutionException ex) {
+				// the executor of the pool has been shut down, there is nothing to shed into
+			}
+		}
+	}
+
+	/**
+	 * Invokes the shedders of pools without an executor of their own. <br>
+	 * Lazily created on first use, shared by all pools.
+	 */
+	private static final class SheddingThread {
+		private static final ExecutorService Instance = Executors.newSingleThreadExecutor(r -> {
+			Thread thread = new Thread(r, "simplepool-memory-pressure");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+}
@@ -0,0 +1,199 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import simplepool.Constants.WaitStrategy;
+
+/**
+ * Partitions the capacity of a pool among tenants. <br>
+ * Each tenant with a {@link Quota quota} has a reservation, i.e. capacity only used by others when the tenant isn't using it. <br>
+ * Each such tenant also has a ceiling, i.e. the max capacity it may use at the same time. <br>
+ * The capacity not reserved is shared by all tenants, tenants without quota only use the shared capacity and any unused reservations. <br>
+ * The capacity is represented as semaphores, one for the shared capacity and one for each reservation, thus there is no global lock. <br>
+ * A borrower takes capacity from its own reservation, then the shared capacity and finally the reservations of others.
+ * @author Peter Nerg
+ * @since 1.1
+ */
+final class Partitions {
+	/** The max time (millis) a waiting borrower waits on one source before checking other sources of capacity. */
+	private static final long WaitSlice = 10;
+
+	private final Semaphore shared;
+	/** How borrowers wait for capacity. */
+	private final WaitStrategy waitStrategy;
+	private final Map<Object, Partition> partitions = new HashMap<>();
+	private final Partition[] reserved;
+	/** The partition used by tenants without a quota. */
+	private final Partition unreserved = new Partition(0, -1);
+
+	/**
+	 * Creates the partitions with borrowers parking while waiting for capacity.
+	 * @param capacity The total capacity
+	 * @param quotas The quotas per tenant
+	 */
+	Partitions(int capacity, Map<Object, Quota> quotas) {
+		this(capacity, quotas, WaitStrategy.PARK);
+	}
+
+	/**
+	 * Creates the partitions.
+	 * @param capacity The total capacity
+	 * @param quotas The quotas per tenant
+	 * @param waitStrategy How borrowers wait for capacity
+	 */
+	Partitions(int capacity, Map<Object, Quota> quotas, WaitStrategy waitStrategy) {
+		this.waitStrategy = waitStrategy;
+		int sharedCapacity = capacity;
+		for (Map.Entry<Object, Quota> entry : quotas.entrySet()) {
+			Quota quota = entry.getValue();
+			partitions.put(entry.getKey(), new Partition(quota.reserved, quota.ceiling));
+			sharedCapacity -= quota.reserved;
+		}
+		if (sharedCapacity < 0) {
+			throw new IllegalArgumentException("The sum of all reservations exceeds the capacity [" + capacity + "]");
+		}
+		this.shared = new Semaphore(sharedCapacity);
+		this.reserved = partitions.values().toArray(new Partition[partitions.size()]);
+	}
+
+	/**
+	 * Acquires one unit of capacity for the provided tenant.
+	 * @param tenant The tenant
+	 * @param maxWaitMillis The max time to wait for capacity
+	 * @return The grant to release once the capacity is no longer used, <code>null</code> if timed out
+	 * @throws InterruptedException If interrupted while waiting
+	 */
+	Grant acquire(Object tenant, long maxWaitMillis) throws InterruptedException {
+		Partition partition = partitions.getOrDefault(tenant, unreserved);
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+		if (partition.ceiling != null && !PermitBlocker.acquire(partition.ceiling, maxWaitMillis, waitStrategy)) {
+			return null;
+		}
+		try {
+			for (;;) {
+				Semaphore source = tryAcquire(partition);
+				if (source != null) {
+					return new Grant(partition, source);
+				}
+				long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+				if (remaining <= 0) {
+					partition.releaseCeiling();
+					return null;
+				}
+				// wait on the own reservation if any, otherwise on the shared capacity
+				// only waiting for a slice lets us pick up capacity freed elsewhere
+				Semaphore primary = partition.reservation > 0 ? partition.reserved : shared;
+				if (PermitBlocker.acquire(primary, Math.min(remaining, WaitSlice), waitStrategy)) {
+					return new Grant(partition, primary);
+				}
+			}
+		} catch (InterruptedException ex) {
+			partition.releaseCeiling();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Attempts to take capacity without waiting.
+	 * @param partition The partition of the borrower
+	 * @return The semaphore the capacity was taken from, <code>null</code> if there was no free capacity
+	 */
+	private Semaphore tryAcquire(Partition partition) {
+		if (partition.reservation > 0 && partition.reserved.tryAcquire()) {
+			return partition.reserved;
+		}
+		if (shared.tryAcquire()) {
+			return shared;
+		}
+		// borrow from the unused reservations of others
+		for (Partition other : reserved) {
+			if (other != partition && other.reservation > 0 && other.reserved.tryAcquire()) {
+				return other.reserved;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * The quota of a tenant.
+	 */
+	static final class Quota {
+		private final int reserved;
+		private final int ceiling;
+
+		/**
+		 * Creates the quota
+		 * @param reserved The capacity reserved for the tenant
+		 * @param ceiling The max capacity the tenant may use, not less than the reserved capacity
+		 * @throws IllegalArgumentException If the reservation is negative or exceeds the ceiling
+		 */
+		Quota(int reserved, int ceiling) {
+			if (reserved < 0 || ceiling < reserved) {
+				throw new IllegalArgumentException("The reservation [" + reserved + "] must not be negative nor exceed the ceiling [" + ceiling + "]");
+			}
+			this.reserved = reserved;
+			this.ceiling = ceiling;
+		}
+	}
+
+	/**
+	 * The capacity of a single tenant.
+	 */
+	private static final class Partition {
+		private final int reservation;
+		private final Semaphore reserved;
+		/** Bounds the capacity used by the tenant, <code>null</code> if unbounded. */
+		private final Semaphore ceiling;
+
+		private Partition(int reservation, int ceiling) {
+			this.reservation = reservation;
+			this.reserved = new Semaphore(reservation);
+			this.ceiling = ceiling >= 0 ? new Semaphore(ceiling) : null;
+		}
+
+		private void releaseCeiling() {
+			if (ceiling != null) {
+				ceiling.release();
+			}
+		}
+	}
+
+	/**
+	 * One unit of capacity granted to a borrower.
+	 */
+	static final class Grant {
+		private final Partition partition;
+		private final Semaphore source;
+
+		private Grant(Partition partition, Semaphore source) {
+			this.partition = partition;
+			this.source = source;
+		}
+
+		/**
+		 * Releases the capacity, must only be invoked once.
+		 */
+		void release() {
+			source.release();
+			partition.releaseCeiling();
+		}
+	}
+}
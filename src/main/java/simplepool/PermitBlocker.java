@@ -0,0 +1,150 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import simplepool.Constants.WaitStrategy;
+
+/**
+ * Acquires a permit from a semaphore in cooperation with the {@link ForkJoinPool}. <br>
+ * A borrower running in a fork/join pool (e.g. parallel streams) that blocks waiting for a permit reduces the parallelism of the fork/join pool. <br>
+ * By blocking via {@link ForkJoinPool#managedBlock(java.util.concurrent.ForkJoinPool.ManagedBlocker) managedBlock} the fork/join pool may spawn a compensation thread. <br>
+ * As the blocker first checks if a permit is immediately available compensation only happens if the borrower truly has to park. <br>
+ * Depending on the {@link WaitStrategy} the borrower may spin and/or yield instead of parking.
+ * @author Peter Nerg
+ * @since 1.1
+ */
+final class PermitBlocker implements ForkJoinPool.ManagedBlocker {
+	/** The number of attempts to acquire a permit before yielding/parking. */
+	static final int SpinAttempts = 1000;
+
+	private final Semaphore permits;
+	private final long maxWaitMillis;
+	private boolean acquired = false;
+
+	private PermitBlocker(Semaphore permits, long maxWaitMillis) {
+		this.permits = permits;
+		this.maxWaitMillis = maxWaitMillis;
+	}
+
+	/**
+	 * Acquires a permit from the provided semaphore. <br>
+	 * Only threads belonging to a fork/join pool are managed, other threads are simply blocked on the semaphore.
+	 * @param permits The semaphore to acquire the permit from
+	 * @param maxWaitMillis The max time to wait for a permit
+	 * @return <code>true</code> if a permit was acquired
+	 * @throws InterruptedException If interrupted while waiting
+	 */
+	static boolean acquire(Semaphore permits, long maxWaitMillis) throws InterruptedException {
+		return acquire(permits, maxWaitMillis, WaitStrategy.PARK);
+	}
+
+	/**
+	 * Acquires a permit from the provided semaphore waiting according to the wait strategy.
+	 * @param permits The semaphore to acquire the permit from
+	 * @param maxWaitMillis The max time to wait for a permit
+	 * @param strategy How to wait for the permit
+	 * @return <code>true</code> if a permit was acquired
+	 * @throws InterruptedException If interrupted while waiting
+	 */
+	static boolean acquire(Semaphore permits, long maxWaitMillis, WaitStrategy strategy) throws InterruptedException {
+		if (permits.tryAcquire()) {
+			return true;
+		}
+		long start = System.nanoTime();
+		long maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+		switch (strategy) {
+		case BUSY_SPIN:
+			return spin(permits, start, maxWaitNanos, Long.MAX_VALUE, false);
+		case SPIN_THEN_YIELD:
+			return spin(permits, start, maxWaitNanos, SpinAttempts, true);
+		case SPIN_THEN_PARK:
+			if (spin(permits, start, maxWaitNanos, SpinAttempts, false)) {
+				return true;
+			}
+			maxWaitMillis = TimeUnit.NANOSECONDS.toMillis(Math.max(0, maxWaitNanos - (System.nanoTime() - start)));
+			break;
+		default:
+			break;
+		}
+		if (!(Thread.currentThread() instanceof ForkJoinWorkerThread)) {
+			return permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+		}
+		PermitBlocker blocker = new PermitBlocker(permits, maxWaitMillis);
+		ForkJoinPool.managedBlock(blocker);
+		return blocker.acquired;
+	}
+
+	/**
+	 * Repeatedly attempts to acquire a permit without parking.
+	 * @param permits The semaphore to acquire the permit from
+	 * @param start The time (nanos) the wait started
+	 * @param maxWaitNanos The max time to wait for a permit
+	 * @param spinAttempts The number of attempts before giving up, or if yielding before starting to yield
+	 * @param yield If to yield between attempts once the spin attempts are exhausted
+	 * @return <code>true</code> if a permit was acquired
+	 * @throws InterruptedException If interrupted while waiting
+	 */
+	private static boolean spin(Semaphore permits, long start, long maxWaitNanos, long spinAttempts, boolean yield) throws InterruptedException {
+		for (long attempt = 1; System.nanoTime() - start < maxWaitNanos; attempt++) {
+			if (permits.tryAcquire()) {
+				return true;
+			}
+			if (attempt >= spinAttempts) {
+				if (!yield) {
+					return false;
+				}
+				Thread.yield();
+			}
+			// checking the interrupt status is cheap, but not needed on every attempt
+			if ((attempt & 0xFF) == 0 && Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+		}
+		return permits.tryAcquire();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.concurrent.ForkJoinPool.ManagedBlocker#block()
+	 */
+	@Override
+	public boolean block() throws InterruptedException {
+		if (!acquired) {
+			acquired = permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+		}
+		// either we got the permit or we timed out, in both cases there's no need to block any further
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.concurrent.ForkJoinPool.ManagedBlocker#isReleasable()
+	 */
+	@Override
+	public boolean isReleasable() {
+		if (!acquired) {
+			acquired = permits.tryAcquire();
+		}
+		return acquired;
+	}
+}
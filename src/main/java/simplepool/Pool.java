@@ -15,8 +15,15 @@
  */
 package simplepool;
 
+import static javascalautils.concurrent.FutureCompanion.Future;
+
 import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
 
+import javascalautils.ThrowableFunction1;
 import javascalautils.Try;
 import javascalautils.Unit;
 import javascalautils.concurrent.Future;
@@ -54,6 +61,113 @@ public interface Pool<T> {
 	 */
 	Try<T> getInstance(Duration maxWaitTime);
 
+	/**
+	 * Request a object instance matching the provided predicate from the pool. <br>
+	 * Works as {@link #getInstance(Duration)} but only idle instances matching the predicate are considered. <br>
+	 * Should no idle instance match a new instance is created, if the pool is full an idle non-matching instance is destroyed to make room for it. <br>
+	 * The idle instances are scanned, for frequent lookups consider {@link #getInstanceByAttribute(Object, Duration)}.
+	 * @param predicate
+	 *            The predicate the instance shall match
+	 * @param maxWaitTime
+	 *            The time to wait for a free object
+	 * @return The object instance
+	 * @since 1.1
+	 */
+	Try<T> getInstance(Predicate<T> predicate, Duration maxWaitTime);
+
+	/**
+	 * Request a object instance from the pool on behalf of a tenant. <br>
+	 * Works as {@link #getInstance(Duration)} but the capacity is taken from the {@link Factory#withReservation(Object, int, int) reservation} of the tenant. <br>
+	 * Should the pool not be partitioned the tenant is ignored.
+	 * @param tenant
+	 *            The tenant
+	 * @param maxWaitTime
+	 *            The time to wait for a free object
+	 * @return The object instance
+	 * @since 1.1
+	 */
+	default Try<T> getInstanceFor(Object tenant, Duration maxWaitTime) {
+		return getInstance(maxWaitTime);
+	}
+
+	/**
+	 * Request a object instance with the provided attribute from the pool. <br>
+	 * Works as {@link #getInstance(Predicate, Duration)} but the idle instance is looked up using the attribute {@link Factory#withAttribute(java.util.function.Function) index} of the pool. <br>
+	 * If the pool has no such index no idle instance will match, i.e. a new instance is always created.
+	 * @param attribute
+	 *            The attribute of the instance
+	 * @param maxWaitTime
+	 *            The time to wait for a free object
+	 * @return The object instance
+	 * @since 1.1
+	 */
+	Try<T> getInstanceByAttribute(Object attribute, Duration maxWaitTime);
+
+	/**
+	 * Request a lease on an object instance from the pool. <br>
+	 * Works as {@link #getInstance(Duration)} but the instance is wrapped in a {@link Lease} which returns the instance to the pool once closed.
+	 * @param maxWaitTime
+	 *            The time to wait for a free object
+	 * @return The lease
+	 * @since 1.1
+	 */
+	default Try<Lease<T>> lease(Duration maxWaitTime) {
+		return getInstance(maxWaitTime).map(instance -> new PoolLease<>(this, instance));
+	}
+
+	/**
+	 * Executes the provided function with an instance borrowed from the pool. <br>
+	 * The instance is guaranteed to be returned to the pool once the function has completed, regardless of the outcome of the function. <br>
+	 * Should the function throw an exception considered by the {@link Factory#withBrokenInstanceDetector(java.util.function.Predicate) broken instance detector} to mark the instance as broken the instance is destroyed instead of returned. <br>
+	 * If the pool has been {@link #destroy() destroyed} an {@link IllegalStateException} is raised.
+	 * @param <R>
+	 *            The type of the result of the function
+	 * @param maxWaitTime
+	 *            The time to wait for a free object
+	 * @param function
+	 *            The function to execute with the instance
+	 * @return The result of the function, or the failure to borrow an instance
+	 * @since 1.1
+	 */
+	<R> Try<R> withInstance(Duration maxWaitTime, ThrowableFunction1<T, R> function);
+
+	/**
+	 * Asynchronously executes the provided function with an instance borrowed from the pool. <br>
+	 * Works as {@link #withInstance(Duration, ThrowableFunction1)} but both the borrowing and the function are executed by a separate thread.
+	 * @param <R>
+	 *            The type of the result of the function
+	 * @param maxWaitTime
+	 *            The time to wait for a free object
+	 * @param function
+	 *            The function to execute with the instance
+	 * @return The Future that will be completed with the result of the function
+	 * @since 1.1
+	 */
+	default <R> Future<R> withInstanceAsync(Duration maxWaitTime, ThrowableFunction1<T, R> function) {
+		return Future(() -> withInstance(maxWaitTime, function).get());
+	}
+
+	/**
+	 * Applies the function to all items using instances borrowed from the pool. <br>
+	 * The items are processed in parallel by up to as many instances as there are available processors. <br>
+	 * Each borrowed instance is used for as many items as possible before it's returned, i.e. there is no borrow/return per item. <br>
+	 * Should the function fail for any item the processing is stopped and the failure is returned.
+	 * @param <I>
+	 *            The type of the items
+	 * @param <R>
+	 *            The type of the result of the function
+	 * @param items
+	 *            The items to apply the function to
+	 * @param function
+	 *            The function
+	 * @return The results, in the same order as the items
+	 * @see PooledExecutor
+	 * @since 1.1
+	 */
+	default <I, R> Try<List<R>> parallelMap(Iterable<I> items, BiFunction<T, I, R> function) {
+		return PooledExecutor.parallelMap(this, items, function, Runtime.getRuntime().availableProcessors());
+	}
+
 	/**
 	 * Returns a borrowed instance to the pool. <br>
 	 * Should the pool be full and an attempt is made to return an instance the operation will result in a {@link javascalautils.Failure}. <br>
@@ -65,6 +179,18 @@ public interface Pool<T> {
 	 */
 	Try<Unit> returnInstance(T instance);
 	
+	/**
+	 * The usage of each instance in the pool, idle as well as borrowed, the most borrowed first. <br>
+	 * Shows how evenly the borrows are spread over the instances, e.g. to tune {@link Factory#withMaxBorrows(int, boolean) max borrows}. <br>
+	 * The usage is a snapshot taken when invoking the operation. <br>
+	 * Pools with {@link Factory#withSharedInstances(int) shared instances} don't track the usage, they return an empty list.
+	 * @return The usage per instance
+	 * @since 1.1
+	 */
+	default List<InstanceUsage> instanceUsage() {
+		return Collections.emptyList();
+	}
+
 	/**
 	 * Permanently destroys the pool and all instances in it. <br>
 	 * Attempts to use the pool after its destruction will yield an error. <br>
@@ -74,5 +200,20 @@ public interface Pool<T> {
 	 * @return The Future that will be completed once the pool is completely destroyed
 	 * @since 1.1
 	 */
-	Future<Unit> destroy();
+	default Future<Unit> destroy() {
+		return destroy(Duration.ofMillis(Long.MAX_VALUE));
+	}
+
+	/**
+	 * Permanently destroys the pool and all instances in it, waiting at most the grace period for borrowed instances to be returned. <br>
+	 * Works as {@link #destroy()} but instances still borrowed at the end of the grace period are forcibly evicted and destroyed, even though still in use. <br>
+	 * Any later attempt to return an evicted instance will result in a {@link javascalautils.Failure}. <br>
+	 * No thread is held waiting for the borrowed instances, the destruction is completed by the return of the last instance or at the end of the grace period. <br>
+	 * Only the grace period of the first invocation applies, further invocations make no difference.
+	 * @param gracePeriod
+	 *            The max time to wait for borrowed instances to be returned
+	 * @return The Future that will be completed once the pool is completely destroyed
+	 * @since 1.1
+	 */
+	Future<Unit> destroy(Duration gracePeriod);
 }
@@ -0,0 +1,218 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import static javascalautils.OptionCompanion.Option;
+
+import javascalautils.Option;
+
+/**
+ * Book keeping for a single object created by the pool. <br>
+ * As opposed to the {@link PooledInstance} which only lives while the object sits in the queue the entry lives from the creation of the object until it is destroyed.
+ * @author Peter Nerg
+ * @since 1.1
+ * @param <T> The type of the value kept by this entry
+ */
+final class PoolEntry<T> {
+	/** The pooled object instance. */
+	private final T instance;
+
+	/** The key of the instance in the map of borrowed instances. */
+	private final IdentityKey key;
+
+	private final long created;
+
+	/** The point in time (millis) when this instance expires. */
+	private final long expires;
+
+	/** 
+	 * The point in time (millis) when this instance was last borrowed. <br>
+	 * Written by the borrowing thread before the entry is published to the map of borrowed instances.
+	 */
+	private long borrowed;
+
+	/** 
+	 * The number of times the instance has been borrowed. <br>
+	 * Only written by the borrowing thread but read by the eviction job and JMX, hence volatile.
+	 */
+	private volatile long borrowCount;
+
+	/** 
+	 * The total time (millis) the instance has been borrowed, not including any ongoing borrow. <br>
+	 * Only written by the returning thread but read by JMX, hence volatile.
+	 */
+	private volatile long holdTime;
+
+	/** The captured stack of the borrowing thread, only set for sampled borrows. */
+	private Throwable borrowSite;
+
+	/** The capacity granted to the tenant of the current borrower, <code>null</code> if not partitioned. */
+	private Partitions.Grant grant;
+
+	/** The weight of the instance as accounted for by the pool. */
+	private volatile long weight;
+
+	/**
+	 * Creates an entry for an instance
+	 * @param instance The object instance
+	 * @param created The time (millis) the instance was created
+	 * @param lifetimeMillis The lifetime in millis of the instance, zero or less means eternal life
+	 */
+	PoolEntry(T instance, long created, long lifetimeMillis) {
+		this.instance = instance;
+		this.key = new IdentityKey(instance);
+		this.created = created;
+		this.expires = lifetimeMillis > 0 ? created + lifetimeMillis : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Get the object instance
+	 * @return The object instance
+	 */
+	T instance() {
+		return instance;
+	}
+
+	/**
+	 * The key of the object when looking it up by identity.
+	 * @return The key
+	 */
+	IdentityKey key() {
+		return key;
+	}
+
+	/**
+	 * The time the object was created.
+	 * @return Time in millis
+	 */
+	long created() {
+		return created;
+	}
+
+	/**
+	 * The time the object expires.
+	 * @return Time in millis
+	 */
+	long expires() {
+		return expires;
+	}
+
+	/**
+	 * Marks the entry as borrowed.
+	 * @param now The time of the borrow
+	 * @param borrowSite The captured stack of the borrower, <code>null</code> if not sampled
+	 */
+	void markBorrowed(long now, Throwable borrowSite) {
+		this.borrowed = now;
+		this.borrowSite = borrowSite;
+		this.borrowCount++;
+	}
+
+	/**
+	 * Marks the entry as returned, adding the time of the borrow to the total hold time.
+	 * @param now The time of the return
+	 */
+	void markReturned(long now) {
+		this.holdTime += Math.max(0, now - borrowed);
+	}
+
+	/**
+	 * The time the object was last borrowed.
+	 * @return Time in millis
+	 */
+	long borrowed() {
+		return borrowed;
+	}
+
+	/**
+	 * The number of times the object has been borrowed.
+	 * @return The number of borrows
+	 */
+	long borrowCount() {
+		return borrowCount;
+	}
+
+	/**
+	 * The total time the object has been borrowed, not including any ongoing borrow.
+	 * @return Time in millis
+	 */
+	long holdTime() {
+		return holdTime;
+	}
+
+	/**
+	 * The captured stack of the last borrower.
+	 * @return The stack, None if the borrow was not sampled
+	 */
+	Option<Throwable> borrowSite() {
+		return Option(borrowSite);
+	}
+
+	/**
+	 * Sets the capacity granted to the tenant of the current borrower.
+	 * @param grant The grant, <code>null</code> if not partitioned
+	 */
+	void grant(Partitions.Grant grant) {
+		this.grant = grant;
+	}
+
+	/**
+	 * Releases the capacity granted to the tenant of the current borrower, if any.
+	 */
+	void releaseGrant() {
+		Partitions.Grant g = grant;
+		grant = null;
+		if (g != null) {
+			g.release();
+		}
+	}
+
+	/**
+	 * The weight of the instance as accounted for by the pool.
+	 * @return The weight
+	 */
+	long weight() {
+		return weight;
+	}
+
+	/**
+	 * Sets the weight of the instance.
+	 * @param weight The weight
+	 * @return The difference to the previous weight
+	 */
+	long weight(long weight) {
+		long delta = weight - this.weight;
+		this.weight = weight;
+		return delta;
+	}
+
+	/**
+	 * If this instance has reached its lifetime at the provided time.
+	 * @param now The time to check against
+	 * @return <code>true</code> if expired
+	 */
+	boolean isExpired(long now) {
+		return expires <= now;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "PoolEntry:["+created+"]:["+expires+"]:["+instance+"]";
+	}
+}
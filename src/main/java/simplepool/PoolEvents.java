@@ -0,0 +1,100 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+/**
+ * Emits diagnostic events for the pool. <br>
+ * This is the Java 8 variant where all operations do nothing, i.e. are optimized away by the JIT. <br>
+ * The multi-release jar contains a variant for Java 11 and later emitting JDK Flight Recorder events, see <tt>src/main/java11</tt>. <br>
+ * Events spanning a period of time are started by a <i>begin</i> operation returning an opaque event object which is then passed to the matching <i>end</i> operation. <br>
+ * A <code>null</code> event object means the event is not recorded.
+ * @author Peter Nerg
+ * @since 1.1
+ */
+final class PoolEvents {
+
+	static final String Acquired = "acquired";
+	static final String TimedOut = "timeout";
+	static final String Rejected = "rejected";
+	static final String Interrupted = "interrupted";
+	static final String Failed = "failed";
+
+	private PoolEvents() {
+	}
+
+	/**
+	 * Begins the wait for a permit to borrow an instance.
+	 * @return The event, <code>null</code> if not recorded
+	 */
+	static Object beginBorrowWait() {
+		return null;
+	}
+
+	/**
+	 * Ends the wait for a permit to borrow an instance.
+	 * @param event The event as returned by {@link #beginBorrowWait()}
+	 * @param outcome The outcome of the wait
+	 */
+	static void endBorrowWait(Object event, String outcome) {
+	}
+
+	/**
+	 * Begins the creation of an instance.
+	 * @return The event, <code>null</code> if not recorded
+	 */
+	static Object beginCreate() {
+		return null;
+	}
+
+	/**
+	 * Ends the creation of an instance.
+	 * @param event The event as returned by {@link #beginCreate()}
+	 * @param success If the instance was created
+	 */
+	static void endCreate(Object event, boolean success) {
+	}
+
+	/**
+	 * A returned instance is destroyed instead of put back into the pool.
+	 * @param instance The instance
+	 * @param isBroken If broken as decided by the broken instance detector, otherwise it failed validation
+	 */
+	static void validationFailed(Object instance, boolean isBroken) {
+	}
+
+	/**
+	 * An idle instance is evicted from the pool. <br>
+	 * Emitted for every idle instance taken out of the pool to be destroyed, e.g. by the idle timeout, the eviction policy, the weight budget, a refresh, an explicit eviction or destroying the pool.
+	 * @param idleTime The time (millis) the instance was idle
+	 */
+	static void idleEvicted(long idleTime) {
+	}
+
+	/**
+	 * Begins the destruction of the pool.
+	 * @return The event, <code>null</code> if not recorded
+	 */
+	static Object beginDestroy() {
+		return null;
+	}
+
+	/**
+	 * Ends the destruction of the pool.
+	 * @param event The event as returned by {@link #beginDestroy()}
+	 */
+	static void endDestroy(Object event) {
+	}
+}
@@ -22,7 +22,7 @@ package simplepool;
  * @author Peter Nerg
  * @since 1.0
  */
-public final class PoolException extends RuntimeException {
+public class PoolException extends RuntimeException {
 	private static final long serialVersionUID = 5382005746070605737L;
 
 	/**
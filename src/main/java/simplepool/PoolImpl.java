@@ -15,70 +15,296 @@
  */
 package simplepool;
 
+import static java.util.stream.Collectors.toList;
+import static javascalautils.Option.None;
+import static javascalautils.OptionCompanion.Option;
+import static javascalautils.TryCompanion.Failure;
+import static javascalautils.TryCompanion.Success;
 import static javascalautils.TryCompanion.Try;
+import static javascalautils.concurrent.FutureCompanion.Future;
+import static javascalautils.concurrent.PromiseCompanion.Promise;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.IntStream;
 
 import javascalautils.Option;
 import javascalautils.ThrowableFunction0;
+import javascalautils.ThrowableFunction1;
 import javascalautils.Try;
 import javascalautils.Unit;
 import javascalautils.Validator;
 import javascalautils.concurrent.Future;
+import javascalautils.concurrent.Promise;
 import simplepool.Constants.PoolMode;
-import static javascalautils.concurrent.FutureCompanion.Future;
+import simplepool.Constants.WaitStrategy;
 
 /**
  * The pool implementation.
  * 
  * @author Peter Nerg
  */
-final class PoolImpl<T> implements Pool<T> {
+final class PoolImpl<T> implements Pool<T>, PoolRegistry.Member {
+	/** The weight of each hold time in the moving average. */
+	private static final double HoldTimeSmoothing = 0.1;
+
 	private final ThrowableFunction0<T> instanceFactory;
 	private final Predicate<T> validator;
 	private final Consumer<T> destructor;
+	private final Predicate<Throwable> brokenInstanceDetector;
+	private final WaitStrategy waitStrategy;
+	/** The source of the time for all timestamps of the instances. */
+	private final Ticker ticker;
 
 	/** The actual queue implementation. */
-	private final PoolQueue<T> poolQueue;
+	private final PoolQueue<PoolEntry<T>> poolQueue;
+
+	/** The entries for all instances currently borrowed from the pool. */
+	private final Map<IdentityKey, PoolEntry<T>> borrowed = new ConcurrentHashMap<>();
 
 	/**
 	 * Acts as gate keeper only allowing a maximum number of concurrent users/threads for this pool.
 	 */
-	private final Semaphore getPermits;
-	private final Semaphore returnPermits = new Semaphore(0);
-	private final Option<ScheduledFuture<?>> scheduledFuture;
+	private final Permits getPermits;
+	private final List<ScheduledFuture<?>> scheduledFutures = new ArrayList<>();
+	private final Option<ScheduledExecutorService> executor;
 
 	/**
 	 * If this pool is valid. <br>
 	 * I.e. {@link #destroy()} has not been invoked.
 	 */
 	private final AtomicBoolean isValid = new AtomicBoolean(true);
-	private final int maxSize;
+	/** If the tear down of the destroyed pool has started, i.e. all permits have been returned. */
+	private final AtomicBoolean isTornDown = new AtomicBoolean(false);
+	/** Completed once the pool has been destroyed. */
+	private final Promise<Unit> destroyed = Promise();
+	/** The flight recorder event for destroying the pool, spans from invoking destroy until torn down. */
+	private volatile Object destroyEvent;
+	/** The forced eviction of borrowed instances at the end of the grace period, <code>null</code> if not scheduled. */
+	private volatile ScheduledFuture<?> forcedEviction;
+	/** The max number of instances, only changed via {@link #resize(int)}. */
+	private volatile int maxSize;
+	/** The number of instances created by the pool and not yet destroyed. */
+	private final AtomicInteger instances = new AtomicInteger();
+
+	/** Takes any idle instance, i.e. the first in the queue. */
+	private final Supplier<Option<PoolEntry<T>>> anyIdleInstance;
+
+	/** The max lifetime (millis) of an instance, zero means no limit. */
+	private final long maxLifetime;
+	/** The max time (millis) an individual lifetime may be shortened. */
+	private final long lifetimeJitter;
+
+	/** The fraction of borrows to capture the stack of the borrower for. */
+	private final double leakSampleRate;
+	/** The number of borrows before an instance is rotated/recycled, zero or less means no limit. */
+	private final int maxBorrows;
+	private final boolean isRecyclingAtMaxBorrows;
+	private final Option<Consumer<PoolException>> leakReporter;
+	/** The job reclaiming expired leases, assigned as the pool is started. */
+	private Option<ScheduledFuture<?>> reclaimFuture = None();
+
+	private final ToLongFunction<T> weigher;
+	private final long maxWeight;
+	/** The total weight of all instances created by the pool and not yet destroyed. */
+	private final AtomicLong totalWeight = new AtomicLong();
+
+	/** The max number of waiting borrowers, negative if admission control is disabled. */
+	private final int maxWaiters;
+	/** The number of borrowers waiting for a permit. */
+	private final AtomicInteger waiters = new AtomicInteger();
+	/**
+	 * The moving average of the time (millis) instances are held by borrowers. <br>
+	 * Updated without synchronization, a lost update only means a slightly less accurate average.
+	 */
+	private volatile double averageHoldTime = 0;
+
+	/** The capacity per tenant, None if the pool isn't partitioned. */
+	private final Option<Partitions> partitions;
+
+	/** Removes the pool from the memory pressure monitor, assigned as the pool is started. */
+	private Option<Runnable> memoryPressureRegistration = None();
 
-	PoolImpl(ThrowableFunction0<T> instanceFactory, int maxSize, Predicate<T> validator, Consumer<T> destructor, PoolMode poolMode, Duration idleTimeout, Option<ScheduledExecutorService> executor) {
-		this.maxSize = maxSize;
-		poolQueue = poolMode == PoolMode.FIFO ? new PoolQueueFIFO<>() : new PoolQueueLIFO<>();
-		this.instanceFactory = instanceFactory;
-		this.validator = validator;
-		this.destructor = destructor;
-		this.getPermits = new Semaphore(maxSize);
+	/** The idle timeout/eviction policy job, None if neither is configured. Assigned as the pool is started. */
+	private Option<Runnable> reaper = None();
+
+	private final PoolStatistics statistics = new PoolStatistics();
+	/** Removes the pool from the MBean server. */
+	private final Option<Runnable> jmxRegistration;
+	/**
+	 * The listener to notify, <code>null</code> if there are no listeners. <br>
+	 * Deliberately not an Option, without listeners notifying costs nothing but a null check.
+	 */
+	private final PoolListener<T> listener;
+
+	/** Saves/restores the state of the idle instances, None if not configured. */
+	private final Option<Snapshot<T>> snapshot;
+
+	/** Coalesces the creation of instances into batches, None if there's no batch factory. */
+	private final Option<BatchCreator<PoolEntry<T>>> batchCreator;
+
+	/** The registry the pool has joined, None if not a member of a registry. */
+	private final Option<PoolRegistry> registry;
+	/**
+	 * The time (millis) the pool was last borrowed from. <br>
+	 * Read by the thread of the registry, thus volatile. Borrowers only write it when changed, i.e. at most once per millisecond.
+	 */
+	private volatile long lastActive;
+
+	/** Serializes changes of the size of the pool. */
+	private final Object resizeLock = new Object();
+
+	PoolImpl(Factory<T> factory) {
+		this.maxSize = factory.size;
+		this.ticker = factory.ticker;
+		this.lastActive = ticker.millis();
+		Option<Function<PoolEntry<T>, Object>> attributeFunction = factory.attributeFunction.map(f -> e -> f.apply(e.instance()));
+		poolQueue = createQueue(factory.poolMode, attributeFunction, ticker);
+		this.anyIdleInstance = () -> poolQueue.head();
+		this.instanceFactory = factory.instanceFactory;
+		this.snapshot = factory.snapshot;
+		this.batchCreator = factory.batchFactory.map(f -> new BatchCreator<>(n -> createBatch(f, n), this::addIdleInstance));
+		this.waitStrategy = factory.waitStrategy;
+		this.validator = factory.validator.getOrElse(() -> t -> true); // default validator always states true
+		this.destructor = factory.destructor.getOrElse(() -> t -> {
+		}); // default destructor does nothing
+		this.brokenInstanceDetector = factory.brokenInstanceDetector.getOrElse(() -> ex -> false); // default leaves it to the validator
+		this.getPermits = new Permits(maxSize);
+		this.registry = factory.registry;
+		// without an executor of its own the pool uses the one of the registry
+		this.executor = factory.executor.isDefined() ? factory.executor : registry.map(PoolRegistry::executor);
+		this.maxLifetime = Math.max(0, factory.maxLifetime.toMillis());
+		this.lifetimeJitter = Math.max(0, Math.min(factory.lifetimeJitter.toMillis(), maxLifetime - 1));
+		this.leakSampleRate = factory.leakSampleRate;
+		this.maxBorrows = factory.maxBorrows;
+		this.isRecyclingAtMaxBorrows = factory.isRecyclingAtMaxBorrows;
+		this.leakReporter = factory.leakReporter;
+		this.weigher = factory.weigher;
+		this.maxWeight = factory.maxWeight;
+		this.maxWaiters = factory.maxWaiters;
+		this.listener = PoolListeners.of(factory.listeners.stream().map(Supplier::get).collect(toList()));
+		this.partitions = Option(factory.quotas.isEmpty() ? null : new Partitions(maxSize, factory.quotas, factory.waitStrategy));
+		// registered before any side effect, a name already in use fails the creation before any job is scheduled or instance created
+		this.jmxRegistration = factory.jmxName.map(name -> PoolManagement.register(name, this));
+		try {
+			startJobs(factory);
+		} catch (RuntimeException ex) {
+			abandon();
+			throw ex;
+		}
+	}
 
+	/**
+	 * Schedules the jobs of the pool, fills the pool with its initial instances and joins any registry.
+	 * @param factory The factory of the pool
+	 */
+	private void startJobs(Factory<T> factory) {
+		Duration idleTimeout = factory.idleTime;
 		long delayMillis = idleTimeout.toMillis();
+		// with an eviction policy the idle timeout is consulted as part of the policy
+		Option<EvictionPolicy> evictionPolicy = factory.evictionPolicy.map(p -> delayMillis > 0 ? EvictionPolicy.idleTime(idleTimeout).or(p) : p);
+		Runnable reaperJob = null;
+		long reaperDelay = 0;
+		long reaperPeriod = 0;
+		if (evictionPolicy.isDefined()) {
+			EvictionPolicy policy = evictionPolicy.get();
+			reaperJob = () -> evictIdleInstances(policy);
+			reaperDelay = reaperPeriod = factory.evictionInterval.toMillis();
+		} else if (delayMillis > 0) {
+			reaperJob = () -> poolQueue.markStaleInstances(idleTimeout, e -> evict(e));
+			reaperDelay = delayMillis;
+			reaperPeriod = Math.max(1, delayMillis / 4);
+		}
+		reaper = Option(reaperJob);
+		long initialDelay = reaperDelay;
+		long period = reaperPeriod;
+		reaper.forEach(job -> {
+			executor.forEach(ss -> {
+				scheduledFutures.add(ss.scheduleWithFixedDelay(job, initialDelay, period, TimeUnit.MILLISECONDS));
+			});
+		});
+
+		// idle instances are refreshed when they are within a tenth of the max lifetime from expiring
+		// the refresh job runs twice within that window to be sure to catch all instances before they expire
+		long refreshAhead = Math.max(1, maxLifetime / 10);
+		if (maxLifetime > 0) {
+			executor.forEach(ss -> {
+				scheduledFutures.add(ss.scheduleWithFixedDelay(() -> {
+					refreshExpiringInstances(refreshAhead);
+				} , refreshAhead / 2, Math.max(1, refreshAhead / 2), TimeUnit.MILLISECONDS));
+			});
+		}
 
-		scheduledFuture = executor.map(ss -> {
+		// under memory pressure the idle instances are halved each time a garbage collection fails to free enough memory
+		double threshold = factory.memoryPressureThreshold;
+		memoryPressureRegistration = Option(threshold > 0 ? MemoryPressureMonitor.register(threshold, this, PoolImpl::shedIdleInstances, executor) : null);
+
+		// the reclaim job is kept separate as it must keep running while destroying the pool
+		long maxHoldTime = factory.maxHoldTime.toMillis();
+		reclaimFuture = executor.filter(ss -> maxHoldTime > 0).map(ss -> {
 			return ss.scheduleWithFixedDelay(() -> {
-				poolQueue.markStaleInstances(idleTimeout, destructor);
-			} , delayMillis, delayMillis / 4, TimeUnit.MILLISECONDS);
+				reclaimExpiredLeases(maxHoldTime);
+			} , maxHoldTime, Math.max(1, maxHoldTime / 4), TimeUnit.MILLISECONDS);
 		});
 
+		// instances restored from the snapshot count towards the pre-warm, the factory is only used for any shortfall
+		snapshot.forEach(s -> s.restore().forEach(t -> restoreInstance(t)));
+		prewarm(Math.min(factory.prewarmCount, maxSize) - instances.get(), factory.isParallelPrewarm, factory.batchFactory);
+		registry.forEach(r -> r.join(this));
+	}
+
+	/**
+	 * Adds an instance restored from the snapshot to the pool. <br>
+	 * The instance is validated as the state it was restored from may well be outdated, an invalid instance is destroyed.
+	 * @param instance The instance
+	 */
+	private void restoreInstance(T instance) {
+		if (Try(() -> validator.test(instance)).getOrElse(() -> false)) {
+			addIdleInstance(register(instance));
+		} else {
+			destructor.accept(instance);
+		}
+	}
+
+	/**
+	 * Undoes the creation of a pool failing to start. <br>
+	 * Cancels all jobs, removes all registrations and destroys any instances created so far.
+	 */
+	private void abandon() {
+		isValid.set(false);
+		scheduledFutures.forEach(sf -> sf.cancel(true));
+		reclaimFuture.forEach(sf -> sf.cancel(true));
+		memoryPressureRegistration.forEach(Runnable::run);
+		jmxRegistration.forEach(Runnable::run);
+		registry.forEach(r -> r.leave(this));
+		destroyInstances(takeIdleInstances());
 	}
 
 	/*
@@ -88,19 +314,79 @@ final class PoolImpl<T> implements Pool<T> {
 	 */
 	@Override
 	public Try<T> getInstance(Duration maxWaitTime) {
-		if (!isValid.get()) {
-			throw new IllegalStateException("Pool has been destroyed.");
-		}
+		assertIsValid();
+		return Try(() -> borrow(maxWaitTime, anyIdleInstance).instance());
+	}
 
-		return Try(() -> {
-			// attempt to get a go ahead by acquiring a semaphore
-			if (!getPermits.tryAcquire(maxWaitTime.toMillis(), TimeUnit.MILLISECONDS)) {
-				throw new TimeoutException("Timeout waiting for a free object in the pool");
-			}
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplepool.Pool#getInstanceFor(java.lang.Object, java.time.Duration)
+	 */
+	@Override
+	public Try<T> getInstanceFor(Object tenant, Duration maxWaitTime) {
+		assertIsValid();
+		return Try(() -> borrow(maxWaitTime, tenant, anyIdleInstance).instance());
+	}
 
-			returnPermits.release();
-			return poolQueue.head().getOrElse(() -> createInstance());
-		});
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplepool.Pool#getInstance(java.util.function.Predicate, java.time.Duration)
+	 */
+	@Override
+	public Try<T> getInstance(Predicate<T> predicate, Duration maxWaitTime) {
+		assertIsValid();
+		return Try(() -> borrow(maxWaitTime, () -> poolQueue.head(e -> predicate.test(e.instance()))).instance());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplepool.Pool#getInstanceByAttribute(java.lang.Object, java.time.Duration)
+	 */
+	@Override
+	public Try<T> getInstanceByAttribute(Object attribute, Duration maxWaitTime) {
+		assertIsValid();
+		return Try(() -> borrow(maxWaitTime, () -> poolQueue.head(attribute)).instance());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplepool.Pool#withInstance(java.time.Duration, javascalautils.ThrowableFunction1)
+	 */
+	@Override
+	public <R> Try<R> withInstance(Duration maxWaitTime, ThrowableFunction1<T, R> function) {
+		assertIsValid();
+		// deliberately not using Try(...) as the capturing lambda would be allocated on each invocation
+		PoolEntry<T> entry;
+		try {
+			entry = borrow(maxWaitTime, anyIdleInstance);
+		} catch (Throwable ex) {
+			return Failure(ex);
+		}
+		Try<R> result;
+		boolean isBroken = false;
+		try {
+			result = Success(function.apply(entry.instance()));
+		} catch (Throwable ex) {
+			isBroken = brokenInstanceDetector.test(ex);
+			result = Failure(ex);
+		}
+		// the instance may have been reclaimed while in use, then it's no longer ours to return
+		if (borrowed.remove(entry.key(), entry)) {
+			try {
+				recycle(entry, isBroken);
+			} catch (Throwable ex) {
+				// e.g. the validator/destructor failed, this must not escape but fail the result
+				if (result.isSuccess()) {
+					return Failure(ex);
+				}
+				result.failed().forEach(failure -> failure.addSuppressed(ex));
+			}
+		}
+		return result;
 	}
 
 	/*
@@ -113,63 +399,855 @@ final class PoolImpl<T> implements Pool<T> {
 		return Try(() -> {
 			Validator.requireNonNull(instance);
 
-			if (!returnPermits.tryAcquire()) {
-				throw new PoolException("No permits left to return object to the pool");
-			}
-
-			// first validate the instance
-			// if we fail validation the instance is destroyed and the pooled
-			// instance is marked as destroyed
-			if (validator.test(instance)) {
-				poolQueue.add(instance);
-			} else {
-				destructor.accept(instance);
+			IdentityKey probe = IdentityKey.probe(instance);
+			PoolEntry<T> entry = borrowed.remove(probe);
+			probe.clear();
+			if (entry == null) {
+				throw new PoolException("The instance is not borrowed from this pool");
 			}
-
-			// now release a permit to take a new item from the pool
-			getPermits.release();
+			recycle(entry, false);
 		});
 	}
 
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see simplepool.Pool#destroy()
+	 * @see simplepool.Pool#destroy(java.time.Duration)
 	 */
 	@Override
-	public Future<Unit> destroy() {
-		return Future(() -> {
-			if (isValid.compareAndSet(true, false)) {
-				scheduledFuture.forEach(sf -> sf.cancel(true));
-
-				// immediately drain all free resources.
-				int permitsLeft = maxSize - getPermits.drainPermits();
-
-				// still outstanding resources borrowed from the pool
-				// we must wait until each of them has been returned
-				while (permitsLeft > 0) {
-					getPermits.acquire();
-					permitsLeft--;
+	public Future<Unit> destroy(Duration gracePeriod) {
+		if (isValid.compareAndSet(true, false)) {
+			destroyEvent = PoolEvents.beginDestroy();
+			scheduledFutures.forEach(sf -> sf.cancel(true));
+
+			// borrowed instances not returned within the grace period are forcibly evicted
+			long graceMillis = gracePeriod.toMillis();
+			if (graceMillis < Long.MAX_VALUE) {
+				forcedEviction = GraceTimer.Instance.schedule(() -> evictBorrowedInstances(), graceMillis, TimeUnit.MILLISECONDS);
+			}
+			// there may not be any outstanding instances, then we're done already
+			completeDestroy();
+		}
+		return destroyed.future();
+	}
+
+	/**
+	 * Releases a permit. <br>
+	 * Once the pool has been destroyed the release of the last outstanding permit triggers the tear down of the pool.
+	 */
+	private void releasePermit() {
+		getPermits.release();
+		if (!isValid.get()) {
+			completeDestroy();
+		}
+	}
+
+	/**
+	 * Tears down the destroyed pool if all permits have been returned. <br>
+	 * As a borrower holds a permit from acquiring it until returning the instance, all permits being available means there are no borrowed instances and no ongoing borrows. <br>
+	 * The tear down is made asynchronously, the thread returning the last instance is not held up destroying all instances.
+	 */
+	private void completeDestroy() {
+		if (getPermits.availablePermits() >= maxSize && isTornDown.compareAndSet(false, true)) {
+			Option(forcedEviction).forEach(sf -> sf.cancel(false));
+			Future(() -> tearDown()).onComplete(result -> destroyed.complete(result));
+		}
+	}
+
+	/**
+	 * Stops all jobs and registrations, saves the snapshot and destroys all idle instances.
+	 */
+	private void tearDown() {
+		reclaimFuture.forEach(sf -> sf.cancel(true));
+		memoryPressureRegistration.forEach(Runnable::run);
+		jmxRegistration.forEach(Runnable::run);
+		registry.forEach(r -> r.leave(this));
+		// the state is saved before destroying the instances as the destructor may well clear it
+		List<PoolEntry<T>> idle = takeIdleInstances();
+		try {
+			snapshot.forEach(s -> s.save(idle.stream().map(e -> e.instance()).collect(toList())));
+		} finally {
+			// a failing snapshot must not leave the instances undestroyed
+			try {
+				destroyInstances(idle);
+			} finally {
+				if (listener != null) {
+					listener.poolDestroyed();
 				}
-				// with all permits acquired we know all items in the pool have been returned (or never used)
-				// we can now safely destroy all items in the pool
-				// with negative duration we will in practice mark any item in the pool as stale and destroy it
-				poolQueue.markStaleInstances(Duration.ofDays(-69), destructor);
+				PoolEvents.endDestroy(destroyEvent);
+			}
+		}
+	}
+
+	/**
+	 * Evicts all borrowed instances, releasing the permits of the borrowers. <br>
+	 * Any later attempt to return an evicted instance will fail as it's no longer considered borrowed.
+	 */
+	private void evictBorrowedInstances() {
+		borrowed.forEach((key, entry) -> {
+			// conditional remove guarantees we don't race with the borrower returning the instance
+			if (borrowed.remove(key, entry)) {
+				evict(entry);
+				releasePermit();
+				entry.releaseGrant();
 			}
 		});
 	}
 
-	private T createInstance() {
+	private void assertIsValid() {
+		if (!isValid.get()) {
+			throw new IllegalStateException("Pool has been destroyed.");
+		}
+	}
+
+	/**
+	 * Borrows an instance from the pool. <br>
+	 * The instance is either taken from the idle instances or created if there are none.
+	 * @param maxWaitTime The time to wait for a free object
+	 * @param idleInstance The function taking an idle instance from the queue
+	 * @return The entry of the borrowed instance
+	 * @throws TimeoutException If there was no free object within the provided time
+	 * @throws InterruptedException If interrupted while waiting for a free object
+	 */
+	private PoolEntry<T> borrow(Duration maxWaitTime, Supplier<Option<PoolEntry<T>>> idleInstance) throws TimeoutException, InterruptedException {
+		return borrow(maxWaitTime, null, idleInstance);
+	}
+
+	/**
+	 * Borrows an instance from the pool on behalf of a tenant. <br>
+	 * With a partitioned pool the capacity of the tenant is acquired before the permit, the permit is then always immediately available.
+	 * @param maxWaitTime The time to wait for a free object
+	 * @param tenant The tenant, <code>null</code> if not stated
+	 * @param idleInstance The function taking an idle instance from the queue
+	 * @return The entry of the borrowed instance
+	 * @throws TimeoutException If there was no free object within the provided time
+	 * @throws InterruptedException If interrupted while waiting for a free object
+	 */
+	private PoolEntry<T> borrow(Duration maxWaitTime, Object tenant, Supplier<Option<PoolEntry<T>>> idleInstance) throws TimeoutException, InterruptedException {
+		Partitions.Grant grant = null;
+		long maxWaitMillis = maxWaitTime.toMillis();
+		if (partitions.isDefined()) {
+			long start = System.nanoTime();
+			grant = partitions.get().acquire(tenant, maxWaitMillis);
+			if (grant == null) {
+				throw new TimeoutException("Timeout waiting for free capacity for tenant [" + tenant + "]");
+			}
+			// the total wait must not exceed the max wait time
+			maxWaitMillis = Math.max(0, maxWaitMillis - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		}
+
+		PoolEntry<T> entry;
+		try {
+			// attempt to get a go ahead by acquiring a semaphore
+			awaitPermit(maxWaitMillis);
+			// the pool may have been destroyed while we waited
+			if (!isValid.get()) {
+				releasePermit();
+				throw new IllegalStateException("Pool has been destroyed.");
+			}
+
+			entry = takeIdleInstance(idleInstance);
+			if (entry == null) {
+				// when borrowing a matching instance the pool may be full of idle instances not matching
+				// one of them must then give way for the new instance
+				if (instances.get() >= maxSize) {
+					poolQueue.head().forEach(e -> evict(e));
+				}
+				entry = createInstance();
+			}
+		} catch (Exception ex) {
+			if (grant != null) {
+				grant.release();
+			}
+			throw ex;
+		}
+		entry.grant(grant);
+		long now = ticker.millis();
+		// only written when changed to avoid all borrowers writing to the same memory
+		if (lastActive != now) {
+			lastActive = now;
+		}
+		entry.markBorrowed(now, sampleBorrowSite());
+		borrowed.put(entry.key(), entry);
+		if (listener != null) {
+			listener.borrowed(entry.instance());
+		}
+		return entry;
+	}
+
+	/**
+	 * Acquires a permit to borrow an instance. <br>
+	 * Only a borrower having to wait for the permit records the wait as an event.
+	 * @param maxWaitMillis The time to wait for a permit
+	 * @throws TimeoutException If there was no free permit within the provided time
+	 * @throws InterruptedException If interrupted while waiting for a permit
+	 */
+	private void awaitPermit(long maxWaitMillis) throws TimeoutException, InterruptedException {
+		if (getPermits.tryAcquire()) {
+			statistics.immediate();
+			return;
+		}
+		Object event = PoolEvents.beginBorrowWait();
+		String outcome = PoolEvents.Failed;
+		long start = System.nanoTime();
+		try {
+			if (!acquirePermit(maxWaitMillis)) {
+				outcome = PoolEvents.TimedOut;
+				throw new TimeoutException("Timeout waiting for a free object in the pool");
+			}
+			outcome = PoolEvents.Acquired;
+		} catch (PoolOverloadedException ex) {
+			outcome = PoolEvents.Rejected;
+			throw ex;
+		} catch (InterruptedException ex) {
+			outcome = PoolEvents.Interrupted;
+			throw ex;
+		} finally {
+			statistics.waited(System.nanoTime() - start);
+			PoolEvents.endBorrowWait(event, outcome);
+		}
+	}
+
+	/**
+	 * Waits for a permit to borrow an instance, invoked only once there was no permit immediately available. <br>
+	 * With admission control the borrower is rejected instead of waiting if the pool is considered overloaded.
+	 * @param maxWaitMillis The time to wait for a permit
+	 * @return <code>true</code> if a permit was acquired, <code>false</code> if timed out
+	 * @throws InterruptedException If interrupted while waiting for a permit
+	 */
+	private boolean acquirePermit(long maxWaitMillis) throws InterruptedException {
+		int waiting = waiters.incrementAndGet();
 		try {
-			return instanceFactory.apply();
+			if (maxWaiters >= 0) {
+				if (waiting > maxWaiters) {
+					throw new PoolOverloadedException("Rejected as there are already [" + maxWaiters + "] borrowers waiting");
+				}
+				// all waiters ahead of us have to be served, the permits are released at the average pace of one hold time per instance
+				long estimatedWait = (long) (waiting * averageHoldTime / maxSize);
+				if (estimatedWait > maxWaitMillis) {
+					throw new PoolOverloadedException("Rejected as the estimated wait [" + estimatedWait + "] ms exceeds the max wait time [" + maxWaitMillis + "] ms");
+				}
+			}
+			return PermitBlocker.acquire(getPermits, maxWaitMillis, waitStrategy);
+		} finally {
+			waiters.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Puts a returned instance back into the pool, or destroys it if it's broken, expired or fails validation. <br>
+	 * Finally the permit held by the borrower is released.
+	 * @param entry The entry of the returned instance
+	 * @param isBroken If the instance is known to be broken
+	 */
+	private void recycle(PoolEntry<T> entry, boolean isBroken) {
+		if (listener != null) {
+			listener.returned(entry.instance());
+		}
+		poolQueue.utilization((double) (maxSize - getPermits.availablePermits()) / maxSize);
+		long now = ticker.millis();
+		entry.markReturned(now);
+		if (maxWaiters >= 0) {
+			averageHoldTime += HoldTimeSmoothing * (now - entry.borrowed() - averageHoldTime);
+		}
+		boolean hasReachedMaxBorrows = maxBorrows > 0 && entry.borrowCount() % maxBorrows == 0;
+		try {
+			// instances that have reached their lifetime or max borrows (if recycling) are destroyed and replaced in the background
+			// if the pool has been shrunk or we fail validation the instance is destroyed
+			if (entry.isExpired(now) || (hasReachedMaxBorrows && isRecyclingAtMaxBorrows)) {
+				destroyInstance(entry);
+				executor.forEach(ss -> ss.execute(() -> addReplacement()));
+			} else if (instances.get() > maxSize) {
+				destroyInstance(entry);
+			} else if (!isBroken && validator.test(entry.instance())) {
+				weigh(entry);
+				if (hasReachedMaxBorrows) {
+					poolQueue.addLast(entry);
+				} else {
+					poolQueue.add(entry);
+				}
+				evictOverweight();
+			} else {
+				PoolEvents.validationFailed(entry.instance(), isBroken);
+				if (listener != null) {
+					listener.validationFailed(entry.instance());
+				}
+				destroyInstance(entry);
+			}
+		} finally {
+			// now release a permit to take a new item from the pool
+			// the permit is released before the capacity of the tenant as the next borrower expects a free permit once granted capacity
+			releasePermit();
+			entry.releaseGrant();
+		}
+	}
+
+	/**
+	 * Takes an idle instance from the queue. <br>
+	 * Any instances found to have reached their lifetime are destroyed.
+	 * @param idleInstance The function taking an idle instance from the queue
+	 * @return The entry, <code>null</code> if there was no idle instance
+	 */
+	private PoolEntry<T> takeIdleInstance(Supplier<Option<PoolEntry<T>>> idleInstance) {
+		long now = ticker.millis();
+		PoolEntry<T> entry = idleInstance.get().orNull();
+		while (entry != null && entry.isExpired(now)) {
+			destroyInstance(entry);
+			entry = idleInstance.get().orNull();
+		}
+		return entry;
+	}
+
+	/**
+	 * Evicts the idle instances selected by the provided policy.
+	 * @param policy The eviction policy
+	 */
+	@SuppressWarnings("unchecked")
+	private void evictIdleInstances(EvictionPolicy policy) {
+		long now = ticker.millis();
+		poolQueue.evictSelected(idle -> {
+			List<EvictionPolicy.Candidate> candidates = idle.stream().map(pi -> new IdleCandidate<>(pi, now)).collect(toList());
+			return policy.select(candidates).stream().filter(c -> c instanceof IdleCandidate).map(c -> ((IdleCandidate<T>) c).pooledInstance).collect(toList());
+		} , e -> evict(e));
+	}
+
+	/**
+	 * Destroys half of the idle instances, the ones idle the longest first.
+	 */
+	private void shedIdleInstances() {
+		evictIdleInstances(idle -> EvictionPolicy.maxIdle(idle.size() / 2).select(idle));
+	}
+
+	/**
+	 * Replaces all idle instances that will reach their lifetime within the provided time. <br>
+	 * The replacement is added to the pool before the old instance is destroyed.
+	 * @param refreshAhead The time (millis) ahead of the expiry to replace the instance
+	 */
+	private void refreshExpiringInstances(long refreshAhead) {
+		long deadLine = ticker.millis() + refreshAhead;
+		poolQueue.evictInstances(e -> e.expires() <= deadLine, e -> {
+			addReplacement();
+			destroyInstance(e);
+		});
+	}
+
+	/**
+	 * Reclaims all instances that have been borrowed longer than the provided time. <br>
+	 * The instance is destroyed and its permit released, a replacement is created and added to the pool.
+	 * @param maxHoldTime The max time (millis) an instance may be borrowed
+	 */
+	private void reclaimExpiredLeases(long maxHoldTime) {
+		long deadLine = ticker.millis() - maxHoldTime;
+		borrowed.forEach((key, entry) -> {
+			// conditional remove guarantees we don't race with the borrower returning the instance
+			if (entry.borrowed() < deadLine && borrowed.remove(key, entry)) {
+				leakReporter.forEach(r -> r.accept(new PoolException("Instance [" + entry.instance() + "] was not returned within [" + maxHoldTime + "] ms", entry.borrowSite().orNull())));
+				destroyInstance(entry);
+				releasePermit();
+				entry.releaseGrant();
+				addReplacement();
+			}
+		});
+	}
+
+	/**
+	 * Captures the stack of the borrowing thread for a sampled fraction of all borrows.
+	 * @return The captured stack, <code>null</code> if not sampled
+	 */
+	private Throwable sampleBorrowSite() {
+		if (leakSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < leakSampleRate) {
+			return new Throwable("Borrowed by thread [" + Thread.currentThread().getName() + "]");
+		}
+		return null;
+	}
+
+	/**
+	 * Creates a new instance and adds it to the pool. <br>
+	 * Should the creation fail the instance is simply left to be created on demand.
+	 */
+	private void addReplacement() {
+		if (!isValid.get()) {
+			return;
+		}
+		Try(() -> newEntry()).forEach(e -> {
+			poolQueue.add(e);
+			// the pool was destroyed while creating the instance, make sure it's not left in the pool
+			if (!isValid.get()) {
+				destroyIdleInstances();
+			}
+		});
+	}
+
+	/**
+	 * Destroys all instances in the pool.
+	 */
+	private void destroyIdleInstances() {
+		destroyInstances(takeIdleInstances());
+	}
+
+	/**
+	 * Takes all idle instances from the queue.
+	 * @return The entries of the idle instances
+	 */
+	private List<PoolEntry<T>> takeIdleInstances() {
+		List<PoolEntry<T>> idle = new ArrayList<>();
+		poolQueue.evictInstances(e -> true, idle::add);
+		return idle;
+	}
+
+	/**
+	 * Destroys the provided instances. <br>
+	 * The instances are destroyed in parallel, destroying an instance often involves I/O such as closing a connection. <br>
+	 * Helpers are run on the executor of the pool, or a bounded executor shared by all pools without one, never on the common fork/join pool. <br>
+	 * The calling thread takes part in destroying the instances, thus it never waits for a helper that has not yet started.
+	 * @param entries The entries of the instances
+	 */
+	private void destroyInstances(List<PoolEntry<T>> entries) {
+		if (entries.isEmpty()) {
+			return;
+		}
+		Queue<PoolEntry<T>> remaining = new ConcurrentLinkedQueue<>(entries);
+		CountDownLatch destroyed = new CountDownLatch(entries.size());
+		Runnable destroyer = () -> {
+			for (PoolEntry<T> entry = remaining.poll(); entry != null; entry = remaining.poll()) {
+				try {
+					destroyInstance(entry);
+				} finally {
+					destroyed.countDown();
+				}
+			}
+		};
+		Executor helpers = executor.isDefined() ? executor.get() : Destroyers.Instance;
+		int helperCount = Math.min(entries.size(), Destroyers.Parallelism) - 1;
+		for (int i = 0; i < helperCount; i++) {
+			try {
+				helpers.execute(destroyer);
+			} catch (RejectedExecutionException ex) {
+				// the executor has been shut down, the calling thread destroys the instances on its own
+				break;
+			}
+		}
+		destroyer.run();
+		// wait for the instances being destroyed by the helpers
+		boolean isInterrupted = false;
+		for (;;) {
+			try {
+				destroyed.await();
+				break;
+			} catch (InterruptedException ex) {
+				isInterrupted = true;
+			}
+		}
+		if (isInterrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Destroys an idle instance evicted from the pool.
+	 * @param entry The entry
+	 */
+	private void evict(PoolEntry<T> entry) {
+		statistics.evicted();
+		if (listener != null) {
+			listener.evicted(entry.instance());
+		}
+		destroyInstance(entry);
+	}
+
+	private void destroyInstance(PoolEntry<T> entry) {
+		statistics.destroyed();
+		instances.decrementAndGet();
+		totalWeight.addAndGet(-entry.weight());
+		registry.forEach(r -> r.destroyed(entry.weight()));
+		destructor.accept(entry.instance());
+		if (listener != null) {
+			listener.destroyed(entry.instance());
+		}
+	}
+
+	/**
+	 * Computes the weight of the instance and accounts for it in the total weight of the pool and any registry.
+	 * @param entry The entry
+	 */
+	private void weigh(PoolEntry<T> entry) {
+		long delta = entry.weight(weigher.applyAsLong(entry.instance()));
+		if (delta != 0) {
+			totalWeight.addAndGet(delta);
+			registry.forEach(r -> r.weighed(delta));
+		}
+	}
+
+	/**
+	 * Evicts idle instances, the heaviest first, until the total weight is within the budget or there are no idle instances left.
+	 */
+	private void evictOverweight() {
+		while (totalWeight.get() > maxWeight) {
+			Option<PoolEntry<T>> evicted = poolQueue.evictMax(e -> e.weight());
+			if (evicted.isEmpty()) {
+				return;
+			}
+			evicted.forEach(e -> evict(e));
+		}
+	}
+
+	private PoolEntry<T> createInstance() {
+		try {
+			return newEntry();
 		} catch (Throwable ex) {
 			// for some reason we failed to create an instance
 			// release the semaphore that was previously acquired otherwise
 			// me might drain all semaphores
-			getPermits.release();
-			returnPermits.tryAcquire();
+			releasePermit();
 			throw new PoolException("Failed to create instance", ex);
 		}
 	}
 
+	/**
+	 * Creates a new instance with the (batch) factory and wraps it in an entry with its individual lifetime.
+	 * @return The entry
+	 * @throws Throwable If the factory failed to create the instance
+	 */
+	private PoolEntry<T> newEntry() throws Throwable {
+		if (batchCreator.isDefined()) {
+			return batchCreator.get().create();
+		}
+		Object event = PoolEvents.beginCreate();
+		boolean success = false;
+		T instance;
+		try {
+			instance = instanceFactory.apply();
+			success = true;
+		} finally {
+			PoolEvents.endCreate(event, success);
+		}
+		return register(instance);
+	}
+
+	/**
+	 * Creates the instances with the batch factory. <br>
+	 * All instances, including any surplus, are registered before handed out thus the surplus can be checked against the size of the pool.
+	 * @param batchFactory The batch factory
+	 * @param count The number of instances to create
+	 * @return The entries
+	 */
+	private List<PoolEntry<T>> createBatch(IntFunction<List<T>> batchFactory, int count) {
+		Object event = PoolEvents.beginCreate();
+		boolean success = false;
+		List<T> created;
+		try {
+			created = batchFactory.apply(count);
+			success = true;
+		} finally {
+			PoolEvents.endCreate(event, success);
+		}
+		return created == null ? null : created.stream().map(t -> register(t)).collect(toList());
+	}
+
+	/**
+	 * Fills the pool with idle instances. <br>
+	 * Instances failing to be created are simply left to be created on demand.
+	 * @param count The number of instances to create
+	 * @param inParallel If the instances are to be created in parallel
+	 * @param batchFactory The optional batch factory, used to create all instances in one batch
+	 */
+	private void prewarm(int count, boolean inParallel, Option<IntFunction<List<T>>> batchFactory) {
+		if (count <= 0) {
+			return;
+		}
+		if (batchFactory.isDefined()) {
+			Try(() -> createBatch(batchFactory.get(), count)).forEach(entries -> {
+				if (entries != null) {
+					entries.forEach(e -> addIdleInstance(e));
+				}
+			});
+			return;
+		}
+		IntStream range = IntStream.range(0, count);
+		(inParallel ? range.parallel() : range).forEach(i -> Try(() -> newEntry()).forEach(e -> addIdleInstance(e)));
+	}
+
+	/**
+	 * Adds a newly created instance to the idle instances, e.g. created by the batch factory beyond the requested number. <br>
+	 * Should the pool be full or destroyed the instance is destroyed.
+	 * @param entry The entry
+	 */
+	private void addIdleInstance(PoolEntry<T> entry) {
+		if (isValid.get() && instances.get() <= maxSize) {
+			poolQueue.add(entry);
+		} else {
+			destroyInstance(entry);
+		}
+	}
+
+	/**
+	 * Wraps a newly created instance in an entry with its individual lifetime and accounts for it in the pool.
+	 * @param instance The instance
+	 * @return The entry
+	 */
+	private PoolEntry<T> register(T instance) {
+		long lifetime = maxLifetime > 0 ? maxLifetime - ThreadLocalRandom.current().nextLong(lifetimeJitter + 1) : 0;
+		PoolEntry<T> entry = new PoolEntry<>(instance, ticker.millis(), lifetime);
+		statistics.created();
+		instances.incrementAndGet();
+		if (listener != null) {
+			listener.created(instance);
+		}
+		weigh(entry);
+		evictOverweight();
+		registry.forEach(r -> r.created());
+		return entry;
+	}
+
+	/**
+	 * The max number of instances in the pool.
+	 * @return The max size
+	 */
+	int maxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * The number of idle instances, derived from the total and borrowed instances as counting the queue would require locking it.
+	 * @return The number of idle instances
+	 */
+	int idleCount() {
+		return Math.max(0, instances.get() - borrowed.size());
+	}
+
+	/**
+	 * The number of borrowed instances.
+	 * @return The number of borrowed instances
+	 */
+	int borrowedCount() {
+		return borrowed.size();
+	}
+
+	/**
+	 * The number of borrowers waiting for a permit.
+	 * @return The number of waiting borrowers
+	 */
+	int waitingCount() {
+		return waiters.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplepool.Pool#instanceUsage()
+	 */
+	@Override
+	public List<InstanceUsage> instanceUsage() {
+		return entries().stream().map(e -> new InstanceUsage(e.borrowCount(), Duration.ofMillis(e.holdTime()))).collect(toList());
+	}
+
+	/**
+	 * All idle and borrowed instances, the most borrowed first.
+	 * @return The entries of the instances
+	 */
+	List<PoolEntry<T>> entries() {
+		List<PoolEntry<T>> entries = poolQueue.items();
+		entries.addAll(borrowed.values());
+		entries.sort(Comparator.comparingLong((PoolEntry<T> e) -> e.borrowCount()).reversed());
+		return entries;
+	}
+
+	/**
+	 * The counters and wait times of the pool.
+	 * @return The statistics
+	 */
+	PoolStatistics statistics() {
+		return statistics;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplepool.PoolRegistry.Member#instanceCount()
+	 */
+	@Override
+	public int instanceCount() {
+		return instances.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplepool.PoolRegistry.Member#totalWeight()
+	 */
+	@Override
+	public long totalWeight() {
+		return totalWeight.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplepool.PoolRegistry.Member#lastActive()
+	 */
+	@Override
+	public long lastActive() {
+		return lastActive;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplepool.PoolRegistry.Member#reclaim(int, long)
+	 */
+	@Override
+	public void reclaim(int count, long weight) {
+		long targetWeight = totalWeight.get() - weight;
+		if (count > 0) {
+			evictIdleInstances(idle -> EvictionPolicy.maxIdle(Math.max(0, idle.size() - count)).select(idle));
+		}
+		while (weight > 0 && totalWeight.get() > targetWeight) {
+			Option<PoolEntry<T>> evicted = poolQueue.evictMax(e -> e.weight());
+			if (evicted.isEmpty()) {
+				return;
+			}
+			evicted.forEach(e -> evict(e));
+		}
+	}
+
+	/**
+	 * Evicts and destroys all idle instances.
+	 */
+	void evictAllIdleInstances() {
+		poolQueue.evictInstances(e -> true, e -> evict(e));
+	}
+
+	/**
+	 * Runs the idle timeout/eviction policy job, if any.
+	 */
+	void runReaper() {
+		reaper.forEach(Runnable::run);
+	}
+
+	/**
+	 * Changes the max number of instances in the pool. <br>
+	 * Permits are added or removed accordingly, removing permits may leave the semaphore with a negative balance until enough borrowers have returned their instances. <br>
+	 * Excess idle instances are evicted immediately, excess borrowed instances are destroyed when returned.
+	 * @param newSize The new max size
+	 */
+	void resize(int newSize) {
+		if (newSize <= 0) {
+			throw new IllegalArgumentException("The size must be positive, was [" + newSize + "]");
+		}
+		if (partitions.isDefined()) {
+			throw new IllegalStateException("A pool with reservations can't be resized");
+		}
+		synchronized (resizeLock) {
+			assertIsValid();
+			int delta = newSize - maxSize;
+			maxSize = newSize;
+			if (delta > 0) {
+				getPermits.release(delta);
+			} else if (delta < 0) {
+				getPermits.shrink(-delta);
+				int excess = instances.get() - newSize;
+				if (excess > 0) {
+					evictIdleInstances(idle -> EvictionPolicy.maxIdle(idle.size() - excess).select(idle));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates the queue for the provided mode.
+	 * @param poolMode The mode
+	 * @param attributeFunction The optional function providing the attribute to index the entries by
+	 * @param ticker The source of the time the entries are added
+	 * @return The queue
+	 */
+	private static <T> PoolQueue<PoolEntry<T>> createQueue(PoolMode poolMode, Option<Function<PoolEntry<T>, Object>> attributeFunction, Ticker ticker) {
+		switch (poolMode) {
+		case LIFO:
+			return new PoolQueueLIFO<>(attributeFunction, ticker);
+		case ADAPTIVE:
+			return new PoolQueueAdaptive<>(attributeFunction, ticker);
+		default:
+			return new PoolQueueFIFO<>(attributeFunction, ticker);
+		}
+	}
+
+	/**
+	 * Semaphore allowing for the number of permits to be reduced.
+	 */
+	private static final class Permits extends Semaphore {
+		private static final long serialVersionUID = -4270935587530426317L;
+
+		private Permits(int permits) {
+			super(permits);
+		}
+
+		private void shrink(int reduction) {
+			reducePermits(reduction);
+		}
+	}
+
+	/**
+	 * Schedules the forced eviction at the end of grace periods. <br>
+	 * Lazily created on first use, shared by all pools as the job is trivial and only runs once per pool.
+	 */
+	private static final class GraceTimer {
+		private static final ScheduledExecutorService Instance = createTimer();
+
+		private static ScheduledExecutorService createTimer() {
+			ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+				Thread thread = new Thread(r, "simplepool-grace-timer");
+				thread.setDaemon(true);
+				return thread;
+			});
+			timer.setRemoveOnCancelPolicy(true);
+			return timer;
+		}
+	}
+
+	/**
+	 * Destroys instances on behalf of pools without an executor of their own. <br>
+	 * Lazily created on first use, shared by all pools. The threads are bounded to the number of processors and time out when idle.
+	 */
+	private static final class Destroyers {
+		private static final int Parallelism = Runtime.getRuntime().availableProcessors();
+		private static final ThreadPoolExecutor Instance = createExecutor();
+
+		private static ThreadPoolExecutor createExecutor() {
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(Parallelism, Parallelism, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+				Thread thread = new Thread(r, "simplepool-destroyer");
+				thread.setDaemon(true);
+				return thread;
+			});
+			executor.allowCoreThreadTimeOut(true);
+			return executor;
+		}
+	}
+
+	/**
+	 * Exposes an idle instance to the eviction policy.
+	 */
+	private static final class IdleCandidate<T> implements EvictionPolicy.Candidate {
+		private final PooledInstance<PoolEntry<T>> pooledInstance;
+		private final long now;
+
+		private IdleCandidate(PooledInstance<PoolEntry<T>> pooledInstance, long now) {
+			this.pooledInstance = pooledInstance;
+			this.now = now;
+		}
+
+		@Override
+		public long idleTime() {
+			return now - pooledInstance.lastUsed();
+		}
+
+		@Override
+		public long age() {
+			return now - pooledInstance.instance().created();
+		}
+
+		@Override
+		public long borrowCount() {
+			return pooledInstance.instance().borrowCount();
+		}
+	}
 }
@@ -0,0 +1,58 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The lease returned to the borrower.
+ * @author Peter Nerg
+ * @since 1.1
+ * @param <T> The type of the borrowed instance
+ */
+final class PoolLease<T> implements Lease<T> {
+	private final Pool<T> pool;
+	private final T instance;
+	private final AtomicBoolean isOpen = new AtomicBoolean(true);
+
+	PoolLease(Pool<T> pool, T instance) {
+		this.pool = pool;
+		this.instance = instance;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplepool.Lease#instance()
+	 */
+	@Override
+	public T instance() {
+		return instance;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplepool.Lease#close()
+	 */
+	@Override
+	public void close() {
+		// the instance may already have been reclaimed by the pool, hence the result is ignored
+		if (isOpen.compareAndSet(true, false)) {
+			pool.returnInstance(instance);
+		}
+	}
+}
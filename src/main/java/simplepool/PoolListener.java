@@ -0,0 +1,100 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+/**
+ * Receives notifications on the life cycle of the instances in a pool. <br>
+ * Intended for feeding tracing and metrics, all methods have empty default implementations so a listener only implements the events of interest. <br>
+ * Listeners are registered with {@link Factory#withListener(PoolListener)} to be notified synchronously by the thread causing the event or with {@link Factory#withListener(PoolListener, int)} to be notified
+ * asynchronously by a dedicated thread. <br>
+ * A synchronous listener must be thread safe and should be quick as it delays the borrower/returner. <br>
+ * Any exception thrown by a listener is ignored, it never affects the pool or its users.
+ * 
+ * @author Peter Nerg
+ * @param <T>
+ *            The type of the instances in the pool
+ * @since 1.1
+ */
+public interface PoolListener<T> {
+
+	/**
+	 * An instance has been created.
+	 * 
+	 * @param instance
+	 *            The instance
+	 * @since 1.1
+	 */
+	default void created(T instance) {
+	}
+
+	/**
+	 * An instance has been borrowed from the pool.
+	 * 
+	 * @param instance
+	 *            The instance
+	 * @since 1.1
+	 */
+	default void borrowed(T instance) {
+	}
+
+	/**
+	 * An instance has been returned to the pool.
+	 * 
+	 * @param instance
+	 *            The instance
+	 * @since 1.1
+	 */
+	default void returned(T instance) {
+	}
+
+	/**
+	 * A returned instance failed validation or was found to be broken, it will be destroyed.
+	 * 
+	 * @param instance
+	 *            The instance
+	 * @since 1.1
+	 */
+	default void validationFailed(T instance) {
+	}
+
+	/**
+	 * An idle instance has been evicted from the pool, e.g. due to idle timeout or eviction policy, it will be destroyed.
+	 * 
+	 * @param instance
+	 *            The instance
+	 * @since 1.1
+	 */
+	default void evicted(T instance) {
+	}
+
+	/**
+	 * An instance has been destroyed.
+	 * 
+	 * @param instance
+	 *            The instance
+	 * @since 1.1
+	 */
+	default void destroyed(T instance) {
+	}
+
+	/**
+	 * The pool has been destroyed, no further events will follow.
+	 * 
+	 * @since 1.1
+	 */
+	default void poolDestroyed() {
+	}
+}
@@ -0,0 +1,93 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Combines the listeners registered on a pool into one. <br>
+ * Exceptions thrown by the listeners are ignored.
+ * @author Peter Nerg
+ * @since 1.1
+ */
+final class PoolListeners<T> implements PoolListener<T> {
+	private final List<PoolListener<T>> listeners;
+
+	private PoolListeners(List<PoolListener<T>> listeners) {
+		this.listeners = listeners;
+	}
+
+	/**
+	 * Combines the provided listeners. <br>
+	 * Without listeners <code>null</code> is returned, allowing the pool to skip notifying altogether.
+	 * @param listeners The listeners
+	 * @return The combined listener, <code>null</code> if there are no listeners
+	 */
+	static <T> PoolListener<T> of(List<PoolListener<T>> listeners) {
+		return listeners.isEmpty() ? null : new PoolListeners<>(listeners);
+	}
+
+	@Override
+	public void created(T instance) {
+		fire(PoolListener::created, instance);
+	}
+
+	@Override
+	public void borrowed(T instance) {
+		fire(PoolListener::borrowed, instance);
+	}
+
+	@Override
+	public void returned(T instance) {
+		fire(PoolListener::returned, instance);
+	}
+
+	@Override
+	public void validationFailed(T instance) {
+		fire(PoolListener::validationFailed, instance);
+	}
+
+	@Override
+	public void evicted(T instance) {
+		fire(PoolListener::evicted, instance);
+	}
+
+	@Override
+	public void destroyed(T instance) {
+		fire(PoolListener::destroyed, instance);
+	}
+
+	@Override
+	public void poolDestroyed() {
+		fire((listener, instance) -> listener.poolDestroyed(), null);
+	}
+
+	/**
+	 * Notifies all listeners of the event.
+	 * @param event The function notifying a single listener
+	 * @param instance The instance the event concerns
+	 */
+	private void fire(BiConsumer<PoolListener<T>, T> event, T instance) {
+		for (PoolListener<T> listener : listeners) {
+			try {
+				event.accept(listener, instance);
+			} catch (RuntimeException ex) {
+				// listeners must not affect the pool
+			}
+		}
+	}
+}
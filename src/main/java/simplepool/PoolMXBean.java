@@ -0,0 +1,151 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+/**
+ * Management interface exposing the live state of a pool and operations to control it at runtime. <br>
+ * The pool is registered in the platform MBean server under the name <tt>simplepool:type=Pool,name="&lt;name&gt;"</tt> when created with {@link Factory#withJmx(String)}. <br>
+ * All attributes are read without taking any lock used when borrowing/returning instances, hence the values are a best effort snapshot and may be slightly inconsistent with each other.
+ * 
+ * @author Peter Nerg
+ * @since 1.1
+ */
+public interface PoolMXBean {
+
+	/**
+	 * The max number of instances in the pool.
+	 * 
+	 * @return The max size
+	 * @since 1.1
+	 */
+	int getMaxSize();
+
+	/**
+	 * The number of instances currently idle in the pool.
+	 * 
+	 * @return The number of idle instances
+	 * @since 1.1
+	 */
+	int getIdleCount();
+
+	/**
+	 * The number of instances currently borrowed from the pool.
+	 * 
+	 * @return The number of borrowed instances
+	 * @since 1.1
+	 */
+	int getBorrowedCount();
+
+	/**
+	 * The number of borrowers currently waiting for an instance.
+	 * 
+	 * @return The number of waiting borrowers
+	 * @since 1.1
+	 */
+	int getWaitingCount();
+
+	/**
+	 * The total number of instances created by the pool.
+	 * 
+	 * @return The number of created instances
+	 * @since 1.1
+	 */
+	long getCreatedCount();
+
+	/**
+	 * The total number of instances destroyed by the pool, including the evicted ones.
+	 * 
+	 * @return The number of destroyed instances
+	 * @since 1.1
+	 */
+	long getDestroyedCount();
+
+	/**
+	 * The total number of idle instances evicted from the pool, e.g. due to idle timeout, eviction policy or memory pressure.
+	 * 
+	 * @return The number of evicted instances
+	 * @since 1.1
+	 */
+	long getEvictedCount();
+
+	/**
+	 * The median time borrowers have waited for an instance.
+	 * 
+	 * @return Time in millis
+	 * @since 1.1
+	 */
+	double getWaitTime50thPercentile();
+
+	/**
+	 * The 90th percentile of the time borrowers have waited for an instance.
+	 * 
+	 * @return Time in millis
+	 * @since 1.1
+	 */
+	double getWaitTime90thPercentile();
+
+	/**
+	 * The 99th percentile of the time borrowers have waited for an instance.
+	 * 
+	 * @return Time in millis
+	 * @since 1.1
+	 */
+	double getWaitTime99thPercentile();
+
+	/**
+	 * The number of times each instance in the pool has been borrowed, the most borrowed instance first. <br>
+	 * A few instances with most of the borrows indicate that the pool is larger than needed or should use another {@link Constants.PoolMode mode}.
+	 * 
+	 * @return The borrow counts
+	 * @since 1.1
+	 */
+	long[] getBorrowCounts();
+
+	/**
+	 * The total time each instance in the pool has been borrowed, the most borrowed instance first just as {@link #getBorrowCounts()}. <br>
+	 * Ongoing borrows are not included, and as the two attributes are read separately the order may differ slightly while the pool is in use.
+	 * 
+	 * @return Times in millis
+	 * @since 1.1
+	 */
+	long[] getHoldTimes();
+
+	/**
+	 * Evicts and destroys all idle instances in the pool. <br>
+	 * Borrowed instances are not affected.
+	 * 
+	 * @since 1.1
+	 */
+	void evictIdleInstances();
+
+	/**
+	 * Runs the idle timeout/eviction policy job immediately, without waiting for its next scheduled run. <br>
+	 * Does nothing if the pool has neither an idle timeout nor an eviction policy.
+	 * 
+	 * @since 1.1
+	 */
+	void runReaper();
+
+	/**
+	 * Changes the max number of instances in the pool. <br>
+	 * When shrinking, excess idle instances are evicted immediately while borrowed instances are destroyed as they are returned until the pool is within its new size.
+	 * 
+	 * @param maxSize
+	 *            The new max size, must be positive
+	 * @since 1.1
+	 */
+	void resize(int maxSize);
+}
@@ -0,0 +1,134 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Exposes a pool as a {@link PoolMXBean} in the platform MBean server.
+ * @author Peter Nerg
+ * @since 1.1
+ */
+final class PoolManagement implements PoolMXBean {
+	private final PoolImpl<?> pool;
+
+	private PoolManagement(PoolImpl<?> pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Registers the pool in the platform MBean server.
+	 * @param name The name of the pool
+	 * @param pool The pool
+	 * @return The function unregistering the pool
+	 * @throws PoolException If the pool could not be registered, e.g. the name is already in use
+	 */
+	static Runnable register(String name, PoolImpl<?> pool) {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName objectName = new ObjectName("simplepool:type=Pool,name=" + ObjectName.quote(name));
+			server.registerMBean(new PoolManagement(pool), objectName);
+			return () -> {
+				try {
+					server.unregisterMBean(objectName);
+				} catch (JMException ex) {
+					// already unregistered, nothing to do
+				}
+			};
+		} catch (JMException ex) {
+			throw new PoolException("Failed to register the pool [" + name + "] in the MBean server", ex);
+		}
+	}
+
+	@Override
+	public int getMaxSize() {
+		return pool.maxSize();
+	}
+
+	@Override
+	public int getIdleCount() {
+		return pool.idleCount();
+	}
+
+	@Override
+	public int getBorrowedCount() {
+		return pool.borrowedCount();
+	}
+
+	@Override
+	public int getWaitingCount() {
+		return pool.waitingCount();
+	}
+
+	@Override
+	public long getCreatedCount() {
+		return pool.statistics().createdCount();
+	}
+
+	@Override
+	public long getDestroyedCount() {
+		return pool.statistics().destroyedCount();
+	}
+
+	@Override
+	public long getEvictedCount() {
+		return pool.statistics().evictedCount();
+	}
+
+	@Override
+	public double getWaitTime50thPercentile() {
+		return pool.statistics().waitTime(0.5);
+	}
+
+	@Override
+	public double getWaitTime90thPercentile() {
+		return pool.statistics().waitTime(0.9);
+	}
+
+	@Override
+	public double getWaitTime99thPercentile() {
+		return pool.statistics().waitTime(0.99);
+	}
+
+	@Override
+	public long[] getBorrowCounts() {
+		return pool.instanceUsage().stream().mapToLong(InstanceUsage::borrowCount).toArray();
+	}
+
+	@Override
+	public long[] getHoldTimes() {
+		return pool.instanceUsage().stream().mapToLong(u -> u.holdTime().toMillis()).toArray();
+	}
+
+	@Override
+	public void evictIdleInstances() {
+		pool.evictAllIdleInstances();
+	}
+
+	@Override
+	public void runReaper() {
+		pool.runReaper();
+	}
+
+	@Override
+	public void resize(int maxSize) {
+		pool.resize(maxSize);
+	}
+}
@@ -0,0 +1,38 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+/**
+ * Raised when a borrower is rejected by the {@link Factory#withAdmissionControl(int) admission control} of the pool. <br>
+ * The borrower is rejected immediately instead of waiting for an instance it most likely would not get in time. <br>
+ * Callers may catch this exception to degrade gracefully, e.g. by serving a cached response.
+ * 
+ * @author Peter Nerg
+ * @since 1.1
+ */
+public final class PoolOverloadedException extends PoolException {
+	private static final long serialVersionUID = -2390473512049871226L;
+
+	/**
+	 * Creates the exception
+	 * 
+	 * @param message
+	 *            The message
+	 */
+	PoolOverloadedException(String message) {
+		super(message);
+	}
+}
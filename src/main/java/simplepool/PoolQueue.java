@@ -15,10 +15,20 @@
  */
 package simplepool;
 
+import static javascalautils.Option.None;
 import static javascalautils.OptionCompanion.Option;
 
 import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
 
 import javascalautils.Option;
 
@@ -26,7 +36,8 @@ import javascalautils.Option;
  * Base class for the two variants of internal queue. <br>
  * The queue is a simplistic one-way linked list where we only really care of the first and last item in the Queue. <br>
  * Each item ({@link PooledInstance}) has a pointer to the next in the queue. <br>
- * The queue keeps track on the first and last instance making it very efficient to add instances to either start/end of the queue.
+ * The queue keeps track on the first and last instance making it very efficient to add instances to either start/end of the queue. <br>
+ * Optionally the queue keeps an index of the items by an attribute, allowing for taking an item with a specific attribute without scanning the queue.
  * @author Peter Nerg
  * @since 1.1
  */
@@ -35,20 +46,80 @@ abstract class PoolQueue<T> {
 	protected transient PooledInstance<T> first;
 	protected transient PooledInstance<T> last;
 
+	/** The number of items taken via the index since the queue was last purged. */
+	private static final int PurgeInterval = 64;
+
+	/** The function providing the attribute of an item, <code>null</code> if the queue has no index. */
+	private final Function<T, Object> attributeFunction;
+	/** The source of the time the items are added. */
+	private final Ticker ticker;
+	/** The items in the queue by their attribute, in the order they were added. */
+	private final Map<Object, Deque<PooledInstance<T>>> index = new HashMap<>();
+	private int indexedTakes = 0;
+
+	/**
+	 * Creates a queue without an index.
+	 */
+	PoolQueue() {
+		this(None());
+	}
+
+	/**
+	 * Creates a queue optionally indexing the items by an attribute.
+	 * @param attributeFunction The function providing the attribute of an item
+	 */
+	PoolQueue(Option<Function<T, Object>> attributeFunction) {
+		this(attributeFunction, Ticker.system());
+	}
+
+	/**
+	 * Creates a queue optionally indexing the items by an attribute.
+	 * @param attributeFunction The function providing the attribute of an item
+	 * @param ticker The source of the time the items are added
+	 */
+	PoolQueue(Option<Function<T, Object>> attributeFunction, Ticker ticker) {
+		this.attributeFunction = attributeFunction.orNull();
+		this.ticker = ticker;
+	}
+
 	/**
 	 * Adds an item to the queue
 	 * @param item
 	 */
 	final synchronized void add(T item) {
+		PooledInstance<T> pi = new PooledInstance<>(item, ticker.millis());
+		if (attributeFunction != null) {
+			addToIndex(attributeFunction.apply(item), pi);
+		}
+
 		// if first is null then queue is empty
 		// simply set both first/last to point to the new item
 		if(first == null) {
-			this.first = new PooledInstance<>(item, null);
-			this.last = this.first;
+			this.first = pi;
+			this.last = pi;
 			return;
 		}
 		
-		addToQueue(item);
+		addToQueue(pi);
+	}
+
+	/**
+	 * Adds an item to the tail/end of the queue regardless of the queue implementation. <br>
+	 * I.e. the item is the last to be taken by {@link #head()}, the order of the index is not affected.
+	 * @param item
+	 */
+	final synchronized void addLast(T item) {
+		PooledInstance<T> pi = new PooledInstance<>(item, ticker.millis());
+		if (attributeFunction != null) {
+			addToIndex(attributeFunction.apply(item), pi);
+		}
+
+		if(first == null) {
+			this.first = pi;
+		} else {
+			last.next(pi);
+		}
+		this.last = pi;
 	}
 	
 	/**
@@ -68,9 +139,71 @@ abstract class PoolQueue<T> {
 			head = takeFirst();
 		} while (head.isDefined() && !head.map(pi -> pi.markAsUsedOrDestroyed()).getOrElse(() -> false));
 
+		if (head.isDefined()) {
+			removeFromIndex(head.get());
+		}
 		return head.map(pi -> pi.instance());
 	}
 
+	/**
+	 * Takes the first valid item matching the predicate from the queue. <br>
+	 * The queue is scanned from the start, the item is removed from the queue.
+	 * @param predicate The predicate the item must match
+	 * @return The item, None if no valid item matched
+	 */
+	final synchronized Option<T> head(Predicate<T> predicate) {
+		PooledInstance<T> previous = null;
+		for (PooledInstance<T> pi = first; pi != null; pi = pi.next()) {
+			if (!pi.isUsedOrDestroyed() && predicate.test(pi.instance()) && pi.markAsUsedOrDestroyed()) {
+				unlink(previous, pi);
+				removeFromIndex(pi);
+				return Option(pi.instance());
+			}
+			previous = pi;
+		}
+		return None();
+	}
+
+	/**
+	 * Takes a valid item with the provided attribute from the queue. <br>
+	 * The item is found using the index, thus only applicable if the queue was created with an attribute function. <br>
+	 * The item is marked as used but left in the queue, it is dropped as the queue is traversed by {@link #head()} or periodically purged.
+	 * @param attribute The attribute of the item
+	 * @return The item, None if there is no valid item with the attribute
+	 */
+	final synchronized Option<T> head(Object attribute) {
+		Deque<PooledInstance<T>> items = index.get(attribute);
+		if (items == null) {
+			return None();
+		}
+		PooledInstance<T> pi = takeFromIndex(items);
+		while (pi != null && !pi.markAsUsedOrDestroyed()) {
+			pi = takeFromIndex(items);
+		}
+		if (items.isEmpty()) {
+			index.remove(attribute);
+		}
+		if (pi != null && ++indexedTakes >= PurgeInterval) {
+			purge();
+		}
+		return Option(pi).map(p -> p.instance());
+	}
+
+	/**
+	 * All valid items in the queue. <br>
+	 * Just as {@link #markStaleInstances(Duration, Consumer)} the structure of the queue is not touched, thus the operation is not synchronized.
+	 * @return The items
+	 */
+	final List<T> items() {
+		List<T> items = new ArrayList<>();
+		for (PooledInstance<T> head = first; head != null; head = head.next()) {
+			if (!head.isUsedOrDestroyed()) {
+				items.add(head.instance());
+			}
+		}
+		return items;
+	}
+
 	/**
 	 * Finds and marks all stale instances as destroyed. <br>
 	 * A stale instance is an item that has been sitting in the pool for longer than the provided max idle time. <br>
@@ -82,22 +215,212 @@ abstract class PoolQueue<T> {
 	 * @param destructor The function used to destroy the instance
 	 */
 	final void markStaleInstances(Duration maxIdleTime, Consumer<T> destructor) {
-		long deadLine = System.currentTimeMillis()-maxIdleTime.toMillis();
+		long now = ticker.millis();
+		long deadLine = now-maxIdleTime.toMillis();
+		markInstances(pi -> pi.lastUsed() < deadLine, pi -> {
+			PoolEvents.idleEvicted(now - pi.lastUsed());
+			destroy(pi, destructor);
+		});
+	}
+
+	/**
+	 * Finds and marks all instances matching the provided predicate as destroyed. <br>
+	 * Works just as {@link #markStaleInstances(Duration, Consumer)} but the decision to evict is made on the item itself.
+	 * @param predicate The predicate deciding if the item shall be evicted
+	 * @param destructor The function used to destroy the instance
+	 */
+	final void evictInstances(Predicate<T> predicate, Consumer<T> destructor) {
+		long now = ticker.millis();
+		markInstances(pi -> predicate.test(pi.instance()), pi -> {
+			PoolEvents.idleEvicted(now - pi.lastUsed());
+			destroy(pi, destructor);
+		});
+	}
+
+	/**
+	 * Lets the provided selector pick which of the valid items to mark as destroyed. <br>
+	 * Just as {@link #markStaleInstances(Duration, Consumer)} the structure of the queue is not touched, thus the operation is not synchronized. <br>
+	 * Items taken from the queue while the selector runs are not destroyed.
+	 * @param selector The function selecting the items to evict among all valid items
+	 * @param destructor The function used to destroy the instance
+	 */
+	final void evictSelected(Function<List<PooledInstance<T>>, List<PooledInstance<T>>> selector, Consumer<T> destructor) {
+		List<PooledInstance<T>> valid = new ArrayList<>();
+		for (PooledInstance<T> head = first; head != null; head = head.next()) {
+			if (!head.isUsedOrDestroyed()) {
+				valid.add(head);
+			}
+		}
+		long now = ticker.millis();
+		selector.apply(valid).forEach(pi -> {
+			if (pi.markAsUsedOrDestroyed()) {
+				PoolEvents.idleEvicted(now - pi.lastUsed());
+				destroy(pi, destructor);
+			}
+		});
+	}
+
+	/**
+	 * Finds and marks the instance with the highest value as destroyed. <br>
+	 * Just as {@link #markStaleInstances(Duration, Consumer)} the structure of the queue is not touched, thus the operation is not synchronized.
+	 * @param valueFunction The function providing the value of an item
+	 * @return The item marked as destroyed, None if the queue had no valid items
+	 */
+	final Option<T> evictMax(ToLongFunction<T> valueFunction) {
+		for (;;) {
+			PooledInstance<T> max = null;
+			long maxValue = Long.MIN_VALUE;
+			for (PooledInstance<T> head = first; head != null; head = head.next()) {
+				long value = head.isUsedOrDestroyed() ? Long.MIN_VALUE : valueFunction.applyAsLong(head.instance());
+				if (value > maxValue) {
+					max = head;
+					maxValue = value;
+				}
+			}
+			if (max == null) {
+				return None();
+			}
+			// another thread may have taken the instance after we found it, then we just retry
+			if (max.markAsUsedOrDestroyed()) {
+				PoolEvents.idleEvicted(ticker.millis() - max.lastUsed());
+				removeFromIndex(max);
+				return Option(max.instance());
+			}
+		}
+	}
+
+	/**
+	 * Walks the queue and marks all instances matching the predicate as destroyed.
+	 * @param predicate The predicate deciding if the instance shall be marked
+	 * @param destructor The function used to destroy the instance
+	 */
+	private void markInstances(Predicate<PooledInstance<T>> predicate, Consumer<PooledInstance<T>> destructor) {
 		PooledInstance<T> head = first;
 		while(head != null) {
-			if(head.lastUsed() < deadLine && head.markAsUsedOrDestroyed()) {
-				destructor.accept(head.instance());
+			if(predicate.test(head) && head.markAsUsedOrDestroyed()) {
+				destructor.accept(head);
 			}
 			head = head.next();
 		}
 	}
 	
+	/**
+	 * Reports the current utilization of the pool. <br>
+	 * Only of interest for queues adapting their behavior to the load, by default the report is ignored.
+	 * @param utilization The fraction (<tt>0.0</tt> to <tt>1.0</tt>) of the pool currently borrowed
+	 */
+	void utilization(double utilization) {
+	}
+
 	/**
 	 * Adds the provided item to the queue. <br>
 	 * Where it's placed (first/last) depends on the queue implementation
-	 * @param item The item to add
+	 * @param pi The item to add
+	 */
+	protected abstract void addToQueue(PooledInstance<T> pi);
+
+	/**
+	 * Takes/removes the item to use from the provided items sharing the same attribute. <br>
+	 * Which item (first/last) depends on the queue implementation
+	 * @param items The items in the order they were added
+	 * @return The item, <code>null</code> if there are no items
+	 */
+	protected abstract PooledInstance<T> takeFromIndex(Deque<PooledInstance<T>> items);
+
+	/**
+	 * The number of attributes currently in the index.
+	 * @return The number of attributes
+	 */
+	final synchronized int indexSize() {
+		return index.size();
+	}
+
+	/**
+	 * Adds the item to the index.
+	 * @param attribute The attribute of the item
+	 * @param pi The item
+	 */
+	private void addToIndex(Object attribute, PooledInstance<T> pi) {
+		Deque<PooledInstance<T>> items = index.get(attribute);
+		if (items == null) {
+			items = new ArrayDeque<>();
+			index.put(attribute, items);
+		}
+		pi.attribute(attribute);
+		items.add(pi);
+	}
+
+	/**
+	 * Removes an item marked as used or destroyed from the index. <br>
+	 * The attribute is dropped from the index once it has no more items.
+	 * @param pi The item
+	 */
+	private synchronized void removeFromIndex(PooledInstance<T> pi) {
+		if (attributeFunction == null) {
+			return;
+		}
+		Deque<PooledInstance<T>> items = index.get(pi.attribute());
+		if (items == null) {
+			return;
+		}
+		// the item taken is most likely at either end of the deque
+		if (items.peekFirst() == pi) {
+			items.pollFirst();
+		} else if (items.peekLast() == pi) {
+			items.pollLast();
+		} else {
+			items.remove(pi);
+		}
+		if (items.isEmpty()) {
+			index.remove(pi.attribute());
+		}
+	}
+
+	/**
+	 * Removes the item from the index and destroys it.
+	 * @param pi The item marked as destroyed
+	 * @param destructor The function used to destroy the instance
 	 */
-	protected abstract void addToQueue(T item);
+	private void destroy(PooledInstance<T> pi, Consumer<T> destructor) {
+		removeFromIndex(pi);
+		destructor.accept(pi.instance());
+	}
+
+	/**
+	 * Removes all items marked as used or destroyed from the queue. <br>
+	 * Items taken via the index are left in the queue, should they not be reached by {@link #head()} they would pile up.
+	 */
+	private void purge() {
+		indexedTakes = 0;
+		while (first != null && first.isUsedOrDestroyed()) {
+			first = first.next();
+		}
+		PooledInstance<T> previous = first;
+		for (PooledInstance<T> pi = previous != null ? previous.next() : null; pi != null; pi = pi.next()) {
+			if (pi.isUsedOrDestroyed()) {
+				unlink(previous, pi);
+			} else {
+				previous = pi;
+			}
+		}
+	}
+
+	/**
+	 * Unlinks the item from the queue. <br>
+	 * The next pointer of the unlinked item is left as is, any thread traversing the queue will just continue with the next item.
+	 * @param previous The item before the one to unlink, <code>null</code> if it's the first one
+	 * @param pi The item to unlink
+	 */
+	private void unlink(PooledInstance<T> previous, PooledInstance<T> pi) {
+		if (previous == null) {
+			first = pi.next();
+		} else {
+			previous.next(pi.next());
+		}
+		if (pi == last) {
+			last = previous;
+		}
+	}
 	
 	/**
 	 * Takes/removes the first item in the queue. <br>
@@ -0,0 +1,109 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import java.util.Deque;
+import java.util.function.Function;
+
+import javascalautils.Option;
+
+/**
+ * A variant of the Queue switching between Last-In-First-Out and First-In-First-Out depending on the utilization of the pool. <br>
+ * The utilization is smoothed using an exponentially weighted moving average, thus only a sustained change of the load makes the queue switch. <br>
+ * The thresholds for switching are kept apart to prevent the queue from flapping between the modes.
+ * @author Peter Nerg
+ * @since 1.1
+ */
+final class PoolQueueAdaptive<T> extends PoolQueue<T> {
+
+	/** The utilization above which the queue switches to FIFO. */
+	static final double HighUtilization = 0.75;
+	/** The utilization below which the queue switches back to LIFO. */
+	static final double LowUtilization = 0.5;
+	/** The weight of each reported utilization in the moving average. */
+	private static final double Smoothing = 0.05;
+
+	/**
+	 * The smoothed utilization. <br>
+	 * Updated without synchronization, a lost update only means a slightly less accurate average.
+	 */
+	private volatile double utilization = 0;
+	private volatile boolean isFIFO = false;
+
+	PoolQueueAdaptive() {
+		super();
+	}
+
+	PoolQueueAdaptive(Option<Function<T, Object>> attributeFunction) {
+		super(attributeFunction);
+	}
+
+	PoolQueueAdaptive(Option<Function<T, Object>> attributeFunction, Ticker ticker) {
+		super(attributeFunction, ticker);
+	}
+
+	/**
+	 * Updates the moving average of the utilization, switching mode if a threshold is crossed.
+	 * 
+	 * @param utilization The fraction of the pool currently borrowed
+	 */
+	@Override
+	void utilization(double utilization) {
+		double average = this.utilization + Smoothing * (utilization - this.utilization);
+		this.utilization = average;
+		if (average > HighUtilization) {
+			isFIFO = true;
+		} else if (average < LowUtilization) {
+			isFIFO = false;
+		}
+	}
+
+	/**
+	 * If the queue currently operates in FIFO mode.
+	 * 
+	 * @return <code>true</code> if FIFO, <code>false</code> if LIFO
+	 */
+	boolean isFIFO() {
+		return isFIFO;
+	}
+
+	/**
+	 * Adds an item to the tail/end of the queue in FIFO mode, to the head/start in LIFO mode.
+	 * 
+	 * @param pi The item to add
+	 */
+	@Override
+	protected void addToQueue(PooledInstance<T> pi) {
+		if (isFIFO) {
+			last.next(pi);
+			last = pi;
+		} else {
+			pi.next(first);
+			this.first = pi;
+		}
+	}
+
+	/**
+	 * Takes the oldest of the items in FIFO mode, the most recently added in LIFO mode.
+	 * 
+	 * @param items The items
+	 * @return The item
+	 */
+	@Override
+	protected PooledInstance<T> takeFromIndex(Deque<PooledInstance<T>> items) {
+		return isFIFO ? items.pollFirst() : items.pollLast();
+	}
+}
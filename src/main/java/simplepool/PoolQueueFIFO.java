@@ -15,21 +15,49 @@
  */
 package simplepool;
 
+import java.util.Deque;
+import java.util.function.Function;
+
+import javascalautils.Option;
+
 /**
  * A First-In-First-Out variant of the Queue.
  * @author Peter Nerg
  * @since 1.1
  */
 final class PoolQueueFIFO<T> extends PoolQueue<T> {
+
+	PoolQueueFIFO() {
+		super();
+	}
+
+	PoolQueueFIFO(Option<Function<T, Object>> attributeFunction) {
+		super(attributeFunction);
+	}
+
+	PoolQueueFIFO(Option<Function<T, Object>> attributeFunction, Ticker ticker) {
+		super(attributeFunction, ticker);
+	}
+
 	/**
 	 * Adds an item to the tail/end of the queue.
 	 * 
-	 * @param item The item to add
+	 * @param pi The item to add
 	 */
 	@Override
-	protected void addToQueue(T item) {
-		PooledInstance<T> pi = new PooledInstance<>(item);
+	protected void addToQueue(PooledInstance<T> pi) {
 		last.next(pi);
 		last = pi;
 	}
+
+	/**
+	 * Takes the oldest of the items.
+	 * 
+	 * @param items The items
+	 * @return The item
+	 */
+	@Override
+	protected PooledInstance<T> takeFromIndex(Deque<PooledInstance<T>> items) {
+		return items.pollFirst();
+	}
 }
@@ -15,18 +15,49 @@
  */
 package simplepool;
 
+import java.util.Deque;
+import java.util.function.Function;
+
+import javascalautils.Option;
+
 /**
  * A Last-In-First-Out variant of the Queue.
  * @author Peter Nerg
  * @since 1.1
  */
 final class PoolQueueLIFO<T> extends PoolQueue<T>{
+
+	PoolQueueLIFO() {
+		super();
+	}
+
+	PoolQueueLIFO(Option<Function<T, Object>> attributeFunction) {
+		super(attributeFunction);
+	}
+
+	PoolQueueLIFO(Option<Function<T, Object>> attributeFunction, Ticker ticker) {
+		super(attributeFunction, ticker);
+	}
+
 	/**
 	 * Adds an item to the head/start of the queue.
 	 * 
-	 * @param item The item to add
+	 * @param pi The item to add
+	 */
+	@Override
+	protected void addToQueue(PooledInstance<T> pi) {
+		pi.next(first);
+		this.first = pi;
+	}
+
+	/**
+	 * Takes the most recently added of the items.
+	 * 
+	 * @param items The items
+	 * @return The item
 	 */
-	protected void addToQueue(T item) {
-		this.first = new PooledInstance<>(item, first);
+	@Override
+	protected PooledInstance<T> takeFromIndex(Deque<PooledInstance<T>> items) {
+		return items.pollLast();
 	}
 }
@@ -0,0 +1,310 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import static javascalautils.concurrent.PromiseCompanion.Promise;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javascalautils.Unit;
+import javascalautils.concurrent.Future;
+import javascalautils.concurrent.Promise;
+
+/**
+ * A group of pools sharing a global budget, a scheduler thread and a common shutdown. <br>
+ * Pools join the registry when created by a factory configured with {@link Factory#withRegistry(PoolRegistry)}. <br>
+ * The budget caps the total number of instances (and optionally their total {@link Factory#withWeigher(java.util.function.ToLongFunction, long) weight}) of all member pools. <br>
+ * Whenever a member creates an instance pushing the total over the budget, idle instances are reclaimed from the least recently active pools first until the total is within the budget. <br>
+ * The budget is soft as borrowed instances are never reclaimed, i.e. the total may temporarily exceed the budget while instances are in use. <br>
+ * All member pools without their own executor run their scheduled jobs (idle timeout, eviction policy etc) on the single daemon thread of the registry. <br>
+ * Once shut down no more pools may join the registry.
+ * 
+ * <pre>
+ * PoolRegistry registry = PoolRegistry.withBudget(1000);
+ * Pool&lt;Socket&gt; pool = Factory.poolFor(() -&gt; new Socket("foo.bar", 666)).withRegistry(registry).create();
+ * ...
+ * registry.shutdown(Duration.ofSeconds(30));
+ * </pre>
+ * 
+ * @author Peter Nerg
+ * @since 1.1
+ */
+public final class PoolRegistry {
+
+	/**
+	 * A pool that has joined the registry.
+	 */
+	interface Member {
+		/**
+		 * The number of instances created by the pool and not yet destroyed.
+		 * @return The number of instances
+		 */
+		int instanceCount();
+
+		/**
+		 * The total weight of the instances created by the pool and not yet destroyed.
+		 * @return The weight
+		 */
+		long totalWeight();
+
+		/**
+		 * The time the pool was last borrowed from.
+		 * @return Time in millis
+		 */
+		long lastActive();
+
+		/**
+		 * Evicts and destroys idle instances.
+		 * @param count The number of instances to evict, the ones idle the longest first
+		 * @param weight The weight to reclaim, the heaviest instances first
+		 */
+		void reclaim(int count, long weight);
+
+		/**
+		 * Destroys the pool.
+		 * @param gracePeriod The max time to wait for borrowed instances to be returned
+		 * @return The Future completed once the pool is destroyed
+		 */
+		Future<Unit> destroy(Duration gracePeriod);
+	}
+
+	private final long maxInstances;
+	private final long maxWeight;
+	private final List<Member> members = new CopyOnWriteArrayList<>();
+	private final ScheduledExecutorService executor;
+	/** If a rebalance is already scheduled, used to coalesce the requests. */
+	private final AtomicBoolean isRebalanceScheduled = new AtomicBoolean(false);
+	/** The running total of instances in all member pools, kept by the members as they create and destroy instances. */
+	private final AtomicLong instances = new AtomicLong();
+	/** The running total weight of the instances in all member pools. */
+	private final AtomicLong weight = new AtomicLong();
+	/** Guarded by <tt>this</tt>, set once the registry has been shut down. */
+	private boolean isShutdown = false;
+
+	private PoolRegistry(long maxInstances, long maxWeight) {
+		this.maxInstances = maxInstances;
+		this.maxWeight = maxWeight;
+		ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+			Thread thread = new Thread(r, "simplepool-registry");
+			thread.setDaemon(true);
+			return thread;
+		});
+		timer.setRemoveOnCancelPolicy(true);
+		this.executor = timer;
+	}
+
+	/**
+	 * Creates a registry capping the total number of instances in its member pools.
+	 * 
+	 * @param maxInstances
+	 *            The max total number of instances
+	 * @return The registry
+	 * @since 1.1
+	 */
+	public static PoolRegistry withBudget(long maxInstances) {
+		return withBudget(maxInstances, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Creates a registry capping the total number and weight of the instances in its member pools. <br>
+	 * The weight of the instances is computed by the {@link Factory#withWeigher(java.util.function.ToLongFunction, long) weigher} of each pool, e.g. as an estimate of the memory held by the instance.
+	 * 
+	 * @param maxInstances
+	 *            The max total number of instances
+	 * @param maxWeight
+	 *            The max total weight of the instances
+	 * @return The registry
+	 * @since 1.1
+	 */
+	public static PoolRegistry withBudget(long maxInstances, long maxWeight) {
+		return new PoolRegistry(maxInstances, maxWeight);
+	}
+
+	/**
+	 * The number of pools in the registry.
+	 * 
+	 * @return The number of pools
+	 * @since 1.1
+	 */
+	public int poolCount() {
+		return members.size();
+	}
+
+	/**
+	 * The total number of instances in all pools in the registry.
+	 * 
+	 * @return The number of instances
+	 * @since 1.1
+	 */
+	public long instanceCount() {
+		return instances.get();
+	}
+
+	/**
+	 * The total weight of the instances in all pools in the registry.
+	 * 
+	 * @return The weight
+	 * @since 1.1
+	 */
+	public long totalWeight() {
+		return weight.get();
+	}
+
+	/**
+	 * Destroys all pools in the registry, waiting for borrowed instances to be returned. <br>
+	 * The pools are destroyed in parallel, the scheduler thread of the registry is stopped once all pools have been destroyed.
+	 * 
+	 * @return The Future completed once all pools have been destroyed
+	 * @see Pool#destroy()
+	 * @since 1.1
+	 */
+	public Future<Unit> shutdown() {
+		return shutdown(Duration.ofMillis(Long.MAX_VALUE));
+	}
+
+	/**
+	 * Destroys all pools in the registry, waiting at most the grace period for borrowed instances to be returned. <br>
+	 * The pools are destroyed in parallel, the scheduler thread of the registry is stopped once all pools have been destroyed. <br>
+	 * Pools created with the registry after it has been shut down fail to be created.
+	 * 
+	 * @param gracePeriod
+	 *            The max time to wait for borrowed instances to be returned
+	 * @return The Future completed once all pools have been destroyed
+	 * @see Pool#destroy(Duration)
+	 * @since 1.1
+	 */
+	public Future<Unit> shutdown(Duration gracePeriod) {
+		Promise<Unit> promise = Promise();
+		List<Member> toDestroy;
+		synchronized (this) {
+			isShutdown = true;
+			toDestroy = new ArrayList<>(members);
+		}
+		AtomicInteger remaining = new AtomicInteger(toDestroy.size() + 1);
+		Runnable countDown = () -> {
+			if (remaining.decrementAndGet() == 0) {
+				executor.shutdown();
+				promise.trySuccess(Unit.Instance);
+			}
+		};
+		// destroying a pool doesn't block, thus all pools are destroyed in parallel
+		toDestroy.forEach(m -> m.destroy(gracePeriod).onComplete(result -> countDown.run()));
+		countDown.run();
+		return promise.future();
+	}
+
+	/**
+	 * The executor for the scheduled jobs of the member pools.
+	 * @return The executor
+	 */
+	ScheduledExecutorService executor() {
+		return executor;
+	}
+
+	/**
+	 * Adds a pool to the registry.
+	 * @param member The pool
+	 * @throws IllegalStateException If the registry has been shut down
+	 */
+	synchronized void join(Member member) {
+		if (isShutdown) {
+			throw new IllegalStateException("The registry has been shut down");
+		}
+		members.add(member);
+	}
+
+	/**
+	 * Removes a pool from the registry.
+	 * @param member The pool
+	 */
+	void leave(Member member) {
+		members.remove(member);
+	}
+
+	/**
+	 * Invoked by a member each time it has created an instance. <br>
+	 * The weight of the instance is expected to already be accounted for using {@link #weighed(long)}. <br>
+	 * Should the registry be over its budget a rebalance is scheduled, unless one is already scheduled.
+	 */
+	void created() {
+		instances.incrementAndGet();
+		if (isOverBudget() && isRebalanceScheduled.compareAndSet(false, true)) {
+			try {
+				executor.execute(() -> {
+					isRebalanceScheduled.set(false);
+					rebalance();
+				});
+			} catch (RejectedExecutionException ex) {
+				// the registry has been shut down, there is nothing to rebalance
+				isRebalanceScheduled.set(false);
+			}
+		}
+	}
+
+	/**
+	 * Invoked by a member each time it has destroyed an instance.
+	 * @param instanceWeight The weight of the destroyed instance
+	 */
+	void destroyed(long instanceWeight) {
+		instances.decrementAndGet();
+		if (instanceWeight != 0) {
+			weight.addAndGet(-instanceWeight);
+		}
+	}
+
+	/**
+	 * Invoked by a member each time the weight of an instance has been computed.
+	 * @param delta The change of the weight
+	 */
+	void weighed(long delta) {
+		weight.addAndGet(delta);
+	}
+
+	/**
+	 * Reclaims idle instances from the least recently active pools until the registry is within its budget or there are no more idle instances.
+	 */
+	void rebalance() {
+		// the activity keeps changing while sorting, each member is sorted on the value read once as the sort requires a stable order
+		Map<Member, Long> lastActive = new IdentityHashMap<>();
+		members.forEach(m -> lastActive.put(m, m.lastActive()));
+		List<Member> byActivity = new ArrayList<>(lastActive.keySet());
+		byActivity.sort(Comparator.comparingLong(lastActive::get));
+		for (Member member : byActivity) {
+			long excess = instanceCount() - maxInstances;
+			long excessWeight = totalWeight() - maxWeight;
+			if (excess <= 0 && excessWeight <= 0) {
+				return;
+			}
+			member.reclaim((int) Math.min(Integer.MAX_VALUE, Math.max(0, excess)), Math.max(0, excessWeight));
+		}
+	}
+
+	private boolean isOverBudget() {
+		return instanceCount() > maxInstances || (maxWeight < Long.MAX_VALUE && totalWeight() > maxWeight);
+	}
+}
@@ -0,0 +1,109 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and wait time distribution of a pool. <br>
+ * All updates are lock free and cheap enough to be made on every borrow. <br>
+ * The wait times are kept in a histogram with buckets doubling in size, i.e. the percentiles have a resolution of a factor two. <br>
+ * Each bucket <i>n</i> holds the waits shorter than <tt>2^n</tt> microseconds. <br>
+ * Borrows not having to wait at all, i.e. the vast majority, are counted separately in a striped counter thus avoiding both timing the borrow and contending on the first bucket.
+ * @author Peter Nerg
+ * @since 1.1
+ */
+final class PoolStatistics {
+	/** The number of buckets, the last holds all waits of 2^(Buckets-2) micros (about 9 minutes) or more. */
+	private static final int Buckets = 32;
+
+	private final LongAdder created = new LongAdder();
+	private final LongAdder destroyed = new LongAdder();
+	private final LongAdder evicted = new LongAdder();
+	private final AtomicLongArray waitTimes = new AtomicLongArray(Buckets);
+	/** The number of borrowers not having to wait, counted towards the first bucket. */
+	private final LongAdder immediate = new LongAdder();
+
+	void created() {
+		created.increment();
+	}
+
+	void destroyed() {
+		destroyed.increment();
+	}
+
+	void evicted() {
+		evicted.increment();
+	}
+
+	long createdCount() {
+		return created.sum();
+	}
+
+	long destroyedCount() {
+		return destroyed.sum();
+	}
+
+	long evictedCount() {
+		return evicted.sum();
+	}
+
+	/**
+	 * Records a borrower getting an instance without waiting.
+	 */
+	void immediate() {
+		immediate.increment();
+	}
+
+	/**
+	 * Records the time a borrower waited for an instance.
+	 * @param nanos The wait time
+	 */
+	void waited(long nanos) {
+		long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+		int bucket = Math.min(Buckets - 1, 64 - Long.numberOfLeadingZeros(micros));
+		waitTimes.incrementAndGet(bucket);
+	}
+
+	/**
+	 * Computes the wait time at the provided percentile. <br>
+	 * The result is the upper bound of the bucket the percentile falls in.
+	 * @param percentile The percentile (<tt>0.0</tt> to <tt>1.0</tt>)
+	 * @return Time in millis, zero if no waits have been recorded
+	 */
+	double waitTime(double percentile) {
+		long[] counts = new long[Buckets];
+		long total = 0;
+		for (int i = 0; i < Buckets; i++) {
+			counts[i] = waitTimes.get(i);
+			total += counts[i];
+		}
+		long immediateCount = immediate.sum();
+		counts[0] += immediateCount;
+		total += immediateCount;
+		long rank = (long) Math.ceil(percentile * total);
+		long seen = 0;
+		for (int i = 0; i < Buckets; i++) {
+			seen += counts[i];
+			if (counts[i] > 0 && seen >= rank) {
+				return (1L << i) / 1000.0;
+			}
+		}
+		return 0;
+	}
+}
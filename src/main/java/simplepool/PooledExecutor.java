@@ -0,0 +1,312 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import static javascalautils.TryCompanion.Success;
+import static javascalautils.TryCompanion.Try;
+import static javascalautils.concurrent.FutureCompanion.Future;
+import static javascalautils.concurrent.PromiseCompanion.Promise;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+
+import javascalautils.ThrowableFunction1;
+import javascalautils.Try;
+import javascalautils.Unit;
+import javascalautils.Validator;
+import javascalautils.concurrent.Future;
+import javascalautils.concurrent.Promise;
+
+/**
+ * Executes tasks on instances borrowed from a pool. <br>
+ * The executor runs a fixed number of worker threads. <br>
+ * A worker borrows one instance and runs a batch of queued tasks on it before returning the instance to the pool. <br>
+ * This way the cost of borrowing/returning is shared by all tasks in the batch, while throughput scales with the number of workers and the size of the pool.
+ *
+ * <pre>
+ * PooledExecutor&lt;Parser&gt; executor = PooledExecutor.executorFor(pool, 4, 100);
+ * Future&lt;Document&gt; document = executor.submit(parser -&gt; parser.parse(data));
+ * </pre>
+ *
+ * @author Peter Nerg
+ * @param <T>
+ *            The type of the pooled instances
+ * @since 1.1
+ */
+public final class PooledExecutor<T> {
+
+	private static final Duration Forever = Duration.ofMillis(Long.MAX_VALUE);
+
+	private final Pool<T> pool;
+	private final int batchSize;
+	private final BlockingQueue<Task<T, ?>> tasks = new LinkedBlockingQueue<>();
+	private final AtomicBoolean isRunning = new AtomicBoolean(true);
+	/** Submitting holds the read lock while shutting down takes the write lock, thus a task accepted before shutdown is always queued before the workers may stop. */
+	private final ReadWriteLock shutdownLock = new ReentrantReadWriteLock();
+	private final CountDownLatch terminated;
+
+	private PooledExecutor(Pool<T> pool, int parallelism, int batchSize) {
+		this.pool = pool;
+		this.batchSize = batchSize;
+		this.terminated = new CountDownLatch(parallelism);
+		for (int i = 0; i < parallelism; i++) {
+			Thread worker = new Thread(() -> work(), "PooledExecutor-worker-" + i);
+			worker.setDaemon(true);
+			worker.start();
+		}
+	}
+
+	/**
+	 * Creates an executor running tasks on instances from the provided pool.
+	 *
+	 * @param <T>
+	 *            The type of the pooled instances
+	 * @param pool
+	 *            The pool to borrow instances from
+	 * @param parallelism
+	 *            The number of worker threads, i.e. the max number of instances borrowed at the same time
+	 * @param batchSize
+	 *            The max number of tasks a worker runs on a single borrowed instance
+	 * @return The executor
+	 * @throws IllegalArgumentException
+	 *             If the parallelism or batch size is less than one
+	 * @since 1.1
+	 */
+	public static <T> PooledExecutor<T> executorFor(Pool<T> pool, int parallelism, int batchSize) {
+		Validator.requireNonNull(pool);
+		if (parallelism < 1 || batchSize < 1) {
+			throw new IllegalArgumentException("The parallelism and batch size must be at least one, was [" + parallelism + "] and [" + batchSize + "]");
+		}
+		return new PooledExecutor<>(pool, parallelism, batchSize);
+	}
+
+	/**
+	 * Submits a task for execution on a pooled instance. <br>
+	 * If the executor has been {@link #shutdown() shut down} an {@link IllegalStateException} is raised.
+	 *
+	 * @param <R>
+	 *            The type of the result of the task
+	 * @param task
+	 *            The task
+	 * @return The Future that will be completed with the result of the task
+	 * @since 1.1
+	 */
+	public <R> Future<R> submit(ThrowableFunction1<T, R> task) {
+		Task<T, R> t = new Task<>(task);
+		shutdownLock.readLock().lock();
+		try {
+			if (!isRunning.get()) {
+				throw new IllegalStateException("Executor has been shut down.");
+			}
+			tasks.add(t);
+		} finally {
+			shutdownLock.readLock().unlock();
+		}
+		return t.promise.future();
+	}
+
+	/**
+	 * Shuts down the executor. <br>
+	 * No new tasks are accepted but already submitted tasks will be executed. <br>
+	 * The pool itself is not affected.
+	 *
+	 * @return The Future that will be completed once all workers have terminated
+	 * @since 1.1
+	 */
+	public Future<Unit> shutdown() {
+		shutdownLock.writeLock().lock();
+		try {
+			isRunning.set(false);
+		} finally {
+			shutdownLock.writeLock().unlock();
+		}
+		return Future(() -> {
+			terminated.await();
+		});
+	}
+
+	/**
+	 * Applies the function to all items with instances borrowed from the pool. <br>
+	 * Up to <i>parallelism</i> instances are borrowed, each instance is used for as many items as possible before being returned. <br>
+	 * Only the first instance is waited for, the rest are only used if they are immediately available in the pool.
+	 *
+	 * @param pool
+	 *            The pool to borrow instances from
+	 * @param items
+	 *            The items to apply the function to
+	 * @param function
+	 *            The function
+	 * @param parallelism
+	 *            The max number of instances to use in parallel
+	 * @return The results, in the same order as the items
+	 */
+	@SuppressWarnings("unchecked")
+	static <T, I, R> Try<List<R>> parallelMap(Pool<T> pool, Iterable<I> items, BiFunction<T, I, R> function, int parallelism) {
+		List<I> input = new ArrayList<>();
+		items.forEach(input::add);
+		// nothing to do, no point in borrowing an instance
+		if (input.isEmpty()) {
+			return Success(Collections.emptyList());
+		}
+		Object[] results = new Object[input.size()];
+		AtomicInteger next = new AtomicInteger();
+		AtomicInteger completed = new AtomicInteger();
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		AtomicReference<Throwable> borrowFailure = new AtomicReference<>();
+
+		int workers = Math.max(1, Math.min(parallelism, input.size()));
+		CountDownLatch done = new CountDownLatch(workers);
+		for (int i = 0; i < workers; i++) {
+			Duration maxWaitTime = i == 0 ? Forever : Duration.ZERO;
+			Future(() -> {
+				try {
+					AtomicBoolean hasInstance = new AtomicBoolean(false);
+					Try<Unit> result = pool.withInstance(maxWaitTime, instance -> {
+						hasInstance.set(true);
+						for (int ix = next.getAndIncrement(); ix < results.length; ix = next.getAndIncrement()) {
+							results[ix] = function.apply(instance, input.get(ix));
+							completed.incrementAndGet();
+						}
+						return Unit.Instance;
+					});
+					// a failing function stops all workers
+					// failing to borrow is only an issue if no other worker processed the items
+					result.failed().forEach(ex -> {
+						if (hasInstance.get()) {
+							failure.compareAndSet(null, ex);
+							next.set(results.length);
+						} else {
+							borrowFailure.compareAndSet(null, ex);
+						}
+					});
+				} catch (RuntimeException ex) {
+					borrowFailure.compareAndSet(null, ex);
+				} finally {
+					done.countDown();
+				}
+			});
+		}
+
+		return Try(() -> {
+			done.await();
+			if (failure.get() != null) {
+				throw failure.get();
+			}
+			if (completed.get() < results.length) {
+				Throwable ex = borrowFailure.get();
+				throw ex != null ? ex : new PoolException("Failed to process all items, processed [" + completed.get() + "] of [" + results.length + "]");
+			}
+			return (List<R>) Arrays.asList(results);
+		});
+	}
+
+	/**
+	 * The work loop for a worker thread.
+	 */
+	private void work() {
+		try {
+			while (isRunning.get() || !tasks.isEmpty()) {
+				Task<T, ?> task = tasks.poll(100, TimeUnit.MILLISECONDS);
+				if (task != null) {
+					runBatch(task);
+				}
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		} finally {
+			terminated.countDown();
+		}
+	}
+
+	/**
+	 * Borrows an instance and runs the provided task and up to batch size of queued tasks on it.
+	 * @param first The first task to run
+	 */
+	private void runBatch(Task<T, ?> first) {
+		Try<Unit> result;
+		try {
+			result = pool.withInstance(Forever, instance -> {
+				Task<T, ?> task = first;
+				for (int i = 1; task != null; i++) {
+					// a failing task ends the batch giving the pool a chance to decide if the instance is broken
+					task.run(instance);
+					task = i < batchSize ? tasks.poll() : null;
+				}
+				return Unit.Instance;
+			});
+		} catch (RuntimeException ex) {
+			// the pool is unusable, e.g. destroyed, thus neither this nor any of the queued tasks will ever run
+			first.promise.tryFailure(ex);
+			failQueuedTasks(ex);
+			return;
+		}
+
+		// failed to borrow an instance, the first task never got to run
+		if (result.isFailure() && !first.hasRun) {
+			result.failed().forEach(ex -> first.promise.failure(ex));
+		}
+	}
+
+	/**
+	 * Fails all tasks currently in the queue.
+	 * @param ex The cause of the failure
+	 */
+	private void failQueuedTasks(Throwable ex) {
+		for (Task<T, ?> task = tasks.poll(); task != null; task = tasks.poll()) {
+			task.promise.tryFailure(ex);
+		}
+	}
+
+	/**
+	 * A submitted task and the promise to complete with its result.
+	 */
+	private static final class Task<T, R> {
+		private final ThrowableFunction1<T, R> function;
+		private final Promise<R> promise = Promise();
+		private boolean hasRun = false;
+
+		private Task(ThrowableFunction1<T, R> function) {
+			this.function = function;
+		}
+
+		/**
+		 * Runs the task completing the promise.
+		 * @param instance The instance to run the task on
+		 * @throws Throwable The failure of the task, if any
+		 */
+		private void run(T instance) throws Throwable {
+			hasRun = true;
+			Try<R> result = Try(() -> function.apply(instance));
+			promise.complete(result);
+			if (result.isFailure()) {
+				throw result.failed().get();
+			}
+		}
+	}
+}
@@ -28,21 +28,20 @@ final class PooledInstance<T> {
     private final T instance;
 
     private final AtomicBoolean inUse = new AtomicBoolean(false);
-    private final long lastUsed = System.currentTimeMillis();
+    private final long lastUsed;
 
     private PooledInstance<T> next;
+    /** The attribute the instance is indexed by, <code>null</code> if not indexed. */
+    private Object attribute;
     
     /**
      * Creates a wrapper instance
      * @param object The object instance to wrap
+     * @param lastUsed The time (millis) the object was last used, i.e. pooled
      */
-    PooledInstance(T object) {
+    PooledInstance(T object, long lastUsed) {
         this.instance = object;
-    }
-
-    PooledInstance(T object, PooledInstance<T> next) {
-        this.instance = object;
-        this.next = next;
+        this.lastUsed = lastUsed;
     }
 
     /**
@@ -56,6 +55,15 @@ final class PooledInstance<T> {
         return inUse.compareAndSet(false, true);
     }
 
+    /**
+     * If this pooled instance has been marked as either used or destroyed.
+     * 
+     * @return <code>true</code> if marked
+     */
+    boolean isUsedOrDestroyed() {
+        return inUse.get();
+    }
+
     /**
      * The last time the wrapped object was used.
      * @return Time in millis
@@ -72,6 +80,14 @@ final class PooledInstance<T> {
     	return instance;
     }
     
+	Object attribute() {
+		return attribute;
+	}
+
+	void attribute(Object attribute) {
+		this.attribute = attribute;
+	}
+
 	PooledInstance<T> next() {
 		return next;
 	}
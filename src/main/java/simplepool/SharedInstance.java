@@ -0,0 +1,138 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Wrapper for an object shared by several concurrent users. <br>
+ * Keeps track of the number of current users without any locking. <br>
+ * The highest bit of the user count is used to mark the instance as retired, a retired instance accepts no new users. <br>
+ * The last user to leave a retired instance is responsible for destroying it.
+ * @author Peter Nerg
+ * @since 1.1
+ * @param <T> The type of the value kept by this instance
+ */
+final class SharedInstance<T> {
+	private static final int Retired = Integer.MIN_VALUE;
+
+	/** The pooled object instance. */
+	private final T instance;
+
+	/** The number of current users, negative if the instance is retired. */
+	private final AtomicInteger users = new AtomicInteger();
+
+	private volatile long lastUsed;
+
+	/**
+	 * Creates a wrapper instance
+	 * @param instance The object instance to wrap
+	 * @param created The time (millis) the instance was created
+	 */
+	SharedInstance(T instance, long created) {
+		this.instance = instance;
+		this.lastUsed = created;
+	}
+
+	/**
+	 * Attempt to add a user to this instance.
+	 * @param maxUsers The max number of concurrent users
+	 * @return <code>true</code> if successful, <code>false</code> if the instance is full or retired
+	 */
+	boolean tryAcquire(int maxUsers) {
+		for (;;) {
+			int current = users.get();
+			if (current < 0 || current >= maxUsers) {
+				return false;
+			}
+			if (users.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Removes a user from this instance. <br>
+	 * The time is only read should this be the last user, i.e. the instance becomes idle.
+	 * @param ticker The source of the time the instance was last used
+	 * @return <code>true</code> if this was the last user of a retired instance, i.e. the instance shall be destroyed
+	 */
+	boolean release(Ticker ticker) {
+		int current = users.decrementAndGet();
+		if (current == 0) {
+			lastUsed = ticker.millis();
+		}
+		return current == Retired;
+	}
+
+	/**
+	 * Retires this instance, i.e. no new users are accepted. <br>
+	 * Should there be no users the instance shall be destroyed immediately, otherwise it's destroyed by the last user.
+	 * @return The number of users at the time of retiring, <code>-1</code> if the instance already was retired
+	 */
+	int retire() {
+		for (;;) {
+			int current = users.get();
+			if (current < 0) {
+				return -1;
+			}
+			if (users.compareAndSet(current, current | Retired)) {
+				return current;
+			}
+		}
+	}
+
+	/**
+	 * Retires this instance if it has had no users since the provided time.
+	 * @param deadLine The time in millis
+	 * @return <code>true</code> if the instance was retired and shall be destroyed
+	 */
+	boolean retireIfIdle(long deadLine) {
+		return lastUsed < deadLine && users.compareAndSet(0, Retired);
+	}
+
+	/**
+	 * The number of current users.
+	 * @return The users
+	 */
+	int users() {
+		return users.get() & Integer.MAX_VALUE;
+	}
+
+	/**
+	 * If this instance has been retired.
+	 * @return <code>true</code> if retired
+	 */
+	boolean isRetired() {
+		return users.get() < 0;
+	}
+
+	/**
+	 * Get the wrapped object instance
+	 * @return The object instance
+	 */
+	T instance() {
+		return instance;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "SharedInstance:["+users()+"]:["+isRetired()+"]:["+instance+"]";
+	}
+}
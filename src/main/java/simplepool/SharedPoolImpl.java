@@ -0,0 +1,442 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import static javascalautils.TryCompanion.Try;
+import static javascalautils.concurrent.FutureCompanion.Future;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import javascalautils.Option;
+import javascalautils.ThrowableFunction0;
+import javascalautils.ThrowableFunction1;
+import javascalautils.Try;
+import javascalautils.Unit;
+import javascalautils.Validator;
+import javascalautils.concurrent.Future;
+import simplepool.Constants.WaitStrategy;
+
+/**
+ * The pool implementation for instances shared by several concurrent users. <br>
+ * Each instance accepts up to a max number of concurrent users. <br>
+ * A borrower is given the least loaded instance, new instances are only created when all existing instances are at their limit. <br>
+ * The instances are kept in a fixed size array and the load of each instance is tracked with atomic counters, thus selecting an instance requires no locking.
+ * 
+ * @author Peter Nerg
+ * @since 1.1
+ */
+final class SharedPoolImpl<T> implements Pool<T> {
+	/** The min/max time to park between attempts to find an instance matching the predicate once all slots are occupied. */
+	private static final long MinParkNanos = TimeUnit.MICROSECONDS.toNanos(50);
+	private static final long MaxParkNanos = TimeUnit.MILLISECONDS.toNanos(10);
+
+	private final ThrowableFunction0<T> instanceFactory;
+	private final Predicate<T> validator;
+	private final Consumer<T> destructor;
+	private final Predicate<Throwable> brokenInstanceDetector;
+	private final WaitStrategy waitStrategy;
+	/** The source of the time the instances were last used. */
+	private final Ticker ticker;
+	private final Option<Function<T, Object>> attributeFunction;
+
+	/** Matches any instance. */
+	private final Predicate<T> anyInstance = t -> true;
+
+	/** The max number of concurrent users of a single instance. */
+	private final int maxUsers;
+
+	/** The active instances, an empty slot is <code>null</code>. */
+	private final AtomicReferenceArray<SharedInstance<T>> slots;
+
+	/** The number of occupied (or reserved) slots. */
+	private final AtomicInteger instances = new AtomicInteger();
+
+	/** Instances that have been retired while still in use. */
+	private final Queue<SharedInstance<T>> retired = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Acts as gate keeper only allowing a maximum number of concurrent users for this pool.
+	 */
+	private final Semaphore getPermits;
+	private final Option<ScheduledFuture<?>> scheduledFuture;
+
+	/**
+	 * If this pool is valid. <br>
+	 * I.e. {@link #destroy()} has not been invoked.
+	 */
+	private final AtomicBoolean isValid = new AtomicBoolean(true);
+
+	SharedPoolImpl(Factory<T> factory) {
+		this.instanceFactory = factory.instanceFactory;
+		this.waitStrategy = factory.waitStrategy;
+		this.ticker = factory.ticker;
+		this.validator = factory.validator.getOrElse(() -> t -> true); // default validator always states true
+		this.destructor = factory.destructor.getOrElse(() -> t -> {
+		}); // default destructor does nothing
+		this.brokenInstanceDetector = factory.brokenInstanceDetector.getOrElse(() -> ex -> false);
+		this.attributeFunction = factory.attributeFunction;
+		this.maxUsers = factory.maxUsersPerInstance;
+		this.slots = new AtomicReferenceArray<>(factory.size);
+		this.getPermits = new Semaphore(factory.size * maxUsers);
+
+		Duration idleTimeout = factory.idleTime;
+		long delayMillis = idleTimeout.toMillis();
+		scheduledFuture = factory.executor.filter(ss -> delayMillis > 0).map(ss -> {
+			return ss.scheduleWithFixedDelay(() -> {
+				retireIdleInstances(idleTimeout);
+			} , delayMillis, Math.max(1, delayMillis / 4), TimeUnit.MILLISECONDS);
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplepool.Pool#getInstance(java.time.Duration)
+	 */
+	@Override
+	public Try<T> getInstance(Duration maxWaitTime) {
+		assertIsValid();
+		return Try(() -> borrow(maxWaitTime, anyInstance).instance());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplepool.Pool#getInstance(java.util.function.Predicate, java.time.Duration)
+	 */
+	@Override
+	public Try<T> getInstance(Predicate<T> predicate, Duration maxWaitTime) {
+		assertIsValid();
+		return Try(() -> borrow(maxWaitTime, predicate).instance());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplepool.Pool#getInstanceByAttribute(java.lang.Object, java.time.Duration)
+	 */
+	@Override
+	public Try<T> getInstanceByAttribute(Object attribute, Duration maxWaitTime) {
+		assertIsValid();
+		// there are only a few instances in a shared pool, scanning them is cheap enough not to need an index
+		Predicate<T> predicate = attributeFunction.map(f -> (Predicate<T>) t -> Objects.equals(attribute, f.apply(t))).getOrElse(() -> t -> false);
+		return Try(() -> borrow(maxWaitTime, predicate).instance());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplepool.Pool#withInstance(java.time.Duration, javascalautils.ThrowableFunction1)
+	 */
+	@Override
+	public <R> Try<R> withInstance(Duration maxWaitTime, ThrowableFunction1<T, R> function) {
+		assertIsValid();
+		return Try(() -> {
+			SharedInstance<T> shared = borrow(maxWaitTime, anyInstance);
+			boolean isBroken = false;
+			try {
+				return function.apply(shared.instance());
+			} catch (Throwable ex) {
+				isBroken = brokenInstanceDetector.test(ex);
+				throw ex;
+			} finally {
+				release(shared, isBroken);
+			}
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplepool.Pool#returnInstance(java.lang.Object)
+	 */
+	@Override
+	public Try<Unit> returnInstance(T instance) {
+		return Try(() -> {
+			Validator.requireNonNull(instance);
+
+			SharedInstance<T> shared = find(instance);
+			// the users of an instance can't be told apart, a user returning twice is only caught once there are no users left
+			if (shared == null || shared.users() == 0) {
+				throw new PoolException("The instance is not borrowed from this pool");
+			}
+			release(shared, false);
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplepool.Pool#destroy(java.time.Duration)
+	 */
+	@Override
+	public Future<Unit> destroy(Duration gracePeriod) {
+		return Future(() -> {
+			if (isValid.compareAndSet(true, false)) {
+				scheduledFuture.forEach(sf -> sf.cancel(true));
+				long now = System.currentTimeMillis();
+				long deadLine = now + Math.min(gracePeriod.toMillis(), Long.MAX_VALUE - now);
+
+				// immediately drain all free resources.
+				int permitsLeft = slots.length() * maxUsers - getPermits.drainPermits();
+
+				// still outstanding users of the instances in the pool
+				// we must wait until each of them has returned or the grace period has ended
+				while (permitsLeft > 0 && getPermits.tryAcquire(Math.max(0, deadLine - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+					permitsLeft--;
+				}
+				// with all permits acquired we know there are no users left
+				// otherwise the instances still in use are destroyed anyways
+				for (int i = 0; i < slots.length(); i++) {
+					SharedInstance<T> shared = slots.get(i);
+					if (shared != null) {
+						retire(i, shared);
+					}
+				}
+				for (SharedInstance<T> shared = retired.poll(); shared != null; shared = retired.poll()) {
+					destroyInstance(shared);
+				}
+			}
+		});
+	}
+
+	private void assertIsValid() {
+		if (!isValid.get()) {
+			throw new IllegalStateException("Pool has been destroyed.");
+		}
+	}
+
+	/**
+	 * Borrows the least loaded instance matching the predicate, creating a new instance if all are at their limit.
+	 * @param maxWaitTime The time to wait for a free slot
+	 * @param predicate The predicate the instance must match
+	 * @return The borrowed instance
+	 * @throws TimeoutException If there was no free slot within the provided time
+	 * @throws InterruptedException If interrupted while waiting for a free slot
+	 */
+	private SharedInstance<T> borrow(Duration maxWaitTime, Predicate<T> predicate) throws TimeoutException, InterruptedException {
+		long deadLine = System.nanoTime() + Math.min(TimeUnit.MILLISECONDS.toNanos(maxWaitTime.toMillis()), Long.MAX_VALUE / 2);
+		// attempt to get a go ahead by acquiring a semaphore
+		if (!PermitBlocker.acquire(getPermits, maxWaitTime.toMillis(), waitStrategy)) {
+			throw new TimeoutException("Timeout waiting for a free object in the pool");
+		}
+
+		for (long parkNanos = MinParkNanos;;) {
+			SharedInstance<T> shared = leastLoaded(predicate);
+			if (shared != null) {
+				// another borrower may have beaten us to the last free slot on the instance, then just retry
+				if (shared.tryAcquire(maxUsers)) {
+					return shared;
+				}
+			} else if (instances.incrementAndGet() <= slots.length()) {
+				return createInstance();
+			} else {
+				instances.decrementAndGet();
+				// all slots may be occupied by instances not matching, an unused one then gives way for a new instance
+				// otherwise wait for a matching instance to be returned or a non-matching one to become unused
+				if (!retireUnused(predicate)) {
+					long remaining = deadLine - System.nanoTime();
+					if (remaining <= 0) {
+						getPermits.release();
+						throw new TimeoutException("Timeout waiting for a free object matching the predicate in the pool");
+					}
+					LockSupport.parkNanos(this, Math.min(parkNanos, remaining));
+					if (Thread.interrupted()) {
+						getPermits.release();
+						throw new InterruptedException();
+					}
+					parkNanos = Math.min(parkNanos * 2, MaxParkNanos);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes a user from the instance, retiring the instance if it's broken or fails validation. <br>
+	 * Finally the permit held by the user is released.
+	 * @param shared The instance
+	 * @param isBroken If the instance is known to be broken
+	 */
+	private void release(SharedInstance<T> shared, boolean isBroken) {
+		try {
+			if (isBroken || !validator.test(shared.instance())) {
+				retire(shared);
+			}
+			if (shared.release(ticker)) {
+				destroyInstance(shared);
+			}
+		} finally {
+			getPermits.release();
+		}
+	}
+
+	/**
+	 * Finds the active instance matching the predicate with the least users that still accepts new users.
+	 * @param predicate The predicate the instance must match
+	 * @return The instance, <code>null</code> if all matching instances are at their limit
+	 */
+	private SharedInstance<T> leastLoaded(Predicate<T> predicate) {
+		SharedInstance<T> best = null;
+		int bestUsers = maxUsers;
+		for (int i = 0; i < slots.length() && bestUsers > 0; i++) {
+			SharedInstance<T> shared = slots.get(i);
+			if (shared != null && !shared.isRetired()) {
+				int users = shared.users();
+				if (users < bestUsers && predicate.test(shared.instance())) {
+					best = shared;
+					bestUsers = users;
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Finds the instance, including retired instances still in use, by identity.
+	 * @param instance The instance
+	 * @return The shared instance, <code>null</code> if not found
+	 */
+	private SharedInstance<T> find(T instance) {
+		for (int i = 0; i < slots.length(); i++) {
+			SharedInstance<T> shared = slots.get(i);
+			if (shared != null && shared.instance() == instance) {
+				return shared;
+			}
+		}
+		for (SharedInstance<T> shared : retired) {
+			if (shared.instance() == instance) {
+				return shared;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Creates a new instance with the creating borrower as its first user. <br>
+	 * The caller must already have reserved a slot.
+	 * @return The instance
+	 */
+	private SharedInstance<T> createInstance() {
+		SharedInstance<T> shared;
+		try {
+			shared = new SharedInstance<>(instanceFactory.apply(), ticker.millis());
+		} catch (Throwable ex) {
+			// for some reason we failed to create an instance
+			// release the reserved slot and the semaphore that was previously acquired
+			instances.decrementAndGet();
+			getPermits.release();
+			throw new PoolException("Failed to create instance", ex);
+		}
+		shared.tryAcquire(maxUsers);
+
+		// as we hold a reservation there is always an empty slot
+		for (;;) {
+			for (int i = 0; i < slots.length(); i++) {
+				if (slots.compareAndSet(i, null, shared)) {
+					return shared;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Retires an instance, freeing its slot for a new instance. <br>
+	 * An instance still in use is kept among the retired until its last user has returned it.
+	 * @param shared The instance
+	 */
+	private void retire(SharedInstance<T> shared) {
+		for (int i = 0; i < slots.length(); i++) {
+			if (slots.get(i) == shared) {
+				retire(i, shared);
+				return;
+			}
+		}
+	}
+
+	private void retire(int slot, SharedInstance<T> shared) {
+		int users = shared.retire();
+		if (users < 0) {
+			return; // someone else beat us to it
+		}
+		if (users > 0) {
+			retired.add(shared);
+		}
+		if (slots.compareAndSet(slot, shared, null)) {
+			instances.decrementAndGet();
+		}
+		if (users == 0) {
+			destroyInstance(shared);
+		} else if (shared.users() == 0) {
+			// the last user left before we added it to the retired, thus failed to remove it
+			retired.remove(shared);
+		}
+	}
+
+	/**
+	 * Retires and destroys one instance without users not matching the predicate.
+	 * @param predicate The predicate
+	 * @return <code>true</code> if an instance was retired
+	 */
+	private boolean retireUnused(Predicate<T> predicate) {
+		for (int i = 0; i < slots.length(); i++) {
+			SharedInstance<T> shared = slots.get(i);
+			if (shared != null && shared.users() == 0 && !predicate.test(shared.instance()) && shared.retireIfIdle(Long.MAX_VALUE)) {
+				if (slots.compareAndSet(i, shared, null)) {
+					instances.decrementAndGet();
+				}
+				destroyInstance(shared);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Retires and destroys all instances that have been unused for longer than the provided time.
+	 * @param maxIdleTime The maximum idle time
+	 */
+	private void retireIdleInstances(Duration maxIdleTime) {
+		long deadLine = ticker.millis() - maxIdleTime.toMillis();
+		for (int i = 0; i < slots.length(); i++) {
+			SharedInstance<T> shared = slots.get(i);
+			if (shared != null && shared.retireIfIdle(deadLine)) {
+				if (slots.compareAndSet(i, shared, null)) {
+					instances.decrementAndGet();
+				}
+				destroyInstance(shared);
+			}
+		}
+	}
+
+	private void destroyInstance(SharedInstance<T> shared) {
+		retired.remove(shared);
+		destructor.accept(shared.instance());
+	}
+}
@@ -0,0 +1,212 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static javascalautils.TryCompanion.Try;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import javascalautils.ThrowableFunction1;
+
+/**
+ * Persists the state of idle instances to a file, allowing a restarted pool to be filled without using the factory. <br>
+ * The file starts with a header holding a magic number, the format version and the number of records. <br>
+ * Each record holds the length of the serialized instance, its CRC32 checksum and the serialized bytes. <br>
+ * The file is written to a temporary file that's atomically moved in place, thus a crash while writing never leaves a half written snapshot. <br>
+ * The file is streamed rather than memory mapped, a mapping would limit the size to 2GB and prevent moving/deleting the file on Windows until it is garbage collected. <br>
+ * Reading is corruption tolerant, a file with unknown magic/version is ignored, records failing their checksum are skipped and reading stops at a truncated record.
+ * @author Peter Nerg
+ * @since 1.1
+ * @param <T> The type of the instances
+ */
+final class Snapshot<T> {
+	static final int Magic = 0x534E4150; // "SNAP"
+	static final int Version = 1;
+	/** Magic, version and record count. */
+	private static final int HeaderSize = 12;
+	/** Length and checksum. */
+	private static final int RecordHeaderSize = 8;
+
+	private final Path file;
+	private final ThrowableFunction1<T, byte[]> serializer;
+	private final ThrowableFunction1<byte[], T> deserializer;
+
+	/**
+	 * Creates the snapshot.
+	 * @param file The snapshot file
+	 * @param serializer The function serializing the state of an instance
+	 * @param deserializer The function recreating an instance from its serialized state
+	 */
+	Snapshot(Path file, ThrowableFunction1<T, byte[]> serializer, ThrowableFunction1<byte[], T> deserializer) {
+		this.file = file;
+		this.serializer = serializer;
+		this.deserializer = deserializer;
+	}
+
+	/**
+	 * Saves the state of the provided instances. <br>
+	 * Instances failing to be serialized, or serialized to <code>null</code>, are left out. <br>
+	 * Should the file not be written the previous snapshot is discarded.
+	 * @param instances The instances
+	 */
+	void save(List<T> instances) {
+		List<byte[]> records = new ArrayList<>();
+		for (T instance : instances) {
+			byte[] bytes = Try(() -> serializer.apply(instance)).getOrElse(() -> null);
+			if (bytes != null) {
+				records.add(bytes);
+			}
+		}
+		try {
+			write(file, records);
+		} catch (IOException ex) {
+			// a stale snapshot must not be restored
+			discard(file);
+		}
+	}
+
+	/**
+	 * Restores the instances from the snapshot. <br>
+	 * The snapshot is consumed, i.e. discarded once read, the same state is never restored twice. <br>
+	 * Should the snapshot not be possible to discard nothing is restored. <br>
+	 * Records failing to be deserialized, or deserialized to <code>null</code>, are left out.
+	 * @return The instances, empty if there was no snapshot
+	 */
+	List<T> restore() {
+		List<byte[]> records = read(file);
+		if (!discard(file)) {
+			return Collections.emptyList();
+		}
+		List<T> instances = new ArrayList<>();
+		for (byte[] record : records) {
+			T instance = Try(() -> deserializer.apply(record)).getOrElse(() -> null);
+			if (instance != null) {
+				instances.add(instance);
+			}
+		}
+		return instances;
+	}
+
+	/**
+	 * Writes the records to the file.
+	 * @param file The file
+	 * @param records The records
+	 * @throws IOException If the file could not be written
+	 */
+	static void write(Path file, List<byte[]> records) throws IOException {
+		Path parent = file.toAbsolutePath().getParent();
+		Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+		try {
+			try (FileOutputStream stream = new FileOutputStream(temp.toFile()); DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+				out.writeInt(Magic);
+				out.writeInt(Version);
+				out.writeInt(records.size());
+				for (byte[] record : records) {
+					out.writeInt(record.length);
+					out.writeInt(checksum(record));
+					out.write(record);
+				}
+				out.flush();
+				stream.getChannel().force(true);
+			}
+			Files.move(temp, file, ATOMIC_MOVE, REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Reads the valid records from the file.
+	 * @param file The file
+	 * @return The records, empty if the file doesn't exist or isn't a valid snapshot
+	 */
+	static List<byte[]> read(Path file) {
+		if (!Files.isRegularFile(file)) {
+			return Collections.emptyList();
+		}
+		List<byte[]> records = new ArrayList<>();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			long remaining = Files.size(file);
+			if (remaining < HeaderSize || in.readInt() != Magic || in.readInt() != Version) {
+				return Collections.emptyList();
+			}
+			int count = in.readInt();
+			remaining -= HeaderSize;
+			for (int i = 0; i < count && remaining >= RecordHeaderSize; i++) {
+				int length = in.readInt();
+				int checksum = in.readInt();
+				remaining -= RecordHeaderSize;
+				if (length < 0 || length > remaining) {
+					break; // truncated or corrupt length, nothing after this can be trusted
+				}
+				byte[] record = new byte[length];
+				in.readFully(record);
+				remaining -= length;
+				if (checksum(record) == checksum) {
+					records.add(record);
+				}
+			}
+			return records;
+		} catch (EOFException ex) {
+			// the file was truncated while being read, the records read so far are valid
+			return records;
+		} catch (IOException ex) {
+			return Collections.emptyList();
+		}
+	}
+
+	/**
+	 * Discards the snapshot file. <br>
+	 * Should the file not be possible to delete, e.g. held open by another process, it's truncated instead as an empty file is not a valid snapshot.
+	 * @param file The file
+	 * @return <code>true</code> if the file no longer holds a snapshot
+	 */
+	static boolean discard(Path file) {
+		try {
+			Files.deleteIfExists(file);
+			return true;
+		} catch (IOException ex) {
+			try (FileChannel channel = FileChannel.open(file, WRITE, TRUNCATE_EXISTING)) {
+				return true;
+			} catch (IOException ex2) {
+				return false;
+			}
+		}
+	}
+
+	private static int checksum(byte[] bytes) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, bytes.length);
+		return (int) crc.getValue();
+	}
+}
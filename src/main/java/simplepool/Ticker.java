@@ -0,0 +1,71 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import java.time.Duration;
+
+/**
+ * The source of time used by the pool for all its timestamps, such as when an instance was returned, created or borrowed. <br>
+ * The timestamps drive the idle timeout, max lifetime, max hold time and eviction policies. <br>
+ * By default the pool reads {@link #system() the system clock}. <br>
+ * A {@link #coarse(Duration) coarse} ticker trades precision for cheaper reads, the time is cached and updated by a background thread. <br>
+ * In tests a ticker controlled by the test gives deterministic time for the timeout and lifetime behavior.
+ * 
+ * <pre>
+ * Pool&lt;Connection&gt; pool = Factory.poolFor(() -&gt; connect()).withTicker(Ticker.coarse(Duration.ofMillis(10))).create();
+ * </pre>
+ * 
+ * Note that the ticker is not used for the time a borrower waits for an instance, waiting is always measured in real time.
+ * 
+ * @author Peter Nerg
+ * @see Factory#withTicker(Ticker)
+ * @since 1.1
+ */
+@FunctionalInterface
+public interface Ticker {
+
+	/**
+	 * The current time.
+	 * 
+	 * @return Time in millis, the same epoch as {@link System#currentTimeMillis()} unless it's a virtual time for testing
+	 * @since 1.1
+	 */
+	long millis();
+
+	/**
+	 * A ticker reading the system clock.
+	 * 
+	 * @return The ticker
+	 * @since 1.1
+	 */
+	static Ticker system() {
+		return System::currentTimeMillis;
+	}
+
+	/**
+	 * A ticker caching the system clock, updated by a shared background thread at the provided resolution. <br>
+	 * Reading the ticker is a single volatile read, at the price of the time lagging up to the <i>resolution</i> behind. <br>
+	 * The background updates stop once the ticker is no longer referenced.
+	 * 
+	 * @param resolution
+	 *            The interval between the updates of the cached time
+	 * @return The ticker
+	 * @since 1.1
+	 */
+	static Ticker coarse(Duration resolution) {
+		return CoarseTicker.create(resolution);
+	}
+}
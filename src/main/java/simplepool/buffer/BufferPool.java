@@ -0,0 +1,418 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool.buffer;
+
+import static javascalautils.TryCompanion.Try;
+
+import java.lang.ref.WeakReference;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import javascalautils.Try;
+import javascalautils.Unit;
+import javascalautils.Validator;
+import simplepool.Constants.PoolMode;
+import simplepool.Factory;
+import simplepool.Pool;
+
+/**
+ * A pool of direct {@link ByteBuffer byte buffers}. <br>
+ * Allocating and freeing direct buffers is very expensive, this pool makes sure the buffers are allocated once and then reused. <br>
+ * The buffers are divided into size classes of powers of two, a request for a buffer is served by the smallest size class large enough. <br>
+ * Instead of allocating each buffer separately, large direct regions (slabs) are allocated and sliced into buffers. <br>
+ * Each thread keeps a small magazine of released buffers per size class, this allows a thread to reuse buffers without touching the shared pool. <br>
+ * The total amount of off-heap memory allocated by the pool is bounded, once all memory is allocated the pool only serves reused buffers. <br>
+ * Should a size class have no free buffers once all memory is allocated, the request is served by an idle buffer of a larger size class. <br>
+ * Buffers are automatically cleared when released, only buffers acquired from the pool and not yet released are accepted.
+ * 
+ * <pre>
+ * BufferPool bufferPool = BufferPool.create(64 * 1024, 64 * 1024 * 1024);
+ * ByteBuffer buffer = bufferPool.acquire(1500, Duration.ofSeconds(1)).get();
+ * ...
+ * bufferPool.release(buffer);
+ * </pre>
+ * 
+ * Note that buffers held in the magazine of a thread count as borrowed from the pool. <br>
+ * The magazine of a terminated thread is returned to the pool once a buffer can't be acquired immediately. <br>
+ * While any thread is waiting for a buffer, or once all memory is allocated, released buffers bypass the magazines.
+ * 
+ * @author Peter Nerg
+ * @since 1.1
+ */
+public final class BufferPool {
+	/** The smallest size class. */
+	static final int MinBufferSize = 64;
+	/** The default size of each slab. */
+	static final int DefaultSlabSize = 1024 * 1024;
+	/** The max number of buffers per size class kept by a single thread. */
+	static final int MagazineSize = 8;
+	/** The min/max time to park between attempts to acquire a buffer once all memory is allocated. */
+	private static final long MinParkNanos = TimeUnit.MICROSECONDS.toNanos(50);
+	private static final long MaxParkNanos = TimeUnit.MILLISECONDS.toNanos(10);
+
+	private final Pool<ByteBuffer>[] pools;
+	private final int maxBufferSize;
+	private final int slabSize;
+	private final long maxMemory;
+
+	/** The total amount of off-heap memory allocated. */
+	private final AtomicLong allocatedMemory = new AtomicLong();
+	/** Set once an allocation has failed due to the memory budget, released buffers then bypass the magazines. */
+	private volatile boolean isExhausted = false;
+	/** The number of threads waiting for a buffer, while any are waiting released buffers bypass the magazines. */
+	private final AtomicInteger waiters = new AtomicInteger();
+
+	/** All buffers created by the pool, mapped to the flag stating if the buffer is acquired by a user. */
+	private final Map<BufferKey, AtomicBoolean> buffers = new ConcurrentHashMap<>();
+
+	/** The caches of all threads using the pool, kept to reclaim the magazines of terminated threads. */
+	private final Set<ThreadCache> caches = ConcurrentHashMap.newKeySet();
+	private final ThreadLocal<ThreadCache> threadCache;
+
+	@SuppressWarnings("unchecked")
+	private BufferPool(int maxBufferSize, int slabSize, long maxMemory) {
+		this.maxBufferSize = sizeClassSize(maxBufferSize);
+		this.slabSize = slabSize;
+		this.maxMemory = maxMemory;
+
+		int classes = sizeClass(this.maxBufferSize) + 1;
+		pools = new Pool[classes];
+		for (int i = 0; i < classes; i++) {
+			int bufferSize = MinBufferSize << i;
+			Slabs slabs = new Slabs(bufferSize);
+			pools[i] = Factory.poolFor(() -> slabs.next()).ofSize((int) Math.min(Integer.MAX_VALUE, Math.max(1, maxMemory / bufferSize))).withPoolMode(PoolMode.LIFO).create();
+		}
+		threadCache = ThreadLocal.withInitial(() -> {
+			ThreadCache cache = new ThreadCache(classes);
+			caches.add(cache);
+			return cache;
+		});
+	}
+
+	/**
+	 * Creates a buffer pool using the default slab size of 1MB.
+	 * 
+	 * @param maxBufferSize
+	 *            The max size of a buffer, rounded up to the nearest power of two
+	 * @param maxMemory
+	 *            The max amount of off-heap memory to allocate
+	 * @return The buffer pool
+	 * @since 1.1
+	 */
+	public static BufferPool create(int maxBufferSize, long maxMemory) {
+		return create(maxBufferSize, DefaultSlabSize, maxMemory);
+	}
+
+	/**
+	 * Creates a buffer pool.
+	 * 
+	 * @param maxBufferSize
+	 *            The max size of a buffer, rounded up to the nearest power of two
+	 * @param slabSize
+	 *            The size of each direct memory region to slice buffers from
+	 * @param maxMemory
+	 *            The max amount of off-heap memory to allocate
+	 * @return The buffer pool
+	 * @since 1.1
+	 */
+	public static BufferPool create(int maxBufferSize, int slabSize, long maxMemory) {
+		return new BufferPool(maxBufferSize, slabSize, maxMemory);
+	}
+
+	/**
+	 * Acquire a buffer with at least the requested capacity. <br>
+	 * The capacity of the buffer is the requested capacity rounded up to the nearest power of two, the limit of the buffer is set to the requested capacity. <br>
+	 * If no free buffers this method waits (for the provided time) until a buffer is released.
+	 * 
+	 * @param capacity
+	 *            The requested capacity
+	 * @param maxWaitTime
+	 *            The time to wait for a free buffer
+	 * @return The buffer
+	 * @since 1.1
+	 */
+	public Try<ByteBuffer> acquire(int capacity, Duration maxWaitTime) {
+		if (capacity > maxBufferSize) {
+			return Try(() -> {
+				throw new IllegalArgumentException("Requested capacity [" + capacity + "] exceeds the max buffer size [" + maxBufferSize + "]");
+			});
+		}
+		int sizeClass = sizeClass(capacity);
+		ThreadCache cache = threadCache.get();
+		ByteBuffer buffer = cache.magazines[sizeClass].pop();
+		Try<ByteBuffer> result = buffer != null ? Try(() -> buffer) : acquireShared(sizeClass, maxWaitTime);
+		result.forEach(b -> {
+			cache.state(b).set(true);
+			// cast as the covariant overrides of ByteBuffer added in Java 9 don't exist on Java 8
+			((Buffer) b).limit(capacity);
+		});
+		return result;
+	}
+
+	/**
+	 * Releases a buffer back to the pool. <br>
+	 * The buffer is cleared before it's reused. <br>
+	 * A buffer must only be released once, and only to the pool it was acquired from, any other buffer is rejected.
+	 * 
+	 * @param buffer
+	 *            The buffer to release
+	 * @return The result of releasing the buffer
+	 * @since 1.1
+	 */
+	public Try<Unit> release(ByteBuffer buffer) {
+		Validator.requireNonNull(buffer);
+		ThreadCache cache = threadCache.get();
+		AtomicBoolean isAcquired = buffer.isDirect() ? cache.state(buffer) : null;
+		if (isAcquired == null) {
+			return Try(() -> {
+				throw new IllegalArgumentException("The buffer is not acquired from this pool");
+			});
+		}
+		if (!isAcquired.compareAndSet(true, false)) {
+			return Try(() -> {
+				throw new IllegalStateException("The buffer has already been released");
+			});
+		}
+		((Buffer) buffer).clear();
+		int sizeClass = sizeClass(buffer.capacity());
+		if (!isExhausted && waiters.get() == 0 && cache.magazines[sizeClass].push(buffer)) {
+			return Try(() -> {
+			});
+		}
+		return pools[sizeClass].returnInstance(buffer);
+	}
+
+	/**
+	 * The total amount of off-heap memory allocated by this pool.
+	 * 
+	 * @return The amount of bytes
+	 * @since 1.1
+	 */
+	public long allocatedMemory() {
+		return allocatedMemory.get();
+	}
+
+	/**
+	 * Acquires a buffer from the shared pool of the size class. <br>
+	 * Once all memory is allocated a new buffer can't be created even though the pool of the size class has free capacity. <br>
+	 * The request is then served by an idle buffer of a larger size class, or retried until a buffer is released or the wait time has passed.
+	 * @param sizeClass The size class
+	 * @param maxWaitTime The time to wait for a free buffer
+	 * @return The buffer
+	 */
+	private Try<ByteBuffer> acquireShared(int sizeClass, Duration maxWaitTime) {
+		long deadLine = System.nanoTime() + Math.min(maxWaitTime.toNanos(), Long.MAX_VALUE / 2);
+		Try<ByteBuffer> result = pools[sizeClass].getInstance(Duration.ZERO);
+		// buffers may be stuck in the magazines of terminated threads
+		if (result.isFailure() && reclaimMagazines() > 0) {
+			result = pools[sizeClass].getInstance(Duration.ZERO);
+		}
+		if (result.isSuccess()) {
+			return result;
+		}
+		waiters.incrementAndGet();
+		try {
+			if (!isExhausted) {
+				// all buffers of the size class are in use, wait for one to be released
+				result = pools[sizeClass].getInstance(Duration.ofNanos(Math.max(0, deadLine - System.nanoTime())));
+				if (result.isSuccess() || !isExhausted) {
+					return result;
+				}
+			}
+
+			// no memory left to create new buffers, poll for a released buffer of this or any larger size class
+			for (long parkNanos = MinParkNanos;; parkNanos = Math.min(parkNanos * 2, MaxParkNanos)) {
+				for (int i = sizeClass; i < pools.length; i++) {
+					Try<ByteBuffer> idle = pools[i].getInstance(Duration.ZERO);
+					if (idle.isSuccess()) {
+						return idle;
+					}
+				}
+				long remaining = deadLine - System.nanoTime();
+				if (remaining <= 0) {
+					return Try(() -> {
+						throw new TimeoutException("Timeout waiting for a free buffer, the off-heap memory budget [" + maxMemory + "] is exhausted");
+					});
+				}
+				LockSupport.parkNanos(Math.min(parkNanos, remaining));
+			}
+		} finally {
+			waiters.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Returns the buffers in the magazines of all terminated threads to the pool.
+	 * @return The number of returned buffers
+	 */
+	private int reclaimMagazines() {
+		int reclaimed = 0;
+		for (ThreadCache cache : caches) {
+			if (!cache.isAlive() && caches.remove(cache)) {
+				for (int i = 0; i < cache.magazines.length; i++) {
+					for (ByteBuffer buffer = cache.magazines[i].pop(); buffer != null; buffer = cache.magazines[i].pop()) {
+						pools[i].returnInstance(buffer);
+						reclaimed++;
+					}
+				}
+			}
+		}
+		return reclaimed;
+	}
+
+	/**
+	 * The size class for the provided capacity, i.e. the index of the smallest power of two fitting the capacity.
+	 * @param capacity The capacity
+	 * @return The size class
+	 */
+	static int sizeClass(int capacity) {
+		return Integer.numberOfTrailingZeros(sizeClassSize(capacity) / MinBufferSize);
+	}
+
+	/**
+	 * The smallest power of two (at least {@link #MinBufferSize}) fitting the capacity.
+	 * @param capacity The capacity
+	 * @return The size
+	 */
+	static int sizeClassSize(int capacity) {
+		return capacity <= MinBufferSize ? MinBufferSize : Integer.highestOneBit(capacity - 1) << 1;
+	}
+
+	/**
+	 * Carves buffers of a single size class out of slabs.
+	 */
+	private final class Slabs {
+		private final int bufferSize;
+		private ByteBuffer slab;
+
+		private Slabs(int bufferSize) {
+			this.bufferSize = bufferSize;
+		}
+
+		/**
+		 * Slices the next buffer from the current slab, allocating a new slab if the current is exhausted.
+		 * @return The buffer
+		 */
+		private synchronized ByteBuffer next() {
+			if (slab == null || slab.remaining() < bufferSize) {
+				int size = Math.max(bufferSize, slabSize - slabSize % bufferSize);
+				if (allocatedMemory.addAndGet(size) > maxMemory) {
+					allocatedMemory.addAndGet(-size);
+					isExhausted = true;
+					throw new IllegalStateException("The off-heap memory budget [" + maxMemory + "] is exhausted");
+				}
+				slab = ByteBuffer.allocateDirect(size);
+			}
+			int position = slab.position();
+			((Buffer) slab).limit(position + bufferSize);
+			ByteBuffer buffer = slab.slice();
+			((Buffer) slab).limit(slab.capacity());
+			((Buffer) slab).position(position + bufferSize);
+			buffers.put(new BufferKey(buffer), new AtomicBoolean(false));
+			return buffer;
+		}
+	}
+
+	/**
+	 * The state kept per thread using the pool.
+	 */
+	private final class ThreadCache {
+		private final WeakReference<Thread> owner = new WeakReference<>(Thread.currentThread());
+		private final Magazine[] magazines;
+		/** Reused for looking up buffers, avoids allocating a key per lookup. */
+		private final BufferKey probe = new BufferKey(null);
+
+		private ThreadCache(int classes) {
+			magazines = new Magazine[classes];
+			for (int i = 0; i < classes; i++) {
+				magazines[i] = new Magazine();
+			}
+		}
+
+		/**
+		 * Looks up the state of a buffer.
+		 * @param buffer The buffer
+		 * @return The flag stating if the buffer is acquired, <code>null</code> if the buffer is not created by the pool
+		 */
+		private AtomicBoolean state(ByteBuffer buffer) {
+			probe.buffer = buffer;
+			AtomicBoolean state = buffers.get(probe);
+			probe.buffer = null;
+			return state;
+		}
+
+		private boolean isAlive() {
+			Thread thread = owner.get();
+			return thread != null && thread.isAlive();
+		}
+	}
+
+	/**
+	 * Key looking up buffers by identity, the equality of a buffer is based on its content.
+	 */
+	private static final class BufferKey {
+		private ByteBuffer buffer;
+
+		private BufferKey(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(buffer);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof BufferKey && ((BufferKey) obj).buffer == buffer;
+		}
+	}
+
+	/**
+	 * A small per thread stack of released buffers.
+	 */
+	private static final class Magazine {
+		private final ByteBuffer[] buffers = new ByteBuffer[MagazineSize];
+		private int size = 0;
+
+		private ByteBuffer pop() {
+			if (size == 0) {
+				return null;
+			}
+			ByteBuffer buffer = buffers[--size];
+			buffers[size] = null;
+			return buffer;
+		}
+
+		private boolean push(ByteBuffer buffer) {
+			if (size == buffers.length) {
+				return false;
+			}
+			buffers[size++] = buffer;
+			return true;
+		}
+	}
+}
@@ -0,0 +1,200 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Emits diagnostic events for the pool as JDK Flight Recorder events. <br>
+ * This is the Java 11 variant packaged in the multi-release jar, it has the same operations as the Java 8 variant. <br>
+ * Each operation first checks if the event type is enabled, thus no event objects are created unless recording.
+ * @author Peter Nerg
+ * @since 1.1
+ */
+final class PoolEvents {
+
+	static final String Acquired = "acquired";
+	static final String TimedOut = "timeout";
+	static final String Rejected = "rejected";
+	static final String Interrupted = "interrupted";
+	static final String Failed = "failed";
+
+	private static final EventType BorrowWaitType = EventType.getEventType(BorrowWaitEvent.class);
+	private static final EventType CreateType = EventType.getEventType(CreateEvent.class);
+	private static final EventType ValidationFailedType = EventType.getEventType(ValidationFailedEvent.class);
+	private static final EventType IdleEvictedType = EventType.getEventType(IdleEvictedEvent.class);
+	private static final EventType DestroyType = EventType.getEventType(DestroyEvent.class);
+
+	private PoolEvents() {
+	}
+
+	/**
+	 * Begins the wait for a permit to borrow an instance.
+	 * @return The event, <code>null</code> if not recorded
+	 */
+	static Object beginBorrowWait() {
+		if (!BorrowWaitType.isEnabled()) {
+			return null;
+		}
+		BorrowWaitEvent event = new BorrowWaitEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Ends the wait for a permit to borrow an instance.
+	 * @param event The event as returned by {@link #beginBorrowWait()}
+	 * @param outcome The outcome of the wait
+	 */
+	static void endBorrowWait(Object event, String outcome) {
+		if (event != null) {
+			BorrowWaitEvent e = (BorrowWaitEvent) event;
+			e.outcome = outcome;
+			e.commit();
+		}
+	}
+
+	/**
+	 * Begins the creation of an instance.
+	 * @return The event, <code>null</code> if not recorded
+	 */
+	static Object beginCreate() {
+		if (!CreateType.isEnabled()) {
+			return null;
+		}
+		CreateEvent event = new CreateEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Ends the creation of an instance.
+	 * @param event The event as returned by {@link #beginCreate()}
+	 * @param success If the instance was created
+	 */
+	static void endCreate(Object event, boolean success) {
+		if (event != null) {
+			CreateEvent e = (CreateEvent) event;
+			e.success = success;
+			e.commit();
+		}
+	}
+
+	/**
+	 * A returned instance is destroyed instead of put back into the pool.
+	 * @param instance The instance
+	 * @param isBroken If broken as decided by the broken instance detector, otherwise it failed validation
+	 */
+	static void validationFailed(Object instance, boolean isBroken) {
+		if (ValidationFailedType.isEnabled()) {
+			ValidationFailedEvent event = new ValidationFailedEvent();
+			event.instanceClass = instance.getClass();
+			event.broken = isBroken;
+			event.commit();
+		}
+	}
+
+	/**
+	 * An idle instance is evicted from the pool. <br>
+	 * Emitted for every idle instance taken out of the pool to be destroyed, e.g. by the idle timeout, the eviction policy, the weight budget, a refresh, an explicit eviction or destroying the pool.
+	 * @param idleTime The time (millis) the instance was idle
+	 */
+	static void idleEvicted(long idleTime) {
+		if (IdleEvictedType.isEnabled()) {
+			IdleEvictedEvent event = new IdleEvictedEvent();
+			event.idleTime = idleTime;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Begins the destruction of the pool.
+	 * @return The event, <code>null</code> if not recorded
+	 */
+	static Object beginDestroy() {
+		if (!DestroyType.isEnabled()) {
+			return null;
+		}
+		DestroyEvent event = new DestroyEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Ends the destruction of the pool.
+	 * @param event The event as returned by {@link #beginDestroy()}
+	 */
+	static void endDestroy(Object event) {
+		if (event != null) {
+			((DestroyEvent) event).commit();
+		}
+	}
+
+	@Name("simplepool.BorrowWait")
+	@Label("Pool Borrow Wait")
+	@Description("Waiting for a permit to borrow an instance from the pool")
+	@Category("Simple Pool")
+	static final class BorrowWaitEvent extends Event {
+		@Label("Outcome")
+		String outcome;
+	}
+
+	@Name("simplepool.Create")
+	@Label("Pool Instance Creation")
+	@Description("Creating an instance using the factory of the pool")
+	@Category("Simple Pool")
+	static final class CreateEvent extends Event {
+		@Label("Success")
+		boolean success;
+	}
+
+	@Name("simplepool.ValidationFailed")
+	@Label("Pool Validation Failure")
+	@Description("A returned instance failed validation or was broken and is destroyed")
+	@Category("Simple Pool")
+	@StackTrace(false)
+	static final class ValidationFailedEvent extends Event {
+		@Label("Instance Class")
+		Class<?> instanceClass;
+		@Label("Broken")
+		boolean broken;
+	}
+
+	@Name("simplepool.IdleEvicted")
+	@Label("Pool Idle Eviction")
+	@Description("An idle instance is evicted from the pool")
+	@Category("Simple Pool")
+	@StackTrace(false)
+	static final class IdleEvictedEvent extends Event {
+		@Label("Idle Time")
+		@Timespan(Timespan.MILLISECONDS)
+		long idleTime;
+	}
+
+	@Name("simplepool.Destroy")
+	@Label("Pool Destroy")
+	@Description("Destroying the pool, including waiting for borrowed instances")
+	@Category("Simple Pool")
+	static final class DestroyEvent extends Event {
+	}
+}
@@ -0,0 +1,58 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import java.time.Duration;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Benchmark of a parallel stream pipeline borrowing from a pool smaller than the parallelism of the common fork/join pool. <br>
+ * Each element borrows an instance, simulates work by sleeping and returns the instance. <br>
+ * Run with: <tt>java -cp ... simplepool.ParallelStreamBenchmark [poolSize] [elements] [holdMillis]</tt>
+ * @author Peter Nerg
+ */
+public final class ParallelStreamBenchmark {
+
+	public static void main(String[] args) throws Throwable {
+		int poolSize = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+		int elements = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		long holdMillis = args.length > 2 ? Long.parseLong(args[2]) : 1;
+
+		Pool<Object> pool = Factory.poolFor(() -> new Object()).ofSize(poolSize).create();
+		System.out.println("Parallelism [" + ForkJoinPool.getCommonPoolParallelism() + "] pool size [" + poolSize + "] elements [" + elements + "] hold time [" + holdMillis + "ms]");
+
+		// warm up
+		run(pool, elements, 0);
+		for (int round = 1; round <= 5; round++) {
+			long start = System.nanoTime();
+			long ok = run(pool, elements, holdMillis);
+			long elapsed = System.nanoTime() - start;
+			System.out.println("Round [" + round + "] completed [" + ok + "] in [" + TimeUnit.NANOSECONDS.toMillis(elapsed) + "ms] throughput [" + (elements * 1_000_000_000L / elapsed) + " ops/s]");
+		}
+		pool.destroy().result(10, TimeUnit.SECONDS);
+	}
+
+	private static long run(Pool<Object> pool, int elements, long holdMillis) {
+		return IntStream.range(0, elements).parallel().mapToObj(i -> pool.withInstance(Duration.ofSeconds(10), o -> {
+			if (holdMillis > 0) {
+				Thread.sleep(holdMillis);
+			}
+			return o;
+		})).filter(t -> t.isSuccess()).count();
+	}
+}
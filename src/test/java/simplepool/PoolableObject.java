@@ -22,7 +22,7 @@ package simplepool;
 final class PoolableObject {
 
 	private final String value;
-	private boolean isDestroyed = false;
+	private volatile boolean isDestroyed = false;
 	private boolean isValid = true;
 	
 	PoolableObject(String value) {
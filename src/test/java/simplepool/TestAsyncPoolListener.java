@@ -0,0 +1,168 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Test the class {@link AsyncPoolListener}
+ * @author Peter Nerg
+ */
+public class TestAsyncPoolListener extends BaseAssert {
+	private static final long MaxTestTime = 5000;
+	private final List<String> events = new CopyOnWriteArrayList<>();
+	private final CountDownLatch destroyed = new CountDownLatch(1);
+	private final PoolListener<String> recorder = new PoolListener<String>() {
+		@Override
+		public void created(String instance) {
+			events.add("created:" + instance);
+		}
+
+		@Override
+		public void borrowed(String instance) {
+			events.add("borrowed:" + instance);
+		}
+
+		@Override
+		public void returned(String instance) {
+			events.add("returned:" + instance);
+		}
+
+		@Override
+		public void validationFailed(String instance) {
+			events.add("validationFailed:" + instance);
+		}
+
+		@Override
+		public void evicted(String instance) {
+			events.add("evicted:" + instance);
+		}
+
+		@Override
+		public void destroyed(String instance) {
+			events.add("destroyed:" + instance);
+		}
+
+		@Override
+		public void poolDestroyed() {
+			destroyed.countDown();
+		}
+	};
+
+	@Test
+	public void capacity_roundedToPowerOfTwo() {
+		AsyncPoolListener<String> listener = new AsyncPoolListener<>(recorder, 5);
+		assertEquals(8, listener.capacity());
+		listener.poolDestroyed();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void create_invalidBufferSize() {
+		new AsyncPoolListener<>(recorder, 0);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void deliver_inOrder() throws InterruptedException {
+		AsyncPoolListener<String> listener = new AsyncPoolListener<>(recorder, 16);
+		listener.created("a");
+		listener.borrowed("a");
+		listener.returned("a");
+		listener.validationFailed("a");
+		listener.evicted("a");
+		listener.destroyed("a");
+		listener.poolDestroyed();
+		assertTrue(destroyed.await(1, TimeUnit.SECONDS));
+		assertEquals("[created:a, borrowed:a, returned:a, validationFailed:a, evicted:a, destroyed:a]", events.toString());
+		assertEquals(0, listener.dropped());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void deliver_manyEvents() throws InterruptedException {
+		AsyncPoolListener<String> listener = new AsyncPoolListener<>(recorder, 4);
+		for (int i = 0; i < 1000; i++) {
+			listener.borrowed("" + i);
+		}
+		listener.poolDestroyed();
+		assertTrue(destroyed.await(1, TimeUnit.SECONDS));
+		assertEquals(1000, events.size() + listener.dropped());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void deliver_failingListener() throws InterruptedException {
+		AsyncPoolListener<String> listener = new AsyncPoolListener<>(new PoolListener<String>() {
+			@Override
+			public void borrowed(String instance) {
+				throw new IllegalStateException("Error, terror");
+			}
+
+			@Override
+			public void poolDestroyed() {
+				destroyed.countDown();
+			}
+		}, 4);
+		listener.borrowed("a");
+		listener.poolDestroyed();
+		assertTrue(destroyed.await(1, TimeUnit.SECONDS));
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void poolDestroyed_bufferFull() throws InterruptedException {
+		CountDownLatch blocked = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AsyncPoolListener<String> listener = new AsyncPoolListener<>(new PoolListener<String>() {
+			@Override
+			public void borrowed(String instance) {
+				blocked.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			@Override
+			public void poolDestroyed() {
+				destroyed.countDown();
+			}
+		}, 2);
+		listener.borrowed("a");
+		assertTrue(blocked.await(1, TimeUnit.SECONDS));
+		while (listener.dropped() == 0) {
+			listener.borrowed("b");
+		}
+
+		//the buffer is full and the listener is stuck, destroying the pool must still not block
+		listener.poolDestroyed();
+		assertEquals(1, destroyed.getCount());
+
+		//once the listener is unblocked the remaining events and finally the pool destroyed event are delivered
+		release.countDown();
+		assertTrue(destroyed.await(1, TimeUnit.SECONDS));
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void poolDestroyed_noEvents() throws InterruptedException {
+		AsyncPoolListener<String> listener = new AsyncPoolListener<>(recorder, 4);
+		listener.poolDestroyed();
+		assertTrue(destroyed.await(1, TimeUnit.SECONDS));
+		assertTrue(events.isEmpty());
+	}
+}
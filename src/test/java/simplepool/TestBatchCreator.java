@@ -0,0 +1,116 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import static javascalautils.concurrent.FutureCompanion.Future;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import javascalautils.concurrent.Future;
+
+/**
+ * Test the class {@link BatchCreator}
+ * @author Peter Nerg
+ */
+public class TestBatchCreator extends BaseAssert {
+	private static final long MaxTestTime = 5000;
+	private final AtomicInteger counter = new AtomicInteger();
+	private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+	private final List<String> surplus = new CopyOnWriteArrayList<>();
+
+	@Test(timeout = MaxTestTime)
+	public void create_single() throws Throwable {
+		BatchCreator<String> creator = new BatchCreator<>(n -> create(n, n), surplus::add);
+		assertEquals("0", creator.create());
+		assertEquals(Collections.singletonList(1), batchSizes);
+		assertTrue(surplus.isEmpty());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void create_surplus() throws Throwable {
+		BatchCreator<String> creator = new BatchCreator<>(n -> create(n, n + 2), surplus::add);
+		assertEquals("0", creator.create());
+		assertEquals("[1, 2]", surplus.toString());
+	}
+
+	@Test(timeout = MaxTestTime, expected = PoolException.class)
+	public void create_tooFew() throws Throwable {
+		BatchCreator<String> creator = new BatchCreator<>(n -> create(n, 0), surplus::add);
+		creator.create();
+	}
+
+	@Test(timeout = MaxTestTime, expected = IllegalStateException.class)
+	public void create_failure() throws Throwable {
+		BatchCreator<String> creator = new BatchCreator<>(n -> {
+			throw new IllegalStateException("Error, terror");
+		} , surplus::add);
+		creator.create();
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void create_concurrentRequestsCoalesced() throws Throwable {
+		CountDownLatch firstBatchStarted = new CountDownLatch(1);
+		CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+		BatchCreator<String> creator = new BatchCreator<>(n -> {
+			if (batchSizes.isEmpty()) {
+				firstBatchStarted.countDown();
+				await(releaseFirstBatch);
+			}
+			return create(n, n);
+		} , surplus::add);
+
+		// the first request blocks the creator, the following requests queue up meanwhile
+		Future<String> first = Future(() -> creator.create());
+		assertTrue(firstBatchStarted.await(1, TimeUnit.SECONDS));
+		List<Future<String>> queued = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			queued.add(Future(() -> creator.create()));
+		}
+		Thread.sleep(50);
+		releaseFirstBatch.countDown();
+
+		first.result(1, TimeUnit.SECONDS);
+		for (Future<String> future : queued) {
+			future.result(1, TimeUnit.SECONDS);
+		}
+		assertEquals("[1, 5]", batchSizes.toString());
+	}
+
+	private List<String> create(int requested, int created) {
+		batchSizes.add(requested);
+		List<String> instances = new ArrayList<>();
+		for (int i = 0; i < created; i++) {
+			instances.add("" + counter.getAndIncrement());
+		}
+		return instances;
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
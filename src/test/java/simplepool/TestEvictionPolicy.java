@@ -0,0 +1,102 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import simplepool.EvictionPolicy.Candidate;
+
+/**
+ * Test the class {@link EvictionPolicy}
+ * @author Peter Nerg
+ */
+public class TestEvictionPolicy extends BaseAssert {
+	private final TestCandidate young = new TestCandidate(10, 100, 50);
+	private final TestCandidate idle = new TestCandidate(500, 1000, 10);
+	private final TestCandidate old = new TestCandidate(20, 5000, 1000);
+	private final List<Candidate> candidates = Arrays.asList(young, idle, old);
+
+	@Test
+	public void idleTime() {
+		assertEquals(Arrays.asList(idle), EvictionPolicy.idleTime(Duration.ofMillis(100)).select(candidates));
+	}
+
+	@Test
+	public void age() {
+		assertEquals(Arrays.asList(old), EvictionPolicy.age(Duration.ofMillis(2000)).select(candidates));
+	}
+
+	@Test
+	public void maxIdle() {
+		// the ones idle the longest are evicted first
+		assertEquals(Arrays.asList(idle, old), EvictionPolicy.maxIdle(1).select(candidates));
+	}
+
+	@Test
+	public void maxIdle_noExcess() {
+		assertTrue(EvictionPolicy.maxIdle(3).select(candidates).isEmpty());
+	}
+
+	@Test
+	public void leastFrequentlyUsed() {
+		// frequencies are 0.5, 0.01 and 0.2 borrows/ms
+		assertEquals(Arrays.asList(idle, old), EvictionPolicy.leastFrequentlyUsed(1).select(candidates));
+	}
+
+	@Test
+	public void or() {
+		EvictionPolicy policy = EvictionPolicy.age(Duration.ofMillis(2000)).or(EvictionPolicy.maxIdle(1));
+		// "old" is evicted by age, leaving the longest idle of the remaining for the max idle policy
+		assertEquals(Arrays.asList(old, idle), policy.select(candidates));
+	}
+
+	@Test
+	public void or_nothingSelected() {
+		EvictionPolicy policy = EvictionPolicy.idleTime(Duration.ofDays(1)).or(EvictionPolicy.maxIdle(3));
+		assertTrue(policy.select(candidates).isEmpty());
+	}
+
+	private static final class TestCandidate implements Candidate {
+		private final long idleTime;
+		private final long age;
+		private final long borrowCount;
+
+		private TestCandidate(long idleTime, long age, long borrowCount) {
+			this.idleTime = idleTime;
+			this.age = age;
+			this.borrowCount = borrowCount;
+		}
+
+		@Override
+		public long idleTime() {
+			return idleTime;
+		}
+
+		@Override
+		public long age() {
+			return age;
+		}
+
+		@Override
+		public long borrowCount() {
+			return borrowCount;
+		}
+	}
+}
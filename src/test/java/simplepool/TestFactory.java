@@ -15,13 +15,20 @@
  */
 package simplepool;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.Test;
 
 import javascalautils.Try;
 import simplepool.Constants.PoolMode;
+import simplepool.Constants.WaitStrategy;
 
 /**
  * Test the class {@link Factory}
@@ -57,18 +64,190 @@ public class TestFactory extends BaseAssert {
 		assertCreatedPool(pool);
 	}
 
+	@Test
+	public void create_withBrokenInstanceDetector() {
+		Pool<PoolableObject> pool = factory.withBrokenInstanceDetector(ex -> true).create();
+		assertCreatedPool(pool);
+	}
+
 	@Test
 	public void create_withIdleTimeout(){
 		Pool<PoolableObject> pool = factory.withIdleTimeout(Duration.ofMillis(666), null).create();
 		assertCreatedPool(pool);
 	}
 
+	@Test
+	public void create_withMaxLifetime(){
+		Pool<PoolableObject> pool = factory.withMaxLifetime(Duration.ofMinutes(1), null).create();
+		assertCreatedPool(pool);
+	}
+
+	@Test
+	public void create_withMaxHoldTime(){
+		Pool<PoolableObject> pool = factory.withMaxHoldTime(Duration.ofMinutes(1), null).withLeakDetection(0.01, leak -> {}).create();
+		assertCreatedPool(pool);
+	}
+
+	@Test
+	public void create_withSharedInstances() {
+		Pool<PoolableObject> pool = factory.withSharedInstances(4).create();
+		assertCreatedPool(pool);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void create_withSharedInstancesAndUnsupportedOption() {
+		factory.withSharedInstances(4).withJmx("shared").create();
+	}
+
+	@Test
+	public void create_withWeigher() {
+		Pool<PoolableObject> pool = factory.withWeigher(po -> 1, 100).create();
+		assertCreatedPool(pool);
+	}
+
+	@Test
+	public void create_withEvictionPolicy() {
+		Pool<PoolableObject> pool = factory.withEvictionPolicy(EvictionPolicy.maxIdle(5), Duration.ofSeconds(1), null).create();
+		assertCreatedPool(pool);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void withEvictionPolicy_zeroInterval() {
+		factory.withEvictionPolicy(EvictionPolicy.maxIdle(5), Duration.ZERO, null);
+	}
+
+	@Test
+	public void executor_keptWhenChainingWithoutExecutor() {
+		ScheduledExecutorService executor = new ScheduledThreadPoolExecutor(1);
+		try {
+			factory.withIdleTimeout(Duration.ofSeconds(1), executor).withMaxLifetime(Duration.ofMinutes(1), null).withMaxHoldTime(Duration.ofMinutes(1), executor).withEvictionPolicy(EvictionPolicy.maxIdle(5), Duration.ofSeconds(1), null);
+			assertSame(executor, factory.executor.orNull());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void executor_conflicting() {
+		ScheduledExecutorService executor = new ScheduledThreadPoolExecutor(1);
+		ScheduledExecutorService other = new ScheduledThreadPoolExecutor(1);
+		try {
+			factory.withIdleTimeout(Duration.ofSeconds(1), executor).withMaxLifetime(Duration.ofMinutes(1), other);
+		} finally {
+			executor.shutdownNow();
+			other.shutdownNow();
+		}
+	}
+
+	@Test
+	public void create_withMemoryPressureShedding() {
+		Pool<PoolableObject> pool = factory.withMemoryPressureShedding(0.99).create();
+		assertCreatedPool(pool);
+	}
+
+	@Test
+	public void create_withAdmissionControl() {
+		Pool<PoolableObject> pool = factory.withAdmissionControl(10).create();
+		assertCreatedPool(pool);
+	}
+
+	@Test
+	public void create_withReservation() {
+		Pool<PoolableObject> pool = factory.withReservation("a", 2, 4).create();
+		assertCreatedPool(pool);
+	}
+
+	@Test
+	public void create_withWaitStrategy() {
+		Pool<PoolableObject> pool = factory.withWaitStrategy(WaitStrategy.SPIN_THEN_PARK).create();
+		assertCreatedPool(pool);
+	}
+
+	@Test
+	public void create_withJmx() {
+		Pool<PoolableObject> pool = factory.withJmx("TestFactory").create();
+		assertCreatedPool(pool);
+		pool.destroy();
+	}
+
+	@Test
+	public void create_withListener() {
+		Pool<PoolableObject> pool = factory.withListener(new PoolListener<PoolableObject>() {
+		}).create();
+		assertCreatedPool(pool);
+	}
+
+	@Test
+	public void create_withAsyncListener() {
+		Pool<PoolableObject> pool = factory.withListener(new PoolListener<PoolableObject>() {
+		}, 64).create();
+		assertCreatedPool(pool);
+		pool.destroy();
+	}
+
+	@Test
+	public void create_withRegistry() {
+		PoolRegistry registry = PoolRegistry.withBudget(10);
+		Pool<PoolableObject> pool = factory.withRegistry(registry).create();
+		assertCreatedPool(pool);
+		registry.shutdown();
+	}
+
+	@Test
+	public void create_withBatchFactory() {
+		Pool<PoolableObject> pool = factory.withBatchFactory(n -> Collections.nCopies(n, new PoolableObject("" + counter.getAndIncrement()))).create();
+		assertCreatedPool(pool);
+	}
+
+	@Test
+	public void create_fromPrototype() {
+		Pool<PoolableObject> pool = Factory.fromPrototype(new PoolableObject("0"), p -> new PoolableObject("" + counter.getAndIncrement())).create();
+		assertCreatedPool(pool);
+	}
+
+	@Test
+	public void create_withPrewarm() {
+		Pool<PoolableObject> pool = factory.withPrewarm(1, true).create();
+		assertCreatedPool(pool);
+	}
+
+	@Test
+	public void create_withSnapshot() throws IOException {
+		Path file = Files.createTempDirectory("simplepool").resolve("snapshot");
+		Pool<PoolableObject> pool = factory.withSnapshot(file, po -> po.value().getBytes(), b -> new PoolableObject(new String(b))).create();
+		assertCreatedPool(pool);
+	}
+
+	@Test
+	public void create_withTicker() {
+		Pool<PoolableObject> pool = factory.withTicker(Ticker.coarse(Duration.ofMillis(10))).create();
+		assertCreatedPool(pool);
+	}
+
+	@Test
+	public void create_withMaxBorrows() {
+		Pool<PoolableObject> pool = factory.withMaxBorrows(10, true).create();
+		assertCreatedPool(pool);
+	}
+
+	@Test
+	public void create_withAttribute() {
+		Pool<PoolableObject> pool = factory.withAttribute(po -> po.value()).create();
+		assertCreatedPool(pool);
+	}
+
 	@Test
 	public void create_withPoolMode() {
 		Pool<PoolableObject> pool = factory.withPoolMode(PoolMode.LIFO).create();
 		assertCreatedPool(pool);
 	}
 
+	@Test
+	public void create_withAdaptivePoolMode() {
+		Pool<PoolableObject> pool = factory.withPoolMode(PoolMode.ADAPTIVE).create();
+		assertCreatedPool(pool);
+	}
+
 	private void assertCreatedPool(Pool<PoolableObject> pool) {
 		assertNotNull(pool);
 		Try<PoolableObject> instance = pool.getInstance(Duration.ofMillis(69));
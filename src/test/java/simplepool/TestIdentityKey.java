@@ -0,0 +1,48 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import org.junit.Test;
+
+/**
+ * Test the class {@link IdentityKey}
+ * @author Peter Nerg
+ */
+public class TestIdentityKey extends BaseAssert {
+
+	@Test
+	public void equals_sameInstance() {
+		PoolableObject object = new PoolableObject("a");
+		IdentityKey key = new IdentityKey(object);
+		assertEquals(key, new IdentityKey(object));
+		assertEquals(key.hashCode(), new IdentityKey(object).hashCode());
+	}
+
+	@Test
+	public void equals_equalInstance() {
+		assertNotEquals(new IdentityKey(new String("a")), new IdentityKey(new String("a")));
+	}
+
+	@Test
+	public void probe() {
+		PoolableObject object = new PoolableObject("a");
+		IdentityKey probe = IdentityKey.probe(object);
+		assertEquals(new IdentityKey(object), probe);
+		assertSame(probe, IdentityKey.probe(object));
+		probe.clear();
+		assertNotEquals(new IdentityKey(object), probe);
+	}
+}
@@ -0,0 +1,103 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import static java.util.stream.Collectors.toList;
+import static javascalautils.OptionCompanion.Option;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Test the class {@link MemoryPressureMonitor}
+ * @author Peter Nerg
+ */
+public class TestMemoryPressureMonitor extends BaseAssert {
+	private static final long MaxTestTime = 5000;
+	private final AtomicInteger shed = new AtomicInteger();
+	private final AtomicInteger executed = new AtomicInteger();
+	/** Runs the shedder in the calling thread, counting the executions. */
+	private final Executor executor = r -> {
+		executed.incrementAndGet();
+		r.run();
+	};
+
+	@Test
+	public void pressure_belowThreshold() {
+		Runnable registration = register(0.99, shed);
+		MemoryPressureMonitor.pressure(0.5);
+		registration.run();
+		assertEquals(0, shed.get());
+	}
+
+	@Test
+	public void pressure_aboveThreshold() {
+		Runnable registration = register(0.99, shed);
+		MemoryPressureMonitor.pressure(1.0);
+		registration.run();
+		assertEquals(1, shed.get());
+		assertEquals(1, executed.get());
+	}
+
+	@Test
+	public void pressure_afterRemovedRegistration() {
+		Runnable registration = register(0.99, shed);
+		registration.run();
+		MemoryPressureMonitor.pressure(1.0);
+		assertEquals(0, shed.get());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void pressure_targetGarbageCollected() throws InterruptedException {
+		int registrations = MemoryPressureMonitor.registrations();
+		register(0.99, new AtomicInteger());
+		assertEquals(registrations + 1, MemoryPressureMonitor.registrations());
+
+		//the registration does not keep the target alive, it's removed once the target is collected
+		while (MemoryPressureMonitor.registrations() > registrations) {
+			System.gc();
+			Thread.sleep(10);
+			MemoryPressureMonitor.pressure(0.0);
+		}
+		assertEquals(0, executed.get());
+	}
+
+	@Test
+	public void register_thresholdRestored() {
+		List<MemoryPoolMXBean> memoryPools = ManagementFactory.getMemoryPoolMXBeans().stream().filter(mp -> mp.getType() == MemoryType.HEAP && mp.isCollectionUsageThresholdSupported() && mp.getUsage().getMax() > 0).collect(toList());
+		List<Long> original = thresholds(memoryPools);
+
+		Runnable registration = register(0.01, shed);
+		memoryPools.forEach(mp -> assertEquals((long) (mp.getUsage().getMax() * 0.01), mp.getCollectionUsageThreshold()));
+
+		registration.run();
+		assertEquals(original, thresholds(memoryPools));
+	}
+
+	private Runnable register(double threshold, AtomicInteger target) {
+		return MemoryPressureMonitor.register(threshold, target, AtomicInteger::incrementAndGet, Option(executor));
+	}
+
+	private static List<Long> thresholds(List<MemoryPoolMXBean> memoryPools) {
+		return memoryPools.stream().map(MemoryPoolMXBean::getCollectionUsageThreshold).collect(toList());
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import simplepool.Constants.WaitStrategy;
+
+/**
+ * Test the class {@link Partitions}
+ * @author Peter Nerg
+ */
+public class TestPartitions extends BaseAssert {
+	private static final long MaxTestTime = 5000;
+	private final Map<Object, Partitions.Quota> quotas = new HashMap<>();
+
+	@Test(expected = IllegalArgumentException.class)
+	public void create_reservationsExceedCapacity() {
+		quotas.put("a", new Partitions.Quota(2, 2));
+		quotas.put("b", new Partitions.Quota(2, 2));
+		new Partitions(3, quotas);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void create_ceilingBelowReservation() {
+		new Partitions.Quota(2, 1);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void acquire_spinningWaitTimesOut() throws InterruptedException {
+		quotas.put("a", new Partitions.Quota(1, 1));
+		Partitions partitions = new Partitions(1, quotas, WaitStrategy.SPIN_THEN_YIELD);
+		assertNotNull(partitions.acquire("a", 0));
+		assertNull(partitions.acquire("a", 20));
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void acquire_ceiling() throws InterruptedException {
+		quotas.put("a", new Partitions.Quota(1, 2));
+		Partitions partitions = new Partitions(4, quotas);
+		assertNotNull(partitions.acquire("a", 0));
+		assertNotNull(partitions.acquire("a", 0));
+
+		// at the ceiling even if there is shared capacity left
+		assertNull(partitions.acquire("a", 5));
+		assertNotNull(partitions.acquire("b", 0));
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void acquire_reservationNotTakenByOthers() throws InterruptedException {
+		quotas.put("a", new Partitions.Quota(1, 1));
+		Partitions partitions = new Partitions(2, quotas);
+		Partitions.Grant a = partitions.acquire("a", 0);
+		assertNotNull(a);
+		assertNotNull(partitions.acquire("b", 0));
+
+		// the shared capacity is used and the reservation is in use by its tenant
+		assertNull(partitions.acquire("b", 5));
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void acquire_lendUnusedReservation() throws InterruptedException {
+		quotas.put("a", new Partitions.Quota(1, 1));
+		Partitions partitions = new Partitions(2, quotas);
+		Partitions.Grant shared = partitions.acquire("b", 0);
+		Partitions.Grant lent = partitions.acquire("b", 0);
+		assertNotNull(shared);
+		assertNotNull(lent);
+
+		// the reservation is lent out, "a" must wait for it to be returned
+		assertNull(partitions.acquire("a", 5));
+		lent.release();
+		assertNotNull(partitions.acquire("a", 0));
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void acquire_waitForSharedCapacity() throws InterruptedException {
+		Partitions partitions = new Partitions(1, quotas);
+		Partitions.Grant grant = partitions.acquire("b", 0);
+		new Thread(() -> {
+			try {
+				Thread.sleep(20);
+			} catch (InterruptedException e) {
+			}
+			grant.release();
+		}).start();
+		assertNotNull(partitions.acquire("b", 1000));
+	}
+}
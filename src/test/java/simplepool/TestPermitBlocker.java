@@ -0,0 +1,101 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import java.time.Duration;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import simplepool.Constants.WaitStrategy;
+
+/**
+ * Test the class {@link PermitBlocker}
+ * @author Peter Nerg
+ */
+public class TestPermitBlocker extends BaseAssert {
+	private static final long MaxTestTime = 5000;
+	private final Semaphore permits = new Semaphore(1);
+
+	@Test(timeout = MaxTestTime)
+	public void acquire_freePermit() throws InterruptedException {
+		assertTrue(PermitBlocker.acquire(permits, 0));
+		assertEquals(0, permits.availablePermits());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void acquire_timeout() throws InterruptedException {
+		permits.acquire();
+		assertFalse(PermitBlocker.acquire(permits, 5));
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void acquire_inForkJoinPool() throws Exception {
+		// a single threaded fork/join pool would dead lock unless it's allowed to compensate for the blocked thread
+		ForkJoinPool forkJoinPool = new ForkJoinPool(1);
+		permits.acquire();
+		try {
+			boolean acquired = forkJoinPool.submit(() -> {
+				forkJoinPool.execute(() -> permits.release());
+				return PermitBlocker.acquire(permits, MaxTestTime);
+			}).get();
+			assertTrue(acquired);
+		} finally {
+			forkJoinPool.shutdownNow();
+		}
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void acquire_parallelStream() {
+		Pool<PoolableObject> pool = Factory.poolFor(() -> new PoolableObject("x")).ofSize(2).create();
+		long count = IntStream.range(0, 100).parallel().mapToObj(i -> pool.withInstance(Duration.ofSeconds(1), po -> po.value())).filter(t -> t.isSuccess()).count();
+		assertEquals(100, count);
+		pool.destroy();
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void acquire_timeoutAllStrategies() throws InterruptedException {
+		permits.acquire();
+		for (WaitStrategy strategy : WaitStrategy.values()) {
+			assertFalse(strategy.name(), PermitBlocker.acquire(permits, 5, strategy));
+		}
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void acquire_releasedWhileWaitingAllStrategies() throws InterruptedException {
+		for (WaitStrategy strategy : WaitStrategy.values()) {
+			permits.acquire();
+			new Thread(() -> {
+				try {
+					Thread.sleep(10);
+				} catch (InterruptedException e) {
+				}
+				permits.release();
+			}).start();
+			assertTrue(strategy.name(), PermitBlocker.acquire(permits, MaxTestTime, strategy));
+			permits.release();
+		}
+	}
+
+	@Test(timeout = MaxTestTime, expected = InterruptedException.class)
+	public void acquire_busySpinInterrupted() throws InterruptedException {
+		permits.acquire();
+		Thread.currentThread().interrupt();
+		PermitBlocker.acquire(permits, MaxTestTime, WaitStrategy.BUSY_SPIN);
+	}
+}
@@ -0,0 +1,81 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import org.junit.Test;
+
+/**
+ * Test the class {@link PoolEntry}
+ * @author Peter Nerg
+ */
+public class TestPoolEntry extends BaseAssert {
+	private final PoolableObject object = new PoolableObject("");
+
+	@Test
+	public void instance() {
+		assertEquals(object, new PoolEntry<>(object, System.currentTimeMillis(), 0).instance());
+	}
+
+	@Test
+	public void isExpired_eternalLife() {
+		PoolEntry<PoolableObject> entry = new PoolEntry<>(object, System.currentTimeMillis(), 0);
+		assertEquals(Long.MAX_VALUE, entry.expires());
+		assertFalse(entry.isExpired(System.currentTimeMillis()));
+	}
+
+	@Test
+	public void isExpired_withLifetime() {
+		PoolEntry<PoolableObject> entry = new PoolEntry<>(object, System.currentTimeMillis(), 100);
+		assertEquals(entry.created() + 100, entry.expires());
+		assertFalse(entry.isExpired(entry.created() + 99));
+		assertTrue(entry.isExpired(entry.created() + 100));
+	}
+
+	@Test
+	public void weight() {
+		PoolEntry<PoolableObject> entry = new PoolEntry<>(object, System.currentTimeMillis(), 0);
+		assertEquals(0, entry.weight());
+		assertEquals(5, entry.weight(5));
+		assertEquals(-2, entry.weight(3));
+		assertEquals(3, entry.weight());
+	}
+
+	@Test
+	public void borrowCount() {
+		PoolEntry<PoolableObject> entry = new PoolEntry<>(object, System.currentTimeMillis(), 0);
+		assertEquals(0, entry.borrowCount());
+		entry.markBorrowed(1, null);
+		entry.markBorrowed(2, null);
+		assertEquals(2, entry.borrowCount());
+		assertEquals(2, entry.borrowed());
+	}
+
+	@Test
+	public void holdTime() {
+		PoolEntry<PoolableObject> entry = new PoolEntry<>(object, System.currentTimeMillis(), 0);
+		assertEquals(0, entry.holdTime());
+		entry.markBorrowed(10, null);
+		entry.markReturned(15);
+		entry.markBorrowed(20, null);
+		entry.markReturned(22);
+		assertEquals(7, entry.holdTime());
+	}
+
+	@Test
+	public void toString_t() {
+		assertNotNull(new PoolEntry<>(object, System.currentTimeMillis(), 0).toString());
+	}
+}
@@ -15,9 +15,18 @@
  */
 package simplepool;
 
-import static javascalautils.OptionCompanion.Option;
+import static javascalautils.concurrent.FutureCompanion.Future;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -65,6 +74,313 @@ public class TestPoolImpl extends BaseAssert {
 		assertIsDestroyed(instance);
 	}
 
+	@Test(timeout = MaxTestTime)
+	public void assertEvictionPolicy() throws Throwable {
+		PoolImpl<PoolableObject> evictingPool = createPool(Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).withEvictionPolicy(EvictionPolicy.maxIdle(1), Duration.ofMillis(10), scheduledExecutorService));
+		PoolableObject one = evictingPool.getInstance().get();
+		PoolableObject two = evictingPool.getInstance().get();
+		assertIsSuccess(evictingPool.returnInstance(one));
+		Thread.sleep(5);
+		assertIsSuccess(evictingPool.returnInstance(two));
+		
+		//let the eviction job run, the one idle the longest is evicted
+		Thread.sleep(50);
+		assertIsDestroyed(one);
+		assertIsValid(two);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void assertMemoryPressureShedding() throws Throwable {
+		PoolImpl<PoolableObject> sheddingPool = createPool(Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).withMemoryPressureShedding(0.99));
+		PoolableObject one = sheddingPool.getInstance().get();
+		PoolableObject two = sheddingPool.getInstance().get();
+		assertIsSuccess(sheddingPool.returnInstance(one));
+		Thread.sleep(5);
+		assertIsSuccess(sheddingPool.returnInstance(two));
+
+		//half of the idle instances are shed by a separate thread, the one idle the longest first
+		MemoryPressureMonitor.pressure(1.0);
+		while (!one.isDestroyed()) {
+			Thread.sleep(1);
+		}
+		assertIsValid(two);
+
+		//a destroyed pool no longer sheds
+		sheddingPool.destroy().result(1, TimeUnit.SECONDS);
+		MemoryPressureMonitor.pressure(1.0);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void assertMaxLifetime_refreshIdleInstance() throws Throwable {
+		PoolImpl<PoolableObject> lifetimePool = createPool(Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).withMaxLifetime(Duration.ofMillis(100), Duration.ZERO, scheduledExecutorService));
+		PoolableObject instance = lifetimePool.getInstance().get();
+		lifetimePool.returnInstance(instance);
+
+		// let the refresh job replace the instance
+		Thread.sleep(150);
+		assertIsDestroyed(instance);
+		
+		// the replacement shall already be in the pool, i.e. not created when we borrow it
+		long created = counter.get();
+		PoolableObject replacement = lifetimePool.getInstance().get();
+		assertEquals(created, counter.get());
+		assertEquals("2", replacement.value());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void assertMaxLifetime_returnExpiredInstance() throws Throwable {
+		PoolImpl<PoolableObject> lifetimePool = createPool(Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).withMaxLifetime(Duration.ofMillis(20), Duration.ZERO, null));
+		PoolableObject instance = lifetimePool.getInstance().get();
+		Thread.sleep(30);
+		
+		assertIsSuccess(lifetimePool.returnInstance(instance));
+		assertIsDestroyed(instance);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void lease_close() throws Throwable {
+		PoolableObject instance;
+		try (Lease<PoolableObject> lease = pool.lease(Duration.ofMillis(5)).get()) {
+			instance = lease.instance();
+		}
+		
+		// the instance shall be back in the pool
+		assertEquals(instance, getAndAssertInstance());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void lease_closeTwice() throws Throwable {
+		Lease<PoolableObject> lease = pool.lease(Duration.ofMillis(5)).get();
+		lease.close();
+		lease.close(); // second close shall make no difference
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void assertMaxHoldTime_reclaimLeakedInstance() throws Throwable {
+		List<PoolException> leaks = new CopyOnWriteArrayList<>();
+		PoolImpl<PoolableObject> holdPool = createPool(Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).withMaxHoldTime(Duration.ofMillis(20), scheduledExecutorService).withLeakDetection(1.0, leaks::add));
+		PoolableObject instance = holdPool.getInstance().get();
+
+		// let the reclaim job find the leaked instance
+		Thread.sleep(100);
+		assertIsDestroyed(instance);
+		assertEquals(1, leaks.size());
+		assertNotNull(leaks.get(0).getCause());
+		
+		// the reclaimed instance can't be returned
+		assertIsFailure(holdPool.returnInstance(instance));
+		
+		// destroying the pool shall not wait for the leaked instance
+		holdPool.destroy().result(MaxTestTime, TimeUnit.MILLISECONDS);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void withInstance_success() {
+		Try<String> result = pool.withInstance(Duration.ofMillis(5), po -> po.value());
+		assertIsSuccess(result);
+		assertEquals("1", result.orNull());
+
+		// the instance shall have been returned, thus we can borrow both instances
+		assertEquals("1", getAndAssertInstance().value());
+		assertEquals("2", getAndAssertInstance().value());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void withInstance_failureNotBreakingInstance() {
+		PoolableObject[] used = new PoolableObject[1];
+		Try<String> result = pool.withInstance(Duration.ofMillis(5), po -> {
+			used[0] = po;
+			throw new IllegalArgumentException("Error, terror!!!");
+		});
+		assertIsFailure(result);
+		assertIsValid(used[0]);
+		assertEquals(used[0], getAndAssertInstance());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void withInstance_failureBreakingInstance() {
+		PoolImpl<PoolableObject> brokenPool = createPool(Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).withBrokenInstanceDetector(ex -> ex instanceof IllegalStateException));
+		PoolableObject[] used = new PoolableObject[1];
+		Try<String> result = brokenPool.withInstance(Duration.ofMillis(5), po -> {
+			used[0] = po;
+			throw new IllegalStateException("Error, terror!!!");
+		});
+		assertIsFailure(result);
+		assertIsDestroyed(used[0]);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void withInstance_failingDestructor() throws Throwable {
+		PoolImpl<PoolableObject> failingPool = new PoolImpl<>(Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).withValidator(po -> false).withDestructor(po -> {
+			throw new IllegalStateException("Error, terror!!!");
+		}));
+		// the failure to destroy the invalid instance is reported in the result instead of escaping
+		Try<String> result = failingPool.withInstance(Duration.ofMillis(5), po -> po.value());
+		assertIsFailure(result);
+		assertTrue(result.failed().get() instanceof IllegalStateException);
+
+		// the permit has still been released
+		assertIsSuccess(failingPool.getInstance(Duration.ofMillis(5)));
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void withInstance_exhaustPool() {
+		getAndAssertInstance();
+		getAndAssertInstance();
+		assertIsFailure(pool.withInstance(Duration.ofMillis(5), po -> po.value()));
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void withInstanceAsync() throws Throwable {
+		Future<String> future = pool.withInstanceAsync(Duration.ofMillis(5), po -> po.value());
+		assertEquals("1", future.result(MaxTestTime, TimeUnit.MILLISECONDS));
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void assertWeight_evictReturnedHeavyInstance() throws Throwable {
+		Map<PoolableObject, Long> weights = new ConcurrentHashMap<>();
+		PoolImpl<PoolableObject> weightedPool = createPool(Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).withWeigher(po -> weights.getOrDefault(po, 3L), 10));
+		PoolableObject one = weightedPool.getInstance().get();
+		PoolableObject two = weightedPool.getInstance().get();
+		assertIsSuccess(weightedPool.returnInstance(one));
+		assertIsSuccess(weightedPool.returnInstance(two));
+
+		// "one" grows while borrowed, bringing the total over budget
+		assertEquals(one, weightedPool.getInstance().get());
+		weights.put(one, 9L);
+		assertIsSuccess(weightedPool.returnInstance(one));
+
+		assertIsDestroyed(one);
+		assertIsValid(two);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void assertWeight_evictHeavyIdleInstance() throws Throwable {
+		Map<PoolableObject, Long> weights = new ConcurrentHashMap<>();
+		PoolImpl<PoolableObject> weightedPool = createPool(Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).withWeigher(po -> weights.getOrDefault(po, 5L), 10));
+		PoolableObject one = weightedPool.getInstance().get();
+		PoolableObject two = weightedPool.getInstance().get();
+		weights.put(one, 8L);
+		weights.put(two, 2L);
+		assertIsSuccess(weightedPool.returnInstance(one));
+		
+		// total is now 8 + 2, grows to 8 + 3 when returned
+		weights.put(two, 3L);
+		assertIsSuccess(weightedPool.returnInstance(two));
+
+		assertIsDestroyed(one);
+		assertIsValid(two);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void getInstance_predicateMatchingIdleInstance() throws Throwable {
+		PoolableObject one = getAndAssertInstance();
+		PoolableObject two = getAndAssertInstance();
+		returnAndAssertResponse(one);
+		returnAndAssertResponse(two);
+
+		assertEquals(two, pool.getInstance(po -> po.value().equals("2"), Duration.ofMillis(5)).get());
+		assertEquals(one, getAndAssertInstance());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void getInstance_predicateNoMatchCreatesInstance() throws Throwable {
+		PoolableObject one = getAndAssertInstance();
+		returnAndAssertResponse(one);
+
+		assertEquals("2", pool.getInstance(po -> po.value().equals("x"), Duration.ofMillis(5)).get().value());
+		assertIsValid(one);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void getInstance_predicateNoMatchFullPool() throws Throwable {
+		PoolableObject one = getAndAssertInstance();
+		PoolableObject two = getAndAssertInstance();
+		returnAndAssertResponse(one);
+		returnAndAssertResponse(two);
+
+		// the pool is full of idle instances not matching, the first in line gives way for the new instance
+		assertEquals("3", pool.getInstance(po -> po.value().equals("x"), Duration.ofMillis(5)).get().value());
+		assertIsDestroyed(one);
+		assertIsValid(two);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void getInstanceByAttribute() throws Throwable {
+		PoolImpl<PoolableObject> indexedPool = createPool(Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).withAttribute(po -> po.value()));
+		PoolableObject one = indexedPool.getInstance().get();
+		PoolableObject two = indexedPool.getInstance().get();
+		assertIsSuccess(indexedPool.returnInstance(one));
+		assertIsSuccess(indexedPool.returnInstance(two));
+
+		assertEquals(two, indexedPool.getInstanceByAttribute("2", Duration.ofMillis(5)).get());
+		assertEquals(one, indexedPool.getInstance().get());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void getInstanceByAttribute_noIndex() throws Throwable {
+		PoolableObject one = getAndAssertInstance();
+		returnAndAssertResponse(one);
+
+		assertEquals("2", pool.getInstanceByAttribute("1", Duration.ofMillis(5)).get().value());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void getInstance_admissionControlMaxWaiters() throws Throwable {
+		PoolImpl<PoolableObject> admissionPool = createPool(Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).withAdmissionControl(0));
+		admissionPool.getInstance().get();
+		admissionPool.getInstance().get();
+
+		//no waiters allowed, shall be rejected immediately
+		Try<PoolableObject> rejected = admissionPool.getInstance(Duration.ofSeconds(10));
+		assertIsFailure(rejected);
+		assertTrue(rejected.failed().get() instanceof PoolOverloadedException);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void getInstance_admissionControlEstimatedWait() throws Throwable {
+		PoolImpl<PoolableObject> admissionPool = createPool(Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).withAdmissionControl(Integer.MAX_VALUE));
+		PoolableObject one = admissionPool.getInstance().get();
+		Thread.sleep(200);
+		assertIsSuccess(admissionPool.returnInstance(one));
+
+		//with a free instance we're never rejected
+		admissionPool.getInstance(Duration.ZERO).get();
+		admissionPool.getInstance(Duration.ZERO).get();
+
+		//the average hold time is now well over what we're willing to wait
+		Try<PoolableObject> rejected = admissionPool.getInstance(Duration.ofMillis(1));
+		assertIsFailure(rejected);
+		assertTrue(rejected.failed().get() instanceof PoolOverloadedException);
+
+		//willing to wait longer we're admitted, but time out
+		Try<PoolableObject> timedOut = admissionPool.getInstance(Duration.ofMillis(50));
+		assertIsFailure(timedOut);
+		assertTrue(timedOut.failed().get() instanceof TimeoutException);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void getInstanceFor_reservation() throws Throwable {
+		PoolImpl<PoolableObject> partitionedPool = createPool(Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).withReservation("a", 1, 1));
+		PoolableObject one = partitionedPool.getInstanceFor("b", Duration.ZERO).get();
+		// the reservation of "a" is unused, thus lent to "b"
+		PoolableObject two = partitionedPool.getInstanceFor("b", Duration.ZERO).get();
+		assertIsFailure(partitionedPool.getInstanceFor("a", Duration.ofMillis(5)));
+
+		// the returned instance gives "a" its reservation back
+		assertIsSuccess(partitionedPool.returnInstance(two));
+		assertEquals(two, partitionedPool.getInstanceFor("a", Duration.ZERO).get());
+		assertIsFailure(partitionedPool.getInstance(Duration.ofMillis(5)));
+
+		assertIsSuccess(partitionedPool.returnInstance(one));
+		assertEquals(one, partitionedPool.getInstance(Duration.ZERO).get());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void getInstanceFor_notPartitioned() throws Throwable {
+		assertIsSuccess(pool.getInstanceFor("a", Duration.ZERO));
+	}
+
 	@Test(timeout = MaxTestTime)
 	public void getInstance_emptyQueue() throws Throwable {
 		assertEquals("1", getAndAssertInstance().value());
@@ -153,6 +469,63 @@ public class TestPoolImpl extends BaseAssert {
 		assertIsDestroyed(po2);
 	}
 
+	@Test(timeout = MaxTestTime)
+	public void destroy_gracePeriodEnds() throws Throwable {
+		PoolableObject po1 = getAndAssertInstance();
+		PoolableObject po2 = getAndAssertInstance();
+		returnAndAssertResponse(po1);
+
+		// the borrowed instance is forcibly evicted at the end of the grace period
+		pool.destroy(Duration.ofMillis(20)).result(MaxTestTime, TimeUnit.MILLISECONDS);
+		assertIsDestroyed(po1);
+		assertIsDestroyed(po2);
+		assertIsFailure(pool.returnInstance(po2));
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void destroy_returnedWithinGracePeriod() throws Throwable {
+		PoolableObject po = getAndAssertInstance();
+		Future<Unit> future = pool.destroy(Duration.ofSeconds(10));
+		assertFalse(future.isCompleted());
+
+		returnAndAssertResponse(po);
+		future.result(MaxTestTime, TimeUnit.MILLISECONDS);
+		assertIsDestroyed(po);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void destroy_notOnCommonPool() throws Throwable {
+		List<String> threads = new CopyOnWriteArrayList<>();
+		PoolImpl<PoolableObject> destroyingPool = new PoolImpl<>(Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).ofSize(8).withPrewarm(8).withDestructor(po -> threads.add(Thread.currentThread().getName())));
+		destroyingPool.destroy().result(1, TimeUnit.SECONDS);
+		assertEquals(8, threads.size());
+		assertFalse(threads.toString(), threads.stream().anyMatch(name -> name.startsWith("ForkJoinPool.commonPool")));
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void destroy_sameFuture() {
+		assertSame(pool.destroy(), pool.destroy(Duration.ZERO));
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void destroy_failsWaitingBorrower() throws Throwable {
+		PoolableObject po1 = getAndAssertInstance();
+		getAndAssertInstance();
+		Future<PoolableObject> waiter = Future(() -> pool.getInstance(Duration.ofSeconds(10)).get());
+		Thread.sleep(20);
+
+		// the waiter is given the permit of the returned instance but shall notice the pool is destroyed
+		Future<Unit> future = pool.destroy(Duration.ofMillis(50));
+		returnAndAssertResponse(po1);
+		try {
+			waiter.result(MaxTestTime, TimeUnit.MILLISECONDS);
+			fail("Expected the borrow to fail");
+		} catch (IllegalStateException ex) {
+			// expected
+		}
+		future.result(MaxTestTime, TimeUnit.MILLISECONDS);
+	}
+
 	private PoolableObject getAndAssertInstance() {
 		Try<PoolableObject> t = pool.getInstance();
 		assertIsSuccess(t);
@@ -165,11 +538,349 @@ public class TestPoolImpl extends BaseAssert {
 		assertIsSuccess(pool.returnInstance(po));
 	}
 	
+	@Test(timeout = MaxTestTime)
+	public void assertStatistics() throws Throwable {
+		PoolableObject instance = pool.getInstance().get();
+		assertEquals(1, pool.borrowedCount());
+		assertEquals(0, pool.idleCount());
+		assertIsSuccess(pool.returnInstance(instance));
+		assertEquals(0, pool.borrowedCount());
+		assertEquals(1, pool.idleCount());
+		assertEquals(0, pool.waitingCount());
+		assertEquals(1, pool.statistics().createdCount());
+
+		pool.evictAllIdleInstances();
+		assertIsDestroyed(instance);
+		assertEquals(0, pool.idleCount());
+		assertEquals(1, pool.statistics().destroyedCount());
+		assertEquals(1, pool.statistics().evictedCount());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void assertRunReaper() throws Throwable {
+		PoolImpl<PoolableObject> idlingPool = createPool(() -> new PoolableObject("" + counter.getAndIncrement()), Duration.ofMillis(1));
+		PoolableObject instance = idlingPool.getInstance().get();
+		assertIsSuccess(idlingPool.returnInstance(instance));
+		Thread.sleep(5);
+		idlingPool.runReaper();
+		assertIsDestroyed(instance);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void assertRunReaper_virtualTime() throws Throwable {
+		AtomicLong time = new AtomicLong();
+		PoolImpl<PoolableObject> idlingPool = createPool(Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).withIdleTimeout(Duration.ofMinutes(1), scheduledExecutorService).withTicker(time::get));
+		PoolableObject instance = idlingPool.getInstance().get();
+		assertIsSuccess(idlingPool.returnInstance(instance));
+
+		time.addAndGet(Duration.ofMinutes(1).toMillis());
+		idlingPool.runReaper();
+		assertFalse(instance.isDestroyed());
+
+		time.incrementAndGet();
+		idlingPool.runReaper();
+		assertIsDestroyed(instance);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void assertMaxLifetime_virtualTime() throws Throwable {
+		AtomicLong time = new AtomicLong();
+		PoolImpl<PoolableObject> lifetimePool = createPool(Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).withMaxLifetime(Duration.ofHours(1), Duration.ZERO, null).withTicker(time::get));
+		PoolableObject instance = lifetimePool.getInstance().get();
+		assertIsSuccess(lifetimePool.returnInstance(instance));
+		assertEquals(1, lifetimePool.idleCount());
+
+		time.addAndGet(Duration.ofHours(1).toMillis());
+		assertEquals("2", lifetimePool.getInstance().get().value());
+		assertIsDestroyed(instance);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void entries() throws Throwable {
+		AtomicLong time = new AtomicLong();
+		PoolImpl<PoolableObject> usagePool = createPool(Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).withTicker(time::get));
+		PoolableObject one = usagePool.getInstance().get();
+		PoolableObject two = usagePool.getInstance().get();
+		time.addAndGet(10);
+		assertIsSuccess(usagePool.returnInstance(one));
+		time.addAndGet(5);
+		assertIsSuccess(usagePool.returnInstance(two));
+		assertSame(one, usagePool.getInstance().get());
+		time.addAndGet(100);
+
+		// the ongoing borrow is counted but its hold time is not included
+		List<PoolEntry<PoolableObject>> entries = usagePool.entries();
+		assertEquals(2, entries.size());
+		assertSame(one, entries.get(0).instance());
+		assertEquals(2, entries.get(0).borrowCount());
+		assertEquals(10, entries.get(0).holdTime());
+		assertSame(two, entries.get(1).instance());
+		assertEquals(1, entries.get(1).borrowCount());
+		assertEquals(15, entries.get(1).holdTime());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void instanceUsage() throws Throwable {
+		AtomicLong time = new AtomicLong();
+		PoolImpl<PoolableObject> usagePool = createPool(Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).withTicker(time::get));
+		PoolableObject one = usagePool.getInstance().get();
+		PoolableObject two = usagePool.getInstance().get();
+		time.addAndGet(10);
+		assertIsSuccess(usagePool.returnInstance(one));
+		time.addAndGet(5);
+		assertIsSuccess(usagePool.returnInstance(two));
+		assertSame(one, usagePool.getInstance().get());
+
+		List<InstanceUsage> usage = usagePool.instanceUsage();
+		assertEquals(2, usage.size());
+		assertEquals(2, usage.get(0).borrowCount());
+		assertEquals(Duration.ofMillis(10), usage.get(0).holdTime());
+		assertEquals(1, usage.get(1).borrowCount());
+		assertEquals(Duration.ofMillis(15), usage.get(1).holdTime());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void assertMaxBorrows_rotate() throws Throwable {
+		PoolImpl<PoolableObject> lifoPool = new PoolImpl<>(Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).ofSize(2).withDestructor(po -> po.destroy()).withPoolMode(PoolMode.LIFO).withMaxBorrows(2, false));
+		PoolableObject one = lifoPool.getInstance().get();
+		PoolableObject two = lifoPool.getInstance().get();
+		assertIsSuccess(lifoPool.returnInstance(two));
+		assertIsSuccess(lifoPool.returnInstance(one));
+
+		// LIFO keeps handing out the same instance until it has reached its max borrows
+		assertSame(one, lifoPool.getInstance().get());
+		assertIsSuccess(lifoPool.returnInstance(one));
+		assertSame(two, lifoPool.getInstance().get());
+		assertFalse(one.isDestroyed());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void assertMaxBorrows_recycle() throws Throwable {
+		PoolImpl<PoolableObject> recyclingPool = createPool(Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).withMaxBorrows(2, true));
+		PoolableObject one = recyclingPool.getInstance().get();
+		assertIsSuccess(recyclingPool.returnInstance(one));
+		assertSame(one, recyclingPool.getInstance().get());
+		assertIsSuccess(recyclingPool.returnInstance(one));
+		assertIsDestroyed(one);
+		assertEquals("2", recyclingPool.getInstance().get().value());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void resize_grow() throws Throwable {
+		pool.getInstance().get();
+		pool.getInstance().get();
+		pool.resize(3);
+		assertEquals(3, pool.maxSize());
+		assertIsSuccess(pool.getInstance(Duration.ofMillis(10)));
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void resize_shrink() throws Throwable {
+		PoolableObject one = pool.getInstance().get();
+		PoolableObject two = pool.getInstance().get();
+		assertIsSuccess(pool.returnInstance(one));
+		pool.resize(1);
+
+		// the idle instance is evicted as the pool is full
+		assertIsDestroyed(one);
+		assertIsSuccess(pool.returnInstance(two));
+		assertIsValid(two);
+
+		assertEquals(two, pool.getInstance().get());
+		assertIsFailure(pool.getInstance(Duration.ofMillis(10)));
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void resize_shrinkWhileAllBorrowed() throws Throwable {
+		PoolableObject one = pool.getInstance().get();
+		PoolableObject two = pool.getInstance().get();
+		pool.resize(1);
+
+		// the pool is over its size, the returned instance is destroyed
+		assertIsSuccess(pool.returnInstance(one));
+		assertIsDestroyed(one);
+		assertIsFailure(pool.getInstance(Duration.ofMillis(10)));
+		assertIsSuccess(pool.returnInstance(two));
+		assertIsSuccess(pool.getInstance(Duration.ofMillis(10)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void resize_invalidSize() {
+		pool.resize(0);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void assertListener() throws Throwable {
+		List<String> events = new CopyOnWriteArrayList<>();
+		PoolImpl<PoolableObject> listenedPool = createPool(Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).withListener(new PoolListener<PoolableObject>() {
+			@Override
+			public void created(PoolableObject instance) {
+				events.add("created:" + instance.value());
+			}
+
+			@Override
+			public void borrowed(PoolableObject instance) {
+				events.add("borrowed:" + instance.value());
+			}
+
+			@Override
+			public void returned(PoolableObject instance) {
+				events.add("returned:" + instance.value());
+			}
+
+			@Override
+			public void validationFailed(PoolableObject instance) {
+				events.add("validationFailed:" + instance.value());
+			}
+
+			@Override
+			public void evicted(PoolableObject instance) {
+				events.add("evicted:" + instance.value());
+			}
+
+			@Override
+			public void destroyed(PoolableObject instance) {
+				events.add("destroyed:" + instance.value());
+			}
+
+			@Override
+			public void poolDestroyed() {
+				events.add("poolDestroyed");
+			}
+		}));
+		PoolableObject one = listenedPool.getInstance().get();
+		PoolableObject two = listenedPool.getInstance().get();
+		two.failValidation();
+		assertIsSuccess(listenedPool.returnInstance(one));
+		assertIsSuccess(listenedPool.returnInstance(two));
+		listenedPool.evictAllIdleInstances();
+		listenedPool.destroy().result(1, TimeUnit.SECONDS);
+		assertEquals("[created:1, borrowed:1, created:2, borrowed:2, returned:1, returned:2, validationFailed:2, destroyed:2, evicted:1, destroyed:1, poolDestroyed]", events.toString());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void assertBatchFactory() throws Throwable {
+		List<Integer> batches = new CopyOnWriteArrayList<>();
+		PoolImpl<PoolableObject> batchPool = createPool(Factory.poolFor(() -> new PoolableObject("single")).withBatchFactory(n -> {
+			batches.add(n);
+			// always create one more than requested
+			List<PoolableObject> instances = new ArrayList<>();
+			for (int i = 0; i <= n; i++) {
+				instances.add(new PoolableObject("" + counter.getAndIncrement()));
+			}
+			return instances;
+		}));
+		PoolableObject one = batchPool.getInstance().get();
+		assertEquals("1", one.value());
+
+		// the surplus instance is idle in the pool, i.e. no new batch
+		PoolableObject two = batchPool.getInstance().get();
+		assertEquals("2", two.value());
+		assertEquals("[1]", batches.toString());
+
+		// the pool is full, the surplus is destroyed
+		assertIsSuccess(batchPool.returnInstance(two));
+		batchPool.getInstance(po -> false, Duration.ofSeconds(1)).get();
+		assertEquals("[1, 1]", batches.toString());
+		assertEquals(2, batchPool.instanceCount());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void assertPrewarm() throws Throwable {
+		PoolImpl<PoolableObject> prewarmedPool = createPool(Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).withPrewarm(5));
+		// limited to the size of the pool
+		assertEquals(2, prewarmedPool.instanceCount());
+		assertEquals(2, prewarmedPool.idleCount());
+		assertEquals("1", prewarmedPool.getInstance().get().value());
+		assertEquals(3, counter.get());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void assertPrewarm_parallelPrototype() throws Throwable {
+		PoolableObject prototype = new PoolableObject("prototype");
+		PoolImpl<PoolableObject> prototypePool = createPool(Factory.fromPrototype(prototype, p -> new PoolableObject(p.value() + counter.getAndIncrement())).withPrewarm(2, true));
+		assertEquals(2, prototypePool.idleCount());
+		PoolableObject one = prototypePool.getInstance().get();
+		PoolableObject two = prototypePool.getInstance().get();
+		assertTrue(one.value().startsWith("prototype"));
+		assertTrue(two.value().startsWith("prototype"));
+		assertNotSame(prototype, one);
+		assertNotSame(prototype, two);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void assertPrewarm_batch() throws Throwable {
+		List<Integer> batches = new CopyOnWriteArrayList<>();
+		PoolImpl<PoolableObject> batchPool = createPool(Factory.poolFor(() -> new PoolableObject("single")).withPrewarm(2).withBatchFactory(n -> {
+			batches.add(n);
+			return Collections.nCopies(n, new PoolableObject("batch"));
+		}));
+		assertEquals(2, batchPool.idleCount());
+		assertEquals("[2]", batches.toString());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void assertPrewarm_failingFactory() throws Throwable {
+		PoolImpl<PoolableObject> prewarmedPool = createPool(Factory.<PoolableObject>poolFor(() -> {
+			throw new Exception("Error, terror");
+		}).withPrewarm(2));
+		assertEquals(0, prewarmedPool.idleCount());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void assertSnapshot() throws Throwable {
+		Path file = Files.createTempDirectory("simplepool").resolve("snapshot");
+		Factory<PoolableObject> factory = Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).withPrewarm(2).withSnapshot(file, po -> po.value().getBytes(StandardCharsets.UTF_8), b -> new PoolableObject("restored-" + new String(b, StandardCharsets.UTF_8)));
+		PoolImpl<PoolableObject> first = createPool(factory);
+		PoolableObject borrowed = first.getInstance().get();
+		first.destroy(Duration.ZERO).result(1, TimeUnit.SECONDS);
+		assertIsDestroyed(borrowed);
+		assertTrue(Files.exists(file));
+
+		// only the idle instance is restored, the factory creates the shortfall
+		PoolImpl<PoolableObject> second = createPool(factory);
+		assertEquals(2, second.idleCount());
+		assertEquals("restored-2", second.getInstance().get().value());
+		assertEquals("3", second.getInstance().get().value());
+		assertFalse(Files.exists(file));
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void assertSnapshot_invalidInstanceNotRestored() throws Throwable {
+		Path file = Files.createTempDirectory("simplepool").resolve("snapshot");
+		List<PoolableObject> restored = new CopyOnWriteArrayList<>();
+		Factory<PoolableObject> factory = Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).withSnapshot(file, po -> po.value().getBytes(StandardCharsets.UTF_8), b -> {
+			PoolableObject po = new PoolableObject("restored-" + new String(b, StandardCharsets.UTF_8));
+			if (po.value().equals("restored-1")) {
+				po.failValidation();
+			}
+			restored.add(po);
+			return po;
+		});
+		PoolImpl<PoolableObject> first = createPool(factory);
+		PoolableObject one = first.getInstance().get();
+		PoolableObject two = first.getInstance().get();
+		assertIsSuccess(first.returnInstance(one));
+		assertIsSuccess(first.returnInstance(two));
+		first.destroy().result(1, TimeUnit.SECONDS);
+
+		// the instance failing validation is destroyed instead of pooled
+		PoolImpl<PoolableObject> second = createPool(factory);
+		assertEquals(1, second.idleCount());
+		assertEquals(2, restored.size());
+		assertIsDestroyed(restored.get(0));
+		assertEquals("restored-2", second.getInstance().get().value());
+	}
+
 	private PoolImpl<PoolableObject> createPool(ThrowableFunction0<PoolableObject> instanceFactory) {
 		return createPool(instanceFactory, Duration.ofDays(1));
 	}
 
 	private PoolImpl<PoolableObject> createPool(ThrowableFunction0<PoolableObject> instanceFactory, Duration idleTimeout) {
-		return new PoolImpl<>(instanceFactory, 2, po -> po.isValid(), po -> po.destroy(), PoolMode.FIFO, idleTimeout, Option(scheduledExecutorService));
+		return createPool(Factory.poolFor(instanceFactory).withIdleTimeout(idleTimeout, scheduledExecutorService));
+	}
+
+	private PoolImpl<PoolableObject> createPool(Factory<PoolableObject> factory) {
+		return new PoolImpl<>(factory.ofSize(2).withValidator(po -> po.isValid()).withDestructor(po -> po.destroy()).withPoolMode(PoolMode.FIFO));
 	}
 }
@@ -0,0 +1,62 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+/**
+ * Test the class {@link PoolListeners}
+ * @author Peter Nerg
+ */
+public class TestPoolListeners extends BaseAssert {
+	private final List<String> events = new CopyOnWriteArrayList<>();
+
+	@Test
+	public void of_noListeners() {
+		assertNull(PoolListeners.of(Collections.emptyList()));
+	}
+
+	@Test
+	public void notify_allListeners() {
+		PoolListener<String> failing = new PoolListener<String>() {
+			@Override
+			public void created(String instance) {
+				throw new IllegalStateException("Error, terror");
+			}
+		};
+		PoolListener<String> recording = new PoolListener<String>() {
+			@Override
+			public void created(String instance) {
+				events.add("created:" + instance);
+			}
+
+			@Override
+			public void poolDestroyed() {
+				events.add("poolDestroyed");
+			}
+		};
+		PoolListener<String> listener = PoolListeners.of(Arrays.asList(failing, recording));
+		listener.created("a");
+		listener.borrowed("a");
+		listener.poolDestroyed();
+		assertEquals("[created:a, poolDestroyed]", events.toString());
+	}
+}
@@ -0,0 +1,118 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import static javascalautils.TryCompanion.Try;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test the class {@link PoolManagement}
+ * @author Peter Nerg
+ */
+public class TestPoolManagement extends BaseAssert {
+	private static final long MaxTestTime = 5000;
+	private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+	private final Pool<PoolableObject> pool = Factory.poolFor(() -> new PoolableObject("x")).ofSize(2).withDestructor(po -> po.destroy()).withJmx("test").create();
+
+	@After
+	public void after() throws Throwable {
+		pool.destroy().result(1, TimeUnit.SECONDS);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void attributes() throws Throwable {
+		ObjectName name = new ObjectName("simplepool:type=Pool,name=\"test\"");
+		PoolableObject instance = pool.getInstance(Duration.ofSeconds(1)).get();
+		assertEquals(2, server.getAttribute(name, "MaxSize"));
+		assertEquals(1, server.getAttribute(name, "BorrowedCount"));
+		assertEquals(0, server.getAttribute(name, "IdleCount"));
+		assertEquals(0, server.getAttribute(name, "WaitingCount"));
+		assertEquals(1L, server.getAttribute(name, "CreatedCount"));
+		assertTrue((Double) server.getAttribute(name, "WaitTime99thPercentile") > 0);
+
+		assertIsSuccess(pool.returnInstance(instance));
+		assertEquals(1, server.getAttribute(name, "IdleCount"));
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void usageAttributes() throws Throwable {
+		ObjectName name = new ObjectName("simplepool:type=Pool,name=\"test\"");
+		PoolableObject one = pool.getInstance(Duration.ofSeconds(1)).get();
+		PoolableObject two = pool.getInstance(Duration.ofSeconds(1)).get();
+		assertIsSuccess(pool.returnInstance(two));
+		assertIsSuccess(pool.returnInstance(one));
+		// FIFO thus the instances are borrowed in turn
+		PoolableObject three = pool.getInstance(Duration.ofSeconds(1)).get();
+		assertIsSuccess(pool.returnInstance(three));
+
+		assertArrayEquals(new long[] { 2, 1 }, (long[]) server.getAttribute(name, "BorrowCounts"));
+		assertEquals(2, ((long[]) server.getAttribute(name, "HoldTimes")).length);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void operations() throws Throwable {
+		ObjectName name = new ObjectName("simplepool:type=Pool,name=\"test\"");
+		PoolableObject instance = pool.getInstance(Duration.ofSeconds(1)).get();
+		assertIsSuccess(pool.returnInstance(instance));
+
+		server.invoke(name, "evictIdleInstances", null, null);
+		assertIsDestroyed(instance);
+		assertEquals(1L, server.getAttribute(name, "EvictedCount"));
+		assertEquals(1L, server.getAttribute(name, "DestroyedCount"));
+
+		server.invoke(name, "runReaper", null, null);
+		server.invoke(name, "resize", new Object[] { 5 }, new String[] { int.class.getName() });
+		assertEquals(5, server.getAttribute(name, "MaxSize"));
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void unregisteredWhenDestroyed() throws Throwable {
+		ObjectName name = new ObjectName("simplepool:type=Pool,name=\"test\"");
+		assertTrue(server.isRegistered(name));
+		pool.destroy().result(1, TimeUnit.SECONDS);
+		assertFalse(server.isRegistered(name));
+	}
+
+	@Test(expected = PoolException.class)
+	public void register_duplicateName() {
+		Factory.poolFor(() -> new PoolableObject("x")).withJmx("test").create();
+	}
+
+	@Test
+	public void register_duplicateNameNoSideEffects() {
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+		AtomicInteger created = new AtomicInteger();
+		try {
+			assertIsFailure(Try(() -> Factory.poolFor(() -> new PoolableObject("" + created.incrementAndGet())).withPrewarm(2).withIdleTimeout(Duration.ofMinutes(1), executor).withJmx("test").create()));
+			//the name is checked before any instance is created or job scheduled
+			assertEquals(0, created.get());
+			assertEquals(0, executor.getQueue().size());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -16,6 +16,9 @@
 package simplepool;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Test;
 
@@ -116,6 +119,119 @@ public abstract class TestPoolQueueAbstract extends BaseAssert {
 		assertHeadIsEmpty();
 	}
 	
+	@Test
+	public void evictMax_emptyQueue() {
+		assertIsNone(queue.evictMax(po -> 1));
+	}
+
+	@Test
+	public void evictMax() {
+		PoolableObject one = add("a");
+		PoolableObject three = add("ccc");
+		PoolableObject two = add("bb");
+		
+		assertSomeEquals(three, queue.evictMax(po -> po.value().length()));
+		assertSomeEquals(two, queue.evictMax(po -> po.value().length()));
+		
+		//should now only have "a" in the queue
+		assertHead(one);
+		assertHeadIsEmpty();
+	}
+
+	@Test
+	public void evictSelected() {
+		PoolableObject one = add("a");
+		PoolableObject two = add("bb");
+		PoolableObject three = add("ccc");
+		queue.head(po -> po == three);
+
+		List<PoolableObject> offered = new ArrayList<>();
+		queue.evictSelected(idle -> {
+			idle.forEach(pi -> offered.add(pi.instance()));
+			return idle.subList(0, 1);
+		} , s -> s.destroy());
+
+		// the taken instance is never offered for eviction
+		assertEquals(2, offered.size());
+		assertFalse(offered.contains(three));
+		PoolableObject evicted = offered.get(0);
+		assertIsDestroyed(evicted);
+
+		assertHead(evicted == one ? two : one);
+		assertHeadIsEmpty();
+	}
+
+	@Test
+	public void addLast() {
+		PoolableObject one = add("one");
+		PoolableObject two = add("two");
+		PoolableObject three = new PoolableObject("three");
+		queue.addLast(three);
+
+		// regardless of mode the item is put at the end of the queue
+		PoolableObject first = queue.head().get();
+		assertTrue(first == one || first == two);
+		assertHead(first == one ? two : one);
+		assertHead(three);
+		assertHeadIsEmpty();
+	}
+
+	@Test
+	public void addLast_emptyQueue() {
+		PoolableObject one = new PoolableObject("one");
+		queue.addLast(one);
+		assertHead(one);
+		assertHeadIsEmpty();
+
+		PoolableObject two = add("two");
+		assertHead(two);
+	}
+
+	@Test
+	public void items() {
+		PoolableObject one = add("a");
+		PoolableObject two = add("bb");
+		queue.head(po -> po == two);
+		assertEquals(Arrays.asList(one), queue.items());
+	}
+
+	@Test
+	public void head_predicate() {
+		PoolableObject one = add("a");
+		PoolableObject two = add("bb");
+		PoolableObject three = add("cc");
+		
+		assertSomeEquals(two, queue.head(po -> po.value().equals("bb")));
+		assertIsNone(queue.head(po -> po.value().length() == 3));
+		
+		//the taken item is removed, the others are left
+		assertSomeEquals(three, queue.head(po -> po.value().length() == 2));
+		assertIsNone(queue.head(po -> po.value().length() == 2));
+		assertHead(one);
+		assertHeadIsEmpty();
+	}
+
+	@Test
+	public void head_predicate_lastItem() {
+		add("a");
+		PoolableObject two = add("bb");
+		
+		assertSomeEquals(two, queue.head(po -> po.value().equals("bb")));
+		queue.head();
+		assertHeadIsEmpty();
+		
+		//the queue must still be usable after having removed its items
+		PoolableObject three = add("ccc");
+		assertHead(three);
+		assertHeadIsEmpty();
+	}
+
+	@Test
+	public void head_attribute_noIndex() {
+		add("one");
+		assertIsNone(queue.head((Object)"one"));
+	}
+
 	/**
 	 * Creates a new {@link PoolableObject} and adds it to the queue.
 	 * @return
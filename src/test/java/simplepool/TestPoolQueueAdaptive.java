@@ -0,0 +1,94 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import org.junit.Test;
+
+/**
+ * Test the class {@link PoolQueueAdaptive}
+ * @author Peter Nerg
+ */
+public class TestPoolQueueAdaptive extends TestPoolQueueAbstract {
+
+	public TestPoolQueueAdaptive() {
+		super(new PoolQueueAdaptive<>());
+	}
+
+	@Test
+	public void assertOrder_lowUtilization() {
+		assertFalse(adaptive().isFIFO());
+		PoolableObject one = add("one");
+		PoolableObject two = add("two");
+		assertHead(two);
+		assertHead(one);
+		assertHeadIsEmpty();
+	}
+
+	@Test
+	public void assertOrder_highUtilization() {
+		reportUtilization(1.0);
+		assertTrue(adaptive().isFIFO());
+		PoolableObject one = add("one");
+		PoolableObject two = add("two");
+		assertHead(one);
+		assertHead(two);
+		assertHeadIsEmpty();
+	}
+
+	@Test
+	public void utilization_singlePeakDoesNotSwitch() {
+		adaptive().utilization(1.0);
+		assertFalse(adaptive().isFIFO());
+	}
+
+	@Test
+	public void utilization_hysteresis() {
+		reportUtilization(1.0);
+		assertTrue(adaptive().isFIFO());
+
+		// in between the thresholds the mode is kept
+		reportUtilization((PoolQueueAdaptive.HighUtilization + PoolQueueAdaptive.LowUtilization) / 2);
+		assertTrue(adaptive().isFIFO());
+
+		reportUtilization(0);
+		assertFalse(adaptive().isFIFO());
+	}
+
+	@Test
+	public void switchMode_withItemsInQueue() {
+		PoolableObject one = add("one");
+		reportUtilization(1.0);
+		PoolableObject two = add("two");
+		reportUtilization(0);
+		PoolableObject three = add("three");
+		
+		// "three" added first, "two" added last
+		assertHead(three);
+		assertHead(one);
+		assertHead(two);
+		assertHeadIsEmpty();
+	}
+
+	private PoolQueueAdaptive<PoolableObject> adaptive() {
+		return (PoolQueueAdaptive<PoolableObject>) queue;
+	}
+
+	private void reportUtilization(double utilization) {
+		for (int i = 0; i < 200; i++) {
+			adaptive().utilization(utilization);
+		}
+	}
+}
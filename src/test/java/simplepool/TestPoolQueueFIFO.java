@@ -15,6 +15,10 @@
  */
 package simplepool;
 
+import static javascalautils.OptionCompanion.Option;
+
+import java.time.Duration;
+
 import org.junit.Test;
 
 /**
@@ -36,4 +40,83 @@ public class TestPoolQueueFIFO extends TestPoolQueueAbstract {
 		assertHeadIsEmpty();
 	}
 
+	@Test
+	public void head_attribute() {
+		PoolQueue<PoolableObject> indexed = new PoolQueueFIFO<>(Option(po -> po.value().length()));
+		PoolableObject one = new PoolableObject("aa");
+		PoolableObject two = new PoolableObject("b");
+		PoolableObject three = new PoolableObject("cc");
+		indexed.add(one);
+		indexed.add(two);
+		indexed.add(three);
+
+		//the oldest item with the attribute is taken first
+		assertSomeEquals(one, indexed.head((Object)2));
+		assertSomeEquals(three, indexed.head((Object)2));
+		assertIsNone(indexed.head((Object)2));
+		assertIsNone(indexed.head((Object)3));
+
+		//items taken via the index are skipped when taking the head
+		assertSomeEquals(two, indexed.head());
+		assertIsNone(indexed.head());
+	}
+
+	@Test
+	public void head_attribute_takenByHead() {
+		PoolQueue<PoolableObject> indexed = new PoolQueueFIFO<>(Option(po -> po.value()));
+		PoolableObject one = new PoolableObject("one");
+		indexed.add(one);
+		assertSomeEquals(one, indexed.head());
+
+		//the index must not provide an item already taken
+		assertIsNone(indexed.head((Object)"one"));
+	}
+
+	@Test
+	public void head_attribute_purge() {
+		PoolQueue<PoolableObject> indexed = new PoolQueueFIFO<>(Option(po -> po.value()));
+		PoolableObject keep = new PoolableObject("keep");
+		indexed.add(keep);
+		//take enough items via the index to trigger a purge of the queue
+		for (int i = 0; i < 100; i++) {
+			PoolableObject po = new PoolableObject("item-" + i);
+			indexed.add(po);
+			assertSomeEquals(po, indexed.head((Object)po.value()));
+		}
+		assertSomeEquals(keep, indexed.head());
+		assertIsNone(indexed.head());
+	}
+
+	@Test
+	public void head_attribute_indexPrunedByHead() {
+		PoolQueue<PoolableObject> indexed = new PoolQueueFIFO<>(Option(po -> po.value()));
+		indexed.add(new PoolableObject("one"));
+		indexed.add(new PoolableObject("two"));
+		indexed.add(new PoolableObject("two"));
+		assertEquals(2, indexed.indexSize());
+
+		indexed.head();
+		assertEquals(1, indexed.indexSize());
+		indexed.head(po -> true);
+		assertEquals(1, indexed.indexSize());
+		indexed.head();
+		assertEquals(0, indexed.indexSize());
+	}
+
+	@Test
+	public void evictInstances_indexPruned() {
+		PoolQueue<PoolableObject> indexed = new PoolQueueFIFO<>(Option(po -> po.value()));
+		PoolableObject keep = new PoolableObject("keep");
+		indexed.add(keep);
+		indexed.add(new PoolableObject("evict"));
+		indexed.add(new PoolableObject("max"));
+		assertEquals(3, indexed.indexSize());
+
+		indexed.evictInstances(po -> po.value().equals("evict"), po -> po.destroy());
+		assertEquals(2, indexed.indexSize());
+		indexed.evictMax(po -> po.value().equals("max") ? 1 : 0);
+		assertEquals(1, indexed.indexSize());
+		indexed.markStaleInstances(Duration.ofMillis(-1), po -> po.destroy());
+		assertEquals(0, indexed.indexSize());
+	}
 }
@@ -15,6 +15,8 @@
  */
 package simplepool;
 
+import static javascalautils.OptionCompanion.Option;
+
 import org.junit.Test;
 
 /**
@@ -36,4 +38,50 @@ public class TestPoolQueueLIFO extends TestPoolQueueAbstract {
 		assertHeadIsEmpty();
 	}
 
+	@Test
+	public void head_attribute() {
+		PoolQueue<PoolableObject> indexed = new PoolQueueLIFO<>(Option(po -> po.value().length()));
+		PoolableObject one = new PoolableObject("aa");
+		PoolableObject two = new PoolableObject("b");
+		PoolableObject three = new PoolableObject("cc");
+		indexed.add(one);
+		indexed.add(two);
+		indexed.add(three);
+
+		//the newest item with the attribute is taken first
+		assertSomeEquals(three, indexed.head((Object)2));
+		assertSomeEquals(one, indexed.head((Object)2));
+		assertIsNone(indexed.head((Object)2));
+		assertIsNone(indexed.head((Object)3));
+
+		//items taken via the index are skipped when taking the head
+		assertSomeEquals(two, indexed.head());
+		assertIsNone(indexed.head());
+	}
+
+	@Test
+	public void head_attribute_takenByHead() {
+		PoolQueue<PoolableObject> indexed = new PoolQueueLIFO<>(Option(po -> po.value()));
+		PoolableObject one = new PoolableObject("one");
+		indexed.add(one);
+		assertSomeEquals(one, indexed.head());
+
+		//the index must not provide an item already taken
+		assertIsNone(indexed.head((Object)"one"));
+	}
+
+	@Test
+	public void head_attribute_purge() {
+		PoolQueue<PoolableObject> indexed = new PoolQueueLIFO<>(Option(po -> po.value()));
+		PoolableObject keep = new PoolableObject("keep");
+		indexed.add(keep);
+		//take enough items via the index to trigger a purge of the queue
+		for (int i = 0; i < 100; i++) {
+			PoolableObject po = new PoolableObject("item-" + i);
+			indexed.add(po);
+			assertSomeEquals(po, indexed.head((Object)po.value()));
+		}
+		assertSomeEquals(keep, indexed.head());
+		assertIsNone(indexed.head());
+	}
 }
@@ -0,0 +1,164 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import static javascalautils.TryCompanion.Try;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test the class {@link PoolRegistry}
+ * @author Peter Nerg
+ */
+public class TestPoolRegistry extends BaseAssert {
+	private static final long MaxTestTime = 5000;
+	private final AtomicLong counter = new AtomicLong(1);
+	private final PoolRegistry registry = PoolRegistry.withBudget(2, 10);
+
+	@After
+	public void after() throws Throwable {
+		registry.shutdown(Duration.ZERO).result(1, TimeUnit.SECONDS);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void join() throws Throwable {
+		Pool<PoolableObject> pool = createPool();
+		assertEquals(1, registry.poolCount());
+		PoolableObject po = pool.getInstance().get();
+		assertEquals(1, registry.instanceCount());
+		assertIsSuccess(pool.returnInstance(po));
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void leaveWhenDestroyed() throws Throwable {
+		Pool<PoolableObject> pool = createPool();
+		pool.destroy().result(1, TimeUnit.SECONDS);
+		assertEquals(0, registry.poolCount());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void budget_reclaimFromLeastRecentlyActive() throws Throwable {
+		Pool<PoolableObject> idlePool = createPool();
+		Pool<PoolableObject> activePool = createPool();
+		PoolableObject one = idlePool.getInstance().get();
+		PoolableObject two = idlePool.getInstance().get();
+		assertIsSuccess(idlePool.returnInstance(one));
+		assertIsSuccess(idlePool.returnInstance(two));
+		Thread.sleep(5);
+
+		// exceeds the budget, an idle instance is reclaimed from the pool not used the longest
+		PoolableObject three = activePool.getInstance().get();
+		while (registry.instanceCount() > 2) {
+			Thread.sleep(5);
+		}
+		assertIsDestroyed(one);
+		assertIsValid(two);
+		assertIsValid(three);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void budget_borrowedInstancesNotReclaimed() throws Throwable {
+		Pool<PoolableObject> pool = createPool();
+		PoolableObject one = pool.getInstance().get();
+		PoolableObject two = pool.getInstance().get();
+		PoolableObject three = pool.getInstance().get();
+		Thread.sleep(20);
+		assertEquals(3, registry.instanceCount());
+		assertIsValid(one);
+		assertIsValid(two);
+		assertIsValid(three);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void budget_weight() throws Throwable {
+		Pool<PoolableObject> pool = Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).withWeigher(po -> 6, Long.MAX_VALUE).withDestructor(po -> po.destroy()).withRegistry(registry).create();
+		PoolableObject one = pool.getInstance().get();
+		assertIsSuccess(pool.returnInstance(one));
+		PoolableObject two = pool.getInstance(po -> false, Duration.ofSeconds(1)).get();
+		while (registry.totalWeight() > 10) {
+			Thread.sleep(5);
+		}
+		assertIsDestroyed(one);
+		assertIsValid(two);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void sharedExecutor() throws Throwable {
+		Pool<PoolableObject> pool = Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).withIdleTimeout(Duration.ofMillis(10), null).withDestructor(po -> po.destroy()).withRegistry(registry).create();
+		PoolableObject po = pool.getInstance().get();
+		assertIsSuccess(pool.returnInstance(po));
+
+		// the idle reaper runs on the thread of the registry
+		while (!po.isDestroyed()) {
+			Thread.sleep(5);
+		}
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void shutdown() throws Throwable {
+		Pool<PoolableObject> pool1 = createPool();
+		Pool<PoolableObject> pool2 = createPool();
+		PoolableObject po1 = pool1.getInstance().get();
+		PoolableObject po2 = pool2.getInstance().get();
+		assertIsSuccess(pool1.returnInstance(po1));
+
+		// the borrowed instance is forcibly evicted at the end of the grace period
+		registry.shutdown(Duration.ofMillis(20)).result(1, TimeUnit.SECONDS);
+		assertIsDestroyed(po1);
+		assertIsDestroyed(po2);
+		assertEquals(0, registry.poolCount());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void join_afterShutdown() throws Throwable {
+		registry.shutdown().result(1, TimeUnit.SECONDS);
+		assertIsFailure(Try(() -> Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).withPrewarm(2).withRegistry(registry).create()));
+		// the instances created before failing to join are destroyed
+		assertEquals(0, registry.poolCount());
+		assertEquals(0, registry.instanceCount());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void created_afterShutdown() throws Throwable {
+		registry.shutdown().result(1, TimeUnit.SECONDS);
+		// over budget with the executor stopped, there's nothing to rebalance
+		for (int i = 0; i < 3; i++) {
+			registry.created();
+		}
+		assertEquals(3, registry.instanceCount());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void instanceCount_runningTotal() throws Throwable {
+		Pool<PoolableObject> pool = Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).withWeigher(po -> 3, Long.MAX_VALUE).withDestructor(po -> po.destroy()).withRegistry(registry).create();
+		PoolableObject po = pool.getInstance().get();
+		assertEquals(1, registry.instanceCount());
+		assertEquals(3, registry.totalWeight());
+		assertIsSuccess(pool.returnInstance(po));
+		pool.destroy().result(1, TimeUnit.SECONDS);
+		assertEquals(0, registry.instanceCount());
+		assertEquals(0, registry.totalWeight());
+	}
+
+	private Pool<PoolableObject> createPool() {
+		return Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).ofSize(5).withDestructor(po -> po.destroy()).withRegistry(registry).create();
+	}
+}
@@ -0,0 +1,70 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Test the class {@link PoolStatistics}
+ * @author Peter Nerg
+ */
+public class TestPoolStatistics extends BaseAssert {
+	private final PoolStatistics statistics = new PoolStatistics();
+
+	@Test
+	public void counters() {
+		statistics.created();
+		statistics.created();
+		statistics.destroyed();
+		statistics.evicted();
+		assertEquals(2, statistics.createdCount());
+		assertEquals(1, statistics.destroyedCount());
+		assertEquals(1, statistics.evictedCount());
+	}
+
+	@Test
+	public void waitTime_noWaits() {
+		assertEquals(0, statistics.waitTime(0.5), 0);
+	}
+
+	@Test
+	public void waitTime_percentiles() {
+		for (int i = 0; i < 90; i++) {
+			statistics.waited(0);
+		}
+		for (int i = 0; i < 10; i++) {
+			statistics.waited(TimeUnit.MILLISECONDS.toNanos(100));
+		}
+		assertEquals(0.001, statistics.waitTime(0.5), 0);
+		assertEquals(0.001, statistics.waitTime(0.9), 0);
+		// 100 ms is in the bucket up to 2^17 micros
+		assertEquals(131.072, statistics.waitTime(0.99), 0);
+	}
+
+	@Test
+	public void waitTime_immediateCountedAsNoWait() {
+		for (int i = 0; i < 90; i++) {
+			statistics.immediate();
+		}
+		for (int i = 0; i < 10; i++) {
+			statistics.waited(TimeUnit.MILLISECONDS.toNanos(100));
+		}
+		assertEquals(0.001, statistics.waitTime(0.9), 0);
+		assertEquals(131.072, statistics.waitTime(0.99), 0);
+	}
+}
@@ -0,0 +1,184 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Test;
+
+import javascalautils.Try;
+import javascalautils.Unit;
+import javascalautils.concurrent.Future;
+
+/**
+ * Test the class {@link PooledExecutor}
+ * 
+ * @author Peter Nerg
+ */
+public class TestPooledExecutor extends BaseAssert {
+
+	private static final long MaxTestTime = 5000;
+	private final AtomicLong counter = new AtomicLong(1);
+	private final Pool<PoolableObject> pool = Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).ofSize(2).create();
+	private final PooledExecutor<PoolableObject> executor = PooledExecutor.executorFor(pool, 2, 10);
+
+	@After
+	public void after() throws Throwable {
+		executor.shutdown().result(MaxTestTime, TimeUnit.MILLISECONDS);
+		pool.destroy();
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void submit() throws Throwable {
+		Future<String> future = executor.submit(po -> po.value());
+		assertNotNull(future.result(MaxTestTime, TimeUnit.MILLISECONDS));
+	}
+
+	@Test(expected = IllegalArgumentException.class, timeout = MaxTestTime)
+	public void submit_failingTask() throws Throwable {
+		Future<String> failed = executor.submit(po -> {
+			throw new IllegalArgumentException("Error, terror!!!");
+		});
+		// a failing task shall not stop the executor
+		Future<String> ok = executor.submit(po -> po.value());
+		assertNotNull(ok.result(MaxTestTime, TimeUnit.MILLISECONDS));
+		failed.result(MaxTestTime, TimeUnit.MILLISECONDS);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void submit_manyTasks() throws Throwable {
+		List<Future<String>> futures = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			futures.add(executor.submit(po -> po.value()));
+		}
+		for (Future<String> future : futures) {
+			assertNotNull(future.result(MaxTestTime, TimeUnit.MILLISECONDS));
+		}
+		// never more instances than workers
+		assertTrue(counter.get() <= 3);
+	}
+
+	@Test(expected = IllegalStateException.class, timeout = MaxTestTime)
+	public void submit_afterShutdown() throws Throwable {
+		executor.shutdown().result(MaxTestTime, TimeUnit.MILLISECONDS);
+		executor.submit(po -> po.value());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void submit_concurrentWithShutdown() throws Throwable {
+		PooledExecutor<PoolableObject> racingExecutor = PooledExecutor.executorFor(pool, 2, 10);
+		List<Future<String>> accepted = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch started = new CountDownLatch(1);
+		Thread submitter = new Thread(() -> {
+			started.countDown();
+			try {
+				for (;;) {
+					accepted.add(racingExecutor.submit(po -> po.value()));
+				}
+			} catch (IllegalStateException ex) {
+				// shut down, expected
+			}
+		});
+		submitter.start();
+		started.await();
+		racingExecutor.shutdown().result(MaxTestTime, TimeUnit.MILLISECONDS);
+		submitter.join();
+
+		// every task accepted before the shutdown must have been run
+		for (Future<String> future : accepted) {
+			assertNotNull(future.result(MaxTestTime, TimeUnit.MILLISECONDS));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void executorFor_zeroParallelism() {
+		PooledExecutor.executorFor(pool, 0, 10);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void executorFor_zeroBatchSize() {
+		PooledExecutor.executorFor(pool, 2, 0);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void parallelMap() {
+		Set<PoolableObject> used = ConcurrentHashMap.newKeySet();
+		Try<List<String>> result = pool.parallelMap(Arrays.asList("a", "b", "c", "d"), (po, item) -> {
+			used.add(po);
+			return item.toUpperCase();
+		});
+		assertIsSuccess(result);
+		assertEquals(Arrays.asList("A", "B", "C", "D"), result.orNull());
+		assertTrue(used.size() <= 2);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void submit_poolDestroyedWithQueuedTasks() throws Throwable {
+		Pool<PoolableObject> singlePool = Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).ofSize(1).create();
+		PooledExecutor<PoolableObject> singleExecutor = PooledExecutor.executorFor(singlePool, 1, 1);
+		CountDownLatch running = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Future<String> first = singleExecutor.submit(po -> {
+			running.countDown();
+			release.await();
+			return po.value();
+		});
+		running.await();
+		List<Future<String>> queued = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			queued.add(singleExecutor.submit(po -> po.value()));
+		}
+		Future<Unit> destroyed = singlePool.destroy();
+		release.countDown();
+
+		assertNotNull(first.result(MaxTestTime, TimeUnit.MILLISECONDS));
+		// the queued tasks are failed instead of left hanging
+		for (Future<String> future : queued) {
+			try {
+				future.result(MaxTestTime, TimeUnit.MILLISECONDS);
+				fail("Expected the task to fail");
+			} catch (IllegalStateException ex) {
+				// expected
+			}
+		}
+		destroyed.result(MaxTestTime, TimeUnit.MILLISECONDS);
+		singleExecutor.shutdown().result(MaxTestTime, TimeUnit.MILLISECONDS);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void parallelMap_emptyItems() {
+		Try<List<String>> result = pool.parallelMap(new ArrayList<String>(), (po, item) -> item);
+		assertIsSuccess(result);
+		assertTrue(result.orNull().isEmpty());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void parallelMap_failingFunction() {
+		Try<List<String>> result = pool.parallelMap(Arrays.asList("a", "b", "c"), (po, item) -> {
+			throw new IllegalArgumentException("Error, terror!!!");
+		});
+		assertIsFailure(result);
+	}
+}
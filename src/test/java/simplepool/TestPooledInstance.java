@@ -23,7 +23,7 @@ import org.junit.Test;
  */
 public class TestPooledInstance extends BaseAssert {
 	private final PoolableObject object = new PoolableObject("");
-	private final PooledInstance<PoolableObject> instance = new PooledInstance<>(object);
+	private final PooledInstance<PoolableObject> instance = new PooledInstance<>(object, System.currentTimeMillis());
 			
 	@Test
 	public void lastUsed() {
@@ -37,8 +37,10 @@ public class TestPooledInstance extends BaseAssert {
 
 	@Test
 	public void markAsUsedOrDestroyed() {
+		assertFalse(instance.isUsedOrDestroyed());
 		assertTrue(instance.markAsUsedOrDestroyed());
 		assertFalse(instance.markAsUsedOrDestroyed());
+		assertTrue(instance.isUsedOrDestroyed());
 	}
 	
 	@Test
@@ -0,0 +1,83 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import org.junit.Test;
+
+/**
+ * Test the class {@link SharedInstance}
+ * @author Peter Nerg
+ */
+public class TestSharedInstance extends BaseAssert {
+	private final PoolableObject object = new PoolableObject("");
+	private final SharedInstance<PoolableObject> instance = new SharedInstance<>(object, System.currentTimeMillis());
+
+	@Test
+	public void instance() {
+		assertEquals(object, instance.instance());
+	}
+
+	@Test
+	public void tryAcquire_upToMaxUsers() {
+		assertTrue(instance.tryAcquire(2));
+		assertTrue(instance.tryAcquire(2));
+		assertFalse(instance.tryAcquire(2));
+		assertEquals(2, instance.users());
+	}
+
+	@Test
+	public void release() {
+		instance.tryAcquire(2);
+		assertFalse(instance.release(Ticker.system()));
+		assertEquals(0, instance.users());
+	}
+
+	@Test
+	public void retire_withoutUsers() {
+		assertEquals(0, instance.retire());
+		assertTrue(instance.isRetired());
+		assertFalse(instance.tryAcquire(2));
+		assertEquals(-1, instance.retire());
+	}
+
+	@Test
+	public void retire_withUsers() {
+		instance.tryAcquire(2);
+		instance.tryAcquire(2);
+		assertEquals(2, instance.retire());
+		assertEquals(2, instance.users());
+		assertFalse(instance.tryAcquire(2));
+
+		// the last user shall be told to destroy the instance
+		assertFalse(instance.release(Ticker.system()));
+		assertTrue(instance.release(Ticker.system()));
+	}
+
+	@Test
+	public void retireIfIdle() throws InterruptedException {
+		instance.tryAcquire(2);
+		assertFalse(instance.retireIfIdle(System.currentTimeMillis() + 1000));
+		instance.release(Ticker.system());
+		Thread.sleep(1);
+		assertTrue(instance.retireIfIdle(System.currentTimeMillis()));
+		assertTrue(instance.isRetired());
+	}
+
+	@Test
+	public void toString_t() {
+		assertNotNull(instance.toString());
+	}
+}
@@ -0,0 +1,241 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Test;
+
+import javascalautils.Try;
+import javascalautils.Unit;
+import javascalautils.concurrent.Future;
+
+/**
+ * Test the class {@link SharedPoolImpl}
+ * 
+ * @author Peter Nerg
+ */
+public class TestSharedPoolImpl extends BaseAssert {
+
+	private static final long MaxTestTime = 5000;
+	private final AtomicLong counter = new AtomicLong(1);
+	private final ScheduledExecutorService scheduledExecutorService = new ScheduledThreadPoolExecutor(1);
+	private final Factory<PoolableObject> factory = Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).ofSize(2).withSharedInstances(2).withValidator(po -> po.isValid()).withDestructor(po -> po.destroy());
+	private final Pool<PoolableObject> pool = factory.create();
+
+	@After
+	public void after() {
+		pool.destroy();
+		scheduledExecutorService.shutdownNow();
+	}
+
+	@Test
+	public void create_isShared() {
+		assertTrue(pool instanceof SharedPoolImpl);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void getInstance_sharedUpToLimit() {
+		PoolableObject first = getAndAssertInstance();
+		assertSame(first, getAndAssertInstance());
+
+		// first instance is at its limit, a new one shall be created
+		PoolableObject second = getAndAssertInstance();
+		assertNotSame(first, second);
+		assertSame(second, getAndAssertInstance());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void getInstance_exhaustPool() {
+		for (int i = 0; i < 4; i++) {
+			getAndAssertInstance();
+		}
+		assertIsFailure(pool.getInstance(Duration.ofMillis(5)));
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void lease_closeTwice() throws Throwable {
+		List<Lease<PoolableObject>> leases = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			leases.add(pool.lease(Duration.ofMillis(5)).get());
+		}
+		// closing a lease twice must not release the slot of the user sharing the instance
+		leases.get(0).close();
+		leases.get(0).close();
+		assertIsSuccess(pool.getInstance(Duration.ofMillis(5)));
+		assertIsFailure(pool.getInstance(Duration.ofMillis(5)));
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void getInstance_predicate() {
+		PoolableObject first = getAndAssertInstance();
+		PoolableObject second = pool.getInstance(po -> !po.equals(first), Duration.ofMillis(5)).orNull();
+		assertNotNull(second);
+		assertNotSame(first, second);
+
+		// both have room for another user, the predicate decides which one to share
+		assertSame(first, pool.getInstance(po -> po.equals(first), Duration.ofMillis(5)).orNull());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void getInstance_predicateNoMatchFullPool() throws Throwable {
+		PoolableObject first = getAndAssertInstance();
+		PoolableObject second = getAndAssertInstance();
+		PoolableObject third = getAndAssertInstance();
+		assertIsSuccess(pool.returnInstance(third));
+		assertIsSuccess(pool.returnInstance(second));
+		assertIsSuccess(pool.returnInstance(first));
+
+		// the unused instances not matching give way for a new instance
+		PoolableObject created = pool.getInstance(po -> po.value().equals("x"), Duration.ofMillis(5)).orNull();
+		assertEquals("3", created.value());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void getInstance_predicateNoMatchAllInUse() throws Throwable {
+		PoolableObject first = getAndAssertInstance();
+		PoolableObject second = pool.getInstance(po -> !po.equals(first), Duration.ofMillis(5)).orNull();
+		assertNotSame(first, second);
+
+		// every slot holds an instance in use not matching, the borrow must time out and give back its permit
+		Try<PoolableObject> result = pool.getInstance(po -> po.value().equals("x"), Duration.ofMillis(20));
+		assertIsFailure(result);
+		assertTrue(result.failed().get() instanceof TimeoutException);
+		assertSame(first, getAndAssertInstance());
+		assertSame(second, getAndAssertInstance());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void getInstanceByAttribute() throws Throwable {
+		Pool<PoolableObject> indexedPool = Factory.poolFor(() -> new PoolableObject("" + counter.getAndIncrement())).ofSize(2).withSharedInstances(2).withAttribute(po -> po.value()).create();
+		PoolableObject first = indexedPool.getInstance().orNull();
+		PoolableObject second = indexedPool.getInstanceByAttribute("x", Duration.ofMillis(5)).orNull();
+		assertNotSame(first, second);
+		assertSame(first, indexedPool.getInstanceByAttribute("1", Duration.ofMillis(5)).orNull());
+		indexedPool.destroy();
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void getInstance_leastLoaded() {
+		PoolableObject first = getAndAssertInstance();
+		getAndAssertInstance();
+		PoolableObject second = getAndAssertInstance();
+		returnAndAssertResponse(first);
+		returnAndAssertResponse(first);
+
+		// first now has no users and is the least loaded
+		assertSame(first, getAndAssertInstance());
+		assertNotSame(first, second);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void returnInstance_notBorrowed() {
+		assertIsFailure(pool.returnInstance(new PoolableObject("This should fail")));
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void returnInstance_failsValidation() {
+		PoolableObject po = getAndAssertInstance();
+		assertSame(po, getAndAssertInstance());
+		po.failValidation();
+
+		// still in use by another user
+		returnAndAssertResponse(po);
+		assertFalse(po.isDestroyed());
+
+		// retired instances shall not be handed out
+		assertNotSame(po, getAndAssertInstance());
+
+		returnAndAssertResponse(po);
+		assertIsDestroyed(po);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void withInstance() {
+		Try<String> result = pool.withInstance(Duration.ofMillis(5), po -> po.value());
+		assertIsSuccess(result);
+		assertEquals("1", result.orNull());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void withInstance_failureBreakingInstance() {
+		Pool<PoolableObject> brokenPool = factory.withBrokenInstanceDetector(ex -> true).create();
+		PoolableObject[] used = new PoolableObject[1];
+		assertIsFailure(brokenPool.withInstance(Duration.ofMillis(5), po -> {
+			used[0] = po;
+			throw new IllegalStateException("Error, terror!!!");
+		}));
+		assertIsDestroyed(used[0]);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void idleTimeout() throws InterruptedException {
+		Pool<PoolableObject> idlePool = factory.withIdleTimeout(Duration.ofMillis(10), scheduledExecutorService).create();
+		PoolableObject po = idlePool.getInstance().orNull();
+		idlePool.returnInstance(po);
+
+		// let the idle reaper sweep
+		Thread.sleep(50);
+		assertIsDestroyed(po);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void destroy_withBorrowedInstances() throws Throwable {
+		PoolableObject po1 = getAndAssertInstance();
+		PoolableObject po2 = getAndAssertInstance();
+
+		Future<Unit> future = pool.destroy();
+		Thread.sleep(50);
+		assertFalse(future.isCompleted());
+
+		returnAndAssertResponse(po1);
+		returnAndAssertResponse(po2);
+		future.result(MaxTestTime, TimeUnit.MILLISECONDS);
+		assertIsDestroyed(po1);
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void destroy_gracePeriodEnds() throws Throwable {
+		PoolableObject po = getAndAssertInstance();
+		pool.destroy(Duration.ofMillis(20)).result(MaxTestTime, TimeUnit.MILLISECONDS);
+		assertIsDestroyed(po);
+		assertIsFailure(pool.returnInstance(po));
+	}
+
+	@Test(expected = IllegalStateException.class, timeout = MaxTestTime)
+	public void getInstance_afterDestruction() throws Throwable {
+		pool.destroy().result(1, TimeUnit.SECONDS);
+		pool.getInstance();
+	}
+
+	private PoolableObject getAndAssertInstance() {
+		Try<PoolableObject> t = pool.getInstance(Duration.ofMillis(5));
+		assertIsSuccess(t);
+		return t.orNull();
+	}
+
+	private void returnAndAssertResponse(PoolableObject po) {
+		assertIsSuccess(pool.returnInstance(po));
+	}
+}
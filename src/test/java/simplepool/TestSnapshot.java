@@ -0,0 +1,139 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import static java.util.stream.Collectors.toList;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the class {@link Snapshot}
+ * @author Peter Nerg
+ */
+public class TestSnapshot extends BaseAssert {
+	private Path file;
+
+	@Before
+	public void before() throws IOException {
+		file = Files.createTempDirectory("simplepool").resolve("snapshot");
+	}
+
+	@Test
+	public void read_missingFile() throws IOException {
+		assertTrue(Snapshot.read(file).isEmpty());
+	}
+
+	@Test
+	public void writeAndRead() throws IOException {
+		Snapshot.write(file, Arrays.asList(bytes("one"), bytes(""), bytes("three")));
+		assertEquals(Arrays.asList("one", "", "three"), strings(Snapshot.read(file)));
+	}
+
+	@Test
+	public void read_unknownMagic() throws IOException {
+		Files.write(file, ByteBuffer.allocate(12).putInt(666).putInt(Snapshot.Version).putInt(0).array());
+		assertTrue(Snapshot.read(file).isEmpty());
+	}
+
+	@Test
+	public void read_unknownVersion() throws IOException {
+		Snapshot.write(file, Collections.singletonList(bytes("one")));
+		byte[] content = Files.readAllBytes(file);
+		ByteBuffer.wrap(content).putInt(4, Snapshot.Version + 1);
+		Files.write(file, content);
+		assertTrue(Snapshot.read(file).isEmpty());
+	}
+
+	@Test
+	public void read_corruptRecordSkipped() throws IOException {
+		Snapshot.write(file, Arrays.asList(bytes("one"), bytes("two")));
+		byte[] content = Files.readAllBytes(file);
+		// flip a byte in the first record, header (12) + length/checksum (8)
+		content[20] ^= 0xFF;
+		Files.write(file, content);
+		assertEquals(Collections.singletonList("two"), strings(Snapshot.read(file)));
+	}
+
+	@Test
+	public void read_truncated() throws IOException {
+		Snapshot.write(file, Arrays.asList(bytes("one"), bytes("two")));
+		byte[] content = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(content, content.length - 1));
+		assertEquals(Collections.singletonList("one"), strings(Snapshot.read(file)));
+	}
+
+	@Test
+	public void saveAndRestore() {
+		Snapshot<String> snapshot = new Snapshot<>(file, s -> {
+			if (s.equals("bad")) {
+				throw new IllegalArgumentException("Can't serialize");
+			}
+			return bytes(s);
+		} , b -> new String(b, StandardCharsets.UTF_8));
+		snapshot.save(Arrays.asList("one", "bad", "two"));
+		assertEquals(Arrays.asList("one", "two"), snapshot.restore());
+
+		// the snapshot is consumed once restored
+		assertFalse(Files.exists(file));
+		assertTrue(snapshot.restore().isEmpty());
+	}
+
+	@Test
+	public void saveAndRestore_nullRecords() {
+		Snapshot<String> snapshot = new Snapshot<>(file, s -> s.equals("null") ? null : bytes(s), b -> {
+			String s = new String(b, StandardCharsets.UTF_8);
+			return s.equals("nothing") ? null : s;
+		});
+		snapshot.save(Arrays.asList("one", "null", "nothing", "two"));
+		assertEquals(Arrays.asList("one", "two"), snapshot.restore());
+	}
+
+	@Test
+	public void discard() throws IOException {
+		Snapshot.write(file, Collections.singletonList(bytes("one")));
+		assertTrue(Snapshot.discard(file));
+		assertTrue(Snapshot.read(file).isEmpty());
+	}
+
+	@Test
+	public void writeAndRead_manyRecords() throws IOException {
+		List<byte[]> records = new ArrayList<>();
+		for (int i = 0; i < 10000; i++) {
+			records.add(bytes("record-" + i));
+		}
+		Snapshot.write(file, records);
+		assertEquals(strings(records), strings(Snapshot.read(file)));
+	}
+
+	private static byte[] bytes(String s) {
+		return s.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static List<String> strings(List<byte[]> records) {
+		return records.stream().map(b -> new String(b, StandardCharsets.UTF_8)).collect(toList());
+	}
+}
@@ -0,0 +1,53 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import java.time.Duration;
+
+import org.junit.Test;
+
+/**
+ * Test the class {@link Ticker}
+ * @author Peter Nerg
+ */
+public class TestTicker extends BaseAssert {
+	private static final long MaxTestTime = 5000;
+
+	@Test
+	public void system() {
+		long before = System.currentTimeMillis();
+		long now = Ticker.system().millis();
+		assertTrue(now >= before);
+		assertTrue(now <= System.currentTimeMillis());
+	}
+
+	@Test(timeout = MaxTestTime)
+	public void coarse() throws InterruptedException {
+		long before = System.currentTimeMillis();
+		Ticker ticker = Ticker.coarse(Duration.ofMillis(1));
+		long first = ticker.millis();
+		assertTrue(first >= before);
+		while (ticker.millis() == first) {
+			Thread.sleep(1);
+		}
+		assertTrue(ticker.millis() > first);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void coarse_zeroResolution() {
+		Ticker.coarse(Duration.ZERO);
+	}
+}
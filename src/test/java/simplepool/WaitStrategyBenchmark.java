@@ -0,0 +1,84 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import simplepool.Constants.WaitStrategy;
+
+/**
+ * Benchmark of the borrow latency for each {@link WaitStrategy} at different hold times. <br>
+ * A number of threads larger than the pool compete for the instances, each borrow is timed and the instance is held by busy waiting for the hold time. <br>
+ * The percentiles of the borrow latency are printed per strategy and hold time. <br>
+ * Run with: <tt>java -cp ... simplepool.WaitStrategyBenchmark [poolSize] [threads] [borrowsPerThread]</tt>
+ * @author Peter Nerg
+ */
+public final class WaitStrategyBenchmark {
+
+	private static final long[] HoldTimesNanos = { 0, 1_000, 10_000, 100_000 };
+
+	public static void main(String[] args) throws Throwable {
+		int poolSize = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		int borrows = args.length > 2 ? Integer.parseInt(args[2]) : 20_000;
+		System.out.println("Pool size [" + poolSize + "] threads [" + threads + "] borrows per thread [" + borrows + "]");
+
+		for (long holdNanos : HoldTimesNanos) {
+			for (WaitStrategy strategy : WaitStrategy.values()) {
+				Pool<Object> pool = Factory.poolFor(() -> new Object()).ofSize(poolSize).withWaitStrategy(strategy).create();
+				// warm up
+				run(pool, threads, borrows / 10, holdNanos);
+				long[] latencies = run(pool, threads, borrows, holdNanos);
+				Arrays.sort(latencies);
+				System.out.println(String.format("hold [%6dns] %-16s p50 [%8dns] p99 [%8dns] p99.9 [%8dns]", holdNanos, strategy, percentile(latencies, 0.5), percentile(latencies, 0.99), percentile(latencies, 0.999)));
+				pool.destroy().result(10, TimeUnit.SECONDS);
+			}
+		}
+	}
+
+	/**
+	 * Runs all threads to completion.
+	 * @return The latency of each borrow in nanos
+	 */
+	private static long[] run(Pool<Object> pool, int threads, int borrows, long holdNanos) throws InterruptedException {
+		long[] latencies = new long[threads * borrows];
+		CountDownLatch done = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			int offset = t * borrows;
+			new Thread(() -> {
+				for (int i = 0; i < borrows; i++) {
+					long start = System.nanoTime();
+					Object instance = pool.getInstance(Duration.ofSeconds(10)).orNull();
+					latencies[offset + i] = System.nanoTime() - start;
+					// busy wait as sleeping has a far too coarse granularity
+					for (long holdStart = System.nanoTime(); System.nanoTime() - holdStart < holdNanos;) {
+					}
+					pool.returnInstance(instance);
+				}
+				done.countDown();
+			}).start();
+		}
+		done.await();
+		return latencies;
+	}
+
+	private static long percentile(long[] sorted, double percentile) {
+		return sorted[(int) Math.min(sorted.length - 1, sorted.length * percentile)];
+	}
+}
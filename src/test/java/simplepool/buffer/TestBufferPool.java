@@ -0,0 +1,193 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool.buffer;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.Test;
+
+import javascalautils.Try;
+import simplepool.BaseAssert;
+
+/**
+ * Test the class {@link BufferPool}
+ * 
+ * @author Peter Nerg
+ */
+public class TestBufferPool extends BaseAssert {
+	private static final Duration MaxWaitTime = Duration.ofMillis(5);
+	private final BufferPool bufferPool = BufferPool.create(4096, 8192, 64 * 1024);
+
+	@Test
+	public void sizeClass() {
+		assertEquals(0, BufferPool.sizeClass(1));
+		assertEquals(0, BufferPool.sizeClass(64));
+		assertEquals(1, BufferPool.sizeClass(65));
+		assertEquals(1, BufferPool.sizeClass(128));
+		assertEquals(6, BufferPool.sizeClass(4096));
+	}
+
+	@Test
+	public void sizeClassSize() {
+		assertEquals(64, BufferPool.sizeClassSize(10));
+		assertEquals(1024, BufferPool.sizeClassSize(1000));
+		assertEquals(1024, BufferPool.sizeClassSize(1024));
+	}
+
+	@Test
+	public void acquire() {
+		ByteBuffer buffer = acquireAndAssert(1000);
+		assertTrue(buffer.isDirect());
+		assertEquals(1024, buffer.capacity());
+		assertEquals(1000, buffer.limit());
+		assertEquals(0, buffer.position());
+	}
+
+	@Test
+	public void acquire_tooLarge() {
+		assertIsFailure(bufferPool.acquire(8192, MaxWaitTime));
+	}
+
+	@Test
+	public void acquire_slicedFromSlab() {
+		acquireAndAssert(1024);
+		acquireAndAssert(1024);
+		// both buffers shall be sliced from the same slab
+		assertEquals(8192, bufferPool.allocatedMemory());
+	}
+
+	@Test
+	public void acquire_memoryExhausted() {
+		// 64k of memory allows for 16 buffers of 4k
+		for (int i = 0; i < 16; i++) {
+			acquireAndAssert(4096);
+		}
+		assertIsFailure(bufferPool.acquire(4096, MaxWaitTime));
+	}
+
+	@Test
+	public void release_clearsBuffer() {
+		ByteBuffer buffer = acquireAndAssert(100);
+		buffer.putInt(69);
+		assertIsSuccess(bufferPool.release(buffer));
+		
+		ByteBuffer reused = acquireAndAssert(128);
+		assertSame(buffer, reused);
+		assertEquals(0, reused.position());
+	}
+
+	@Test
+	public void release_foreignBuffer() {
+		assertIsFailure(bufferPool.release(ByteBuffer.allocate(100)));
+	}
+
+	@Test
+	public void release_heapBuffer() {
+		assertIsFailure(bufferPool.release(ByteBuffer.allocate(128)));
+	}
+
+	@Test
+	public void release_directBufferNotFromPool() {
+		assertIsFailure(bufferPool.release(ByteBuffer.allocateDirect(128)));
+	}
+
+	@Test
+	public void release_twice() {
+		ByteBuffer buffer = acquireAndAssert(100);
+		assertIsSuccess(bufferPool.release(buffer));
+		assertIsFailure(bufferPool.release(buffer));
+
+		// the buffer must only be handed out once
+		ByteBuffer first = acquireAndAssert(100);
+		ByteBuffer second = acquireAndAssert(100);
+		assertNotSame(first, second);
+	}
+
+	@Test(timeout = 5000)
+	public void acquire_waitsForReleasedBuffer() throws Throwable {
+		List<ByteBuffer> buffers = acquireAll(4096);
+		Thread releaser = new Thread(() -> {
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(20));
+			bufferPool.release(buffers.get(0));
+		});
+		releaser.start();
+		assertSame(buffers.get(0), bufferPool.acquire(4096, Duration.ofSeconds(2)).get());
+		releaser.join();
+	}
+
+	@Test(timeout = 5000)
+	public void acquire_reclaimsMagazineOfTerminatedThread() throws Throwable {
+		Thread user = new Thread(() -> acquireAll(4096).forEach(b -> bufferPool.release(b)));
+		user.start();
+		user.join();
+
+		// half of the buffers are stuck in the magazine of the terminated thread
+		acquireAll(4096);
+		assertEquals(64 * 1024, bufferPool.allocatedMemory());
+	}
+
+	@Test(timeout = 5000)
+	public void acquire_memoryExhaustedServedByLargerBuffer() {
+		List<ByteBuffer> buffers = acquireAll(4096);
+		assertIsFailure(bufferPool.acquire(64, MaxWaitTime));
+
+		assertIsSuccess(bufferPool.release(buffers.get(0)));
+		ByteBuffer buffer = acquireAndAssert(64);
+		assertSame(buffers.get(0), buffer);
+		assertEquals(64, buffer.limit());
+		assertIsSuccess(bufferPool.release(buffer));
+	}
+
+	@Test
+	public void release_noAllocationInSteadyState() {
+		// exceed the magazine size to also exercise the shared pool
+		List<ByteBuffer> buffers = new ArrayList<>();
+		for (int i = 0; i < BufferPool.MagazineSize * 2; i++) {
+			buffers.add(acquireAndAssert(512));
+		}
+		buffers.forEach(b -> assertIsSuccess(bufferPool.release(b)));
+		long allocated = bufferPool.allocatedMemory();
+
+		for (int round = 0; round < 10; round++) {
+			buffers.clear();
+			for (int i = 0; i < BufferPool.MagazineSize * 2; i++) {
+				buffers.add(acquireAndAssert(512));
+			}
+			buffers.forEach(b -> assertIsSuccess(bufferPool.release(b)));
+		}
+		assertEquals(allocated, bufferPool.allocatedMemory());
+	}
+
+	private List<ByteBuffer> acquireAll(int capacity) {
+		// 64k of memory allows for 16 buffers of 4k
+		List<ByteBuffer> buffers = new ArrayList<>();
+		for (int i = 0; i < 16; i++) {
+			buffers.add(acquireAndAssert(capacity));
+		}
+		return buffers;
+	}
+
+	private ByteBuffer acquireAndAssert(int capacity) {
+		Try<ByteBuffer> buffer = bufferPool.acquire(capacity, MaxWaitTime);
+		assertIsSuccess(buffer);
+		return buffer.orNull();
+	}
+}
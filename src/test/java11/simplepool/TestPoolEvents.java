@@ -0,0 +1,193 @@
+/**
+ *  Copyright 2015 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package simplepool;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import javascalautils.ThrowableFunction0;
+import javascalautils.Try;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Test the Java 11 variant of {@link PoolEvents} emitting JDK Flight Recorder events. <br>
+ * The classes of the multi-release jar are not used when testing from the class directory, thus the Java 11 variant is loaded from <tt>META-INF/versions/11</tt> using a separate class loader. <br>
+ * The loader also loads the rest of the pool classes itself, thus the pool uses the Java 11 variant.
+ * @author Peter Nerg
+ */
+public class TestPoolEvents extends BaseAssert {
+
+	private URLClassLoader classLoader;
+	private Class<?> poolEvents;
+
+	@Before
+	public void loadEvents() throws Exception {
+		Path classes = Paths.get(PoolImpl.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+		Path versioned = classes.resolve("META-INF/versions/11");
+		Assume.assumeTrue(Files.isDirectory(versioned));
+		classLoader = new PoolClassLoader(new URL[] { versioned.toUri().toURL(), classes.toUri().toURL() });
+		poolEvents = classLoader.loadClass("simplepool.PoolEvents");
+	}
+
+	@After
+	public void closeLoader() throws Exception {
+		if (classLoader != null) {
+			classLoader.close();
+		}
+	}
+
+	@Test
+	public void beginBorrowWait_notRecording() throws Exception {
+		assertNull(invoke("beginBorrowWait"));
+	}
+
+	@Test
+	public void borrowWait() throws Exception {
+		List<RecordedEvent> events = record("simplepool.BorrowWait", () -> {
+			Object event = invoke("beginBorrowWait");
+			invoke("endBorrowWait", event, "timeout");
+		});
+		assertEquals(1, events.size());
+		assertEquals("timeout", events.get(0).getString("outcome"));
+	}
+
+	@Test
+	public void create() throws Exception {
+		List<RecordedEvent> events = record("simplepool.Create", () -> {
+			Object event = invoke("beginCreate");
+			invoke("endCreate", event, false);
+		});
+		assertEquals(1, events.size());
+		assertEquals(false, events.get(0).getBoolean("success"));
+	}
+
+	@Test
+	public void validationFailed() throws Exception {
+		List<RecordedEvent> events = record("simplepool.ValidationFailed", () -> invoke("validationFailed", "instance", true));
+		assertEquals(1, events.size());
+		assertEquals(true, events.get(0).getBoolean("broken"));
+		assertEquals(String.class.getName(), events.get(0).getClass("instanceClass").getName());
+	}
+
+	@Test
+	public void idleEvicted() throws Exception {
+		List<RecordedEvent> events = record("simplepool.IdleEvicted", () -> invoke("idleEvicted", 42L));
+		assertEquals(1, events.size());
+		assertEquals(42, events.get(0).getDuration("idleTime").toMillis());
+	}
+
+	@Test
+	public void idleEvicted_evictAllIdleInstances() throws Exception {
+		ThrowableFunction0<Object> instanceFactory = () -> new Object();
+		Object factory = invokeMember(classLoader.loadClass("simplepool.Factory"), null, "poolFor", instanceFactory);
+		Class<?> poolType = classLoader.loadClass("simplepool.PoolImpl");
+		Object pool = invokeMember(poolType, null, "<init>", factory);
+		Object instance = ((Try<?>) invokeMember(poolType, pool, "getInstance", Duration.ofSeconds(1))).orNull();
+		invokeMember(poolType, pool, "returnInstance", instance);
+
+		List<RecordedEvent> events = record("simplepool.IdleEvicted", () -> invokeMember(poolType, pool, "evictAllIdleInstances"));
+		assertEquals(1, events.size());
+		invokeMember(poolType, pool, "destroy", Duration.ZERO);
+	}
+
+	@Test
+	public void destroy() throws Exception {
+		List<RecordedEvent> events = record("simplepool.Destroy", () -> invoke("endDestroy", invoke("beginDestroy")));
+		assertEquals(1, events.size());
+	}
+
+	/**
+	 * Records the events of the provided type emitted by the action.
+	 */
+	private static List<RecordedEvent> record(String eventName, Action action) throws Exception {
+		Path file = Files.createTempFile("pool-events", ".jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable(eventName).withThreshold(Duration.ZERO);
+			recording.start();
+			action.run();
+			recording.stop();
+			recording.dump(file);
+			return RecordingFile.readAllEvents(file);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	private Object invoke(String name, Object... args) throws Exception {
+		return invokeMember(poolEvents, null, name, args);
+	}
+
+	/**
+	 * Invokes the method (or constructor if named <tt>&lt;init&gt;</tt>) with the provided name and number of arguments.
+	 */
+	private static Object invokeMember(Class<?> type, Object target, String name, Object... args) throws Exception {
+		if (name.equals("<init>")) {
+			for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+				if (constructor.getParameterCount() == args.length) {
+					constructor.setAccessible(true);
+					return constructor.newInstance(args);
+				}
+			}
+		}
+		for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+			for (Method method : c.getDeclaredMethods()) {
+				if (method.getName().equals(name) && method.getParameterCount() == args.length) {
+					method.setAccessible(true);
+					return method.invoke(target, args);
+				}
+			}
+		}
+		throw new NoSuchMethodException(name);
+	}
+
+	/**
+	 * Loads the pool classes itself instead of delegating to the parent, any other classes are loaded by the parent.
+	 */
+	private static final class PoolClassLoader extends URLClassLoader {
+		private PoolClassLoader(URL[] urls) {
+			super(urls, TestPoolEvents.class.getClassLoader());
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (!name.startsWith("simplepool.")) {
+				return super.loadClass(name, resolve);
+			}
+			synchronized (getClassLoadingLock(name)) {
+				Class<?> c = findLoadedClass(name);
+				return c != null ? c : findClass(name);
+			}
+		}
+	}
+
+	private interface Action {
+		void run() throws Exception;
+	}
+}